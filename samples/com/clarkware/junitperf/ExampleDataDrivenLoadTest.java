@@ -1,6 +1,5 @@
 package com.clarkware.junitperf;
 
-import java.io.*;
 import java.util.*;
 
 import junit.framework.Test;
@@ -11,43 +10,51 @@ import com.clarkware.junitperf.*;
  * The <code>ExampleDataDrivenLoadTest</code> demonstrates one
  * technique for creating a load test where each thread uses
  * a distinct piece of test data.
+ * <p>
+ * The test data is handed out by a <code>DataFeeder</code>, 
+ * which does not serialize the concurrent users on a shared 
+ * lock.  Use a <code>PartitionedDataFeeder</code> instead to
+ * give each user its own slice of the data.
+ * </p>
  *
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
  *
  * @see com.clarkware.junitperf.LoadTest
+ * @see com.clarkware.junitperf.DataFeeder
  */
 
 public class ExampleDataDrivenLoadTest extends TestCase {
 
   private static final int CONCURRENT_USERS = 5;
-  private static Iterator testDataIterator;
+  private static DataFeeder testData;
 
-  public ExampleDataDrivenLoadTest(String name, ArrayList testData) {
+  public ExampleDataDrivenLoadTest(String name, DataFeeder feeder) {
     super(name);
-    testDataIterator = testData.iterator();
+    testData = feeder;
   }
 
   public static Test suite() {
 
-    ArrayList testData = new ArrayList();
-    testData.add("A");  
-    testData.add("B");  
-    testData.add("C");  
-    testData.add("D");  
-    testData.add("E");  
+    ArrayList records = new ArrayList();
+    records.add("A");  
+    records.add("B");  
+    records.add("C");  
+    records.add("D");  
+    records.add("E");  
 
-    Test test = new ExampleDataDrivenLoadTest("testData", testData);
+    DataFeeder feeder = new SharedDataFeeder(records, false);
+    
+    Test test = new ExampleDataDrivenLoadTest("testData", feeder);
     LoadTest loadTest = new LoadTest(test, CONCURRENT_USERS);
     return loadTest;
   }
     
-  private synchronized static String getNextTestData() {
-    return (String)testDataIterator.next();
-  }
-    
   public void testData() {
-    String data = getNextTestData();
+    String data = (String)testData.next();
+    if (data == null) {
+      return;
+    }
     System.out.println(data);
   }
 }
@@ -0,0 +1,36 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>ExampleForkedPerfTestSuite</code> demonstrates how to 
+ * assemble a test suite whose performance tests each run in a 
+ * fresh JVM, isolated from the JIT profile, heap, and threads 
+ * left behind by the other tests.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.ForkedTest
+ */
+
+public class ExampleForkedPerfTestSuite {
+
+	public static Test suite() {
+        
+		String[] jvmArgs = { "-Xms64m", "-Xmx64m" };
+		
+		TestSuite suite = new TestSuite();
+
+		suite.addTest(new ForkedTest(ExampleTimedTest.class, jvmArgs));
+		suite.addTest(new ForkedTest(ExampleLoadTest.class, jvmArgs));
+		suite.addTest(new ForkedTest(ExampleDataDrivenLoadTest.class, jvmArgs));
+
+		return suite;
+	}
+		
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,398 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>AsyncLoadTest</code> is a test that runs many 
+ * concurrent operations of an <code>AsyncTest</code> without 
+ * a thread per operation.
+ * <p>
+ * A single dispatching thread starts operations, each a run of the 
+ * decorated test, for as long as fewer than the specified number 
+ * are in flight.  Each operation is timed from its start until its
+ * future completes, on whichever thread completes it, so a 
+ * non-blocking client with a handful of I/O threads can sustain 
+ * tens of thousands of concurrent operations.  The latency, errors, 
+ * failures, and in-flight operations, reported as active users,
+ * are recorded in the <code>LoadStatistics</code> of the test.
+ * </p>
+ * <p>
+ * For example, to run 100000 operations of the tests of
+ * <code>ExampleAsyncTest</code> with up to 10000 in flight, use:
+ * <blockquote>
+ * <pre>
+ * Test suite = new AsyncTestSuite(ExampleAsyncTest.class);
+ * Test loadTest = new AsyncLoadTest(suite, 10000, 100000);
+ * </pre>
+ * </blockquote>
+ * The tests of a suite are started in turn.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.AsyncTestCase
+ */
+
+public class AsyncLoadTest implements Test {
+
+	private static final ThreadLocal current = new ThreadLocal();
+	
+	private final Test test;
+	private final AsyncTest[] tests;
+	private final int concurrency;
+	private final int operations;
+	private long duration;
+	private long timeout;
+	private long interval;
+	private int failureSampleSize;
+	private final List intervalListeners;
+	private volatile LoadStatistics statistics;
+	private volatile boolean stopped;
+
+	/**
+	 * Constructs an <code>AsyncLoadTest</code>.
+	 *
+	 * @param test An <code>AsyncTest</code>, or a suite of them.
+	 * @param concurrency Maximum number of operations in flight.
+	 * @param operations Number of operations.
+	 */
+	public AsyncLoadTest(Test test, int concurrency, int operations) {
+		
+		if (test == null) {
+			throw new IllegalArgumentException("Decorated test is null");
+		} else if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be > 0");
+		} else if (operations < 0) {
+			throw new IllegalArgumentException("Number of operations must be >= 0");
+		}
+		
+		List list = new ArrayList();
+		collect(test, list);
+		if (list.isEmpty()) {
+			throw new IllegalArgumentException("No asynchronous tests in " + test);
+		}
+		
+		this.test = test;
+		this.tests = (AsyncTest[])list.toArray(new AsyncTest[list.size()]);
+		this.concurrency = concurrency;
+		this.operations = operations;
+		this.interval = 1000;
+		this.failureSampleSize = -1;
+		this.intervalListeners = new CopyOnWriteArrayList();
+		this.statistics = new LoadStatistics();
+	}
+	
+	private static void collect(Test test, List list) {
+		if (test instanceof AsyncTest) {
+			list.add(test);
+		} else if (test instanceof TestSuite) {
+			for (Enumeration e = ((TestSuite)test).tests(); e.hasMoreElements(); ) {
+				collect((Test)e.nextElement(), list);
+			}
+		} else {
+			throw new IllegalArgumentException("Not an asynchronous test: " + test);
+		}
+	}
+	
+	/**
+	 * Sets the duration of the load test.  When a duration is set,
+	 * operations are started until the duration has elapsed, 
+	 * regardless of the number of operations.
+	 *
+	 * @param duration Duration (ms), or 0 to run the number of
+	 *        operations (default).
+	 */
+	public void setDuration(long duration) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("Duration must be >= 0");
+		}
+		this.duration = duration;
+	}
+	
+	/**
+	 * Sets the time after which an operation that has not
+	 * completed fails and stops counting as in flight.
+	 *
+	 * @param timeout Timeout (ms), or 0 for none (default).
+	 */
+	public void setTimeout(long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Timeout must be >= 0");
+		}
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Sets the number of failures or errors with the same 
+	 * signature that are reported in full to the 
+	 * <code>TestResult</code>.  By default, every failure and
+	 * error is reported.
+	 *
+	 * @param failureSampleSize Maximum instances per signature.
+	 */
+	public void setFailureSampleSize(int failureSampleSize) {
+		if (failureSampleSize < 0) {
+			throw new IllegalArgumentException("Failure sample size must be >= 0");
+		}
+		this.failureSampleSize = failureSampleSize;
+	}
+	
+	/**
+	 * Registers a listener to be notified of the progress
+	 * of this load test at the end of each interval.
+	 *
+	 * @param listener Interval listener.
+	 */
+	public void addIntervalListener(IntervalListener listener) {
+		intervalListeners.add(listener);
+	}
+	
+	/**
+	 * Sets the reporting interval of the interval listeners.
+	 *
+	 * @param interval Interval (ms); defaults to 1000.
+	 */
+	public void setInterval(long interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be > 0");
+		}
+		this.interval = interval;
+	}
+	
+	/**
+	 * Stops the running load test.  No further operations are 
+	 * started, and the operations in flight are awaited.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+	
+	/**
+	 * Returns the maximum number of operations in flight.
+	 *
+	 * @return Concurrency.
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+	
+	/**
+	 * Returns the asynchronous load test the current thread
+	 * starts operations of.
+	 *
+	 * @return Load test, or <code>null</code> if none.
+	 */
+	static AsyncLoadTest getCurrent() {
+		return (AsyncLoadTest)current.get();
+	}
+	
+	/**
+	 * Returns the statistics of the current or most recent run.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Returns the number of tests in this load test.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		return operations;
+	}
+	
+	/**
+	 * Runs the test.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+		
+		LoadStatistics stats = new LoadStatistics(
+			LoadTest.createFailureAggregator(failureSampleSize));
+		statistics = stats;
+		stopped = false;
+		
+		IntervalSampler sampler = null;
+		if (!intervalListeners.isEmpty()) {
+			sampler = new IntervalSampler(toString(), stats, interval, 
+				new ArrayList(intervalListeners));
+			sampler.start();
+		}
+		
+		Semaphore inFlight = new Semaphore(concurrency);
+		long deadline = System.nanoTime() + duration * 1000000L;
+		
+		Object previous = current.get();
+		current.set(this);
+		
+		try {
+			
+			for (long i=0; duration > 0 || i < operations; i++) {
+				
+				if (result.shouldStop() || stopped) {
+					break;
+				}
+				
+				if (!acquire(inFlight, deadline)) {
+					break;
+				}
+				
+				start(tests[(int)(i % tests.length)], result, stats, inFlight);
+			}
+			
+			inFlight.acquire(concurrency);
+			inFlight.release(concurrency);
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			current.set(previous);
+			if (sampler != null) {
+				sampler.stop();
+			}
+		}
+	}
+	
+	private boolean acquire(Semaphore inFlight, long deadline) 
+		throws InterruptedException {
+		
+		if (duration == 0) {
+			inFlight.acquire();
+			return true;
+		}
+		
+		long remaining = deadline - System.nanoTime();
+		return remaining > 0 && inFlight.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+	}
+	
+	private void start(final AsyncTest test, final TestResult result, 
+		final LoadStatistics stats, final Semaphore inFlight) {
+		
+		stats.userStarted();
+		synchronized (result) {
+			result.startTest(test);
+		}
+		
+		final long begin = System.nanoTime();
+		
+		CompletableFuture future;
+		try {
+			future = test.start();
+		} catch (Throwable t) {
+			future = new CompletableFuture();
+			future.completeExceptionally(t);
+		}
+		
+		final ScheduledFuture timer = (timeout > 0) ? 
+			scheduleTimeout(future, timeout) : null;
+		
+		future.whenComplete(new BiConsumer() {
+			public void accept(Object value, Object exception) {
+				try {
+					if (timer != null) {
+						timer.cancel(false);
+					}
+					long latency = System.nanoTime() - begin;
+					stats.recordIteration(latency);
+					stats.recordTest(test, latency);
+					complete(test, (Throwable)exception, result, stats);
+				} finally {
+					stats.userFinished();
+					inFlight.release();
+				}
+			}
+		});
+	}
+	
+	/*
+	 * Completes the specified future with a <code>TimeoutException</code>
+	 * after the specified time unless it has completed by then.
+	 */
+	private static ScheduledFuture scheduleTimeout(final CompletableFuture future, long timeout) {
+		return Timer.scheduler.schedule(new Runnable() {
+			public void run() {
+				future.completeExceptionally(new TimeoutException());
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	private void complete(Test test, Throwable t, TestResult result, LoadStatistics stats) {
+		
+		if (t != null) {
+			t = AsyncTestCase.unwrap(t);
+			if (t instanceof TimeoutException) {
+				t = new AssertionFailedError("Operation timed out after " + timeout + " ms");
+			}
+		}
+		
+		boolean isReported = (t != null) && stats.getFailureAggregator().record(test, t);
+		
+		synchronized (result) {
+			if (t instanceof AssertionFailedError) {
+				stats.addFailure(test, (AssertionFailedError)t);
+				if (isReported) {
+					result.addFailure(test, (AssertionFailedError)t);
+				}
+			} else if (t != null) {
+				stats.addError(test, t);
+				if (isReported) {
+					result.addError(test, t);
+				}
+			}
+			result.endTest(test);
+		}
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "AsyncLoadTest (" + concurrency + " in flight): " + test.toString();
+	}
+
+	/*
+	 * The <code>Timer</code> holds the daemon thread timing out the
+	 * operations of all asynchronous load tests, started when the
+	 * first operation with a timeout is started.
+	 */
+	private static final class Timer {
+		
+		static final ScheduledThreadPoolExecutor scheduler = createScheduler();
+		
+		private static ScheduledThreadPoolExecutor createScheduler() {
+			ScheduledThreadPoolExecutor scheduler = 
+				new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "JUnitPerf async timeouts");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			scheduler.setRemoveOnCancelPolicy(true);
+			return scheduler;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.Test;
+
+/**
+ * The <code>AsyncTest</code> interface is implemented by tests
+ * that can run asynchronously, without blocking the calling 
+ * thread until they complete.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.AsyncTestCase
+ * @see com.clarkware.junitperf.AsyncLoadTest
+ */
+
+public interface AsyncTest extends Test {
+
+	/**
+	 * Starts one run of the test.  The returned future completes
+	 * when the run completes, or completes exceptionally with the
+	 * failure or error of the run.
+	 *
+	 * @return Future.
+	 */
+	public CompletableFuture start();
+}
@@ -0,0 +1,231 @@
+package com.clarkware.junitperf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+/**
+ * The <code>AsyncTestCase</code> is a <code>TestCase</code> whose
+ * test methods exercise non-blocking code.
+ * <p>
+ * A test method either returns a <code>CompletionStage</code>, 
+ * such as a <code>CompletableFuture</code>, or takes a 
+ * <code>CompletableFuture</code> parameter that it completes when
+ * the test is done, as a completion callback.  The test fails if 
+ * the future completes exceptionally with an 
+ * <code>AssertionFailedError</code>, and errors if it completes
+ * exceptionally with any other exception.  For example:
+ * <blockquote>
+ * <pre>
+ * public class ExampleAsyncTest extends AsyncTestCase {
+ *
+ *     public CompletableFuture testGet() {
+ *         return client.get("/").thenAccept(new Consumer() { ... });
+ *     }
+ *
+ *     public void testPut(final CompletableFuture done) {
+ *         client.put("/", body, new Callback() { 
+ *             public void completed() { done.complete(null); } 
+ *         });
+ *     }
+ * }
+ * </pre>
+ * </blockquote>
+ * Because <code>TestSuite</code> only recognizes test methods 
+ * without parameters and return values, the tests are collected 
+ * with an <code>AsyncTestSuite</code>.
+ * </p>
+ * <p>
+ * Run by a <code>TimedTest</code> or a <code>LoadTest</code>, an 
+ * asynchronous test blocks the running thread until it completes,
+ * so its latency to completion is measured.  Run by an 
+ * <code>AsyncLoadTest</code>, it is started with 
+ * <code>start()</code> and does not block, so a few threads can 
+ * sustain many concurrent tests.  The test case is then shared by 
+ * the concurrent runs and <code>setUp()</code> and 
+ * <code>tearDown()</code> are called for each run, so both should
+ * only touch thread-safe state.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.AsyncTestSuite
+ * @see com.clarkware.junitperf.AsyncLoadTest
+ */
+
+public abstract class AsyncTestCase extends TestCase implements AsyncTest {
+
+	private volatile Method method;
+	
+	/**
+	 * Constructs an <code>AsyncTestCase</code>.
+	 */
+	public AsyncTestCase() {
+		super();
+	}
+	
+	/**
+	 * Constructs an <code>AsyncTestCase</code> with the
+	 * specified name.
+	 *
+	 * @param name Test method name.
+	 */
+	public AsyncTestCase(String name) {
+		super(name);
+	}
+	
+	/**
+	 * Determines whether the specified method is a test
+	 * method of an <code>AsyncTestCase</code>.
+	 *
+	 * @param m Method.
+	 * @return <code>true</code> if a test method; 
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean isTestMethod(Method m) {
+		
+		if (!m.getName().startsWith("test") || !Modifier.isPublic(m.getModifiers()) ||
+			Modifier.isStatic(m.getModifiers())) {
+			return false;
+		}
+		
+		Class[] parameters = m.getParameterTypes();
+		Class returnType = m.getReturnType();
+		
+		if (parameters.length == 0) {
+			return returnType == Void.TYPE || 
+				CompletionStage.class.isAssignableFrom(returnType);
+		}
+		
+		return parameters.length == 1 && returnType == Void.TYPE &&
+			parameters[0] == CompletableFuture.class;
+	}
+	
+	/**
+	 * Starts one run of the test, calling <code>setUp()</code> 
+	 * before the test method and <code>tearDown()</code> when it
+	 * completes.
+	 *
+	 * @return Future completing when the test completes.
+	 */
+	public CompletableFuture start() {
+		
+		final CompletableFuture done = new CompletableFuture();
+		
+		try {
+			setUp();
+		} catch (Throwable t) {
+			done.completeExceptionally(t);
+			return done;
+		}
+		
+		CompletableFuture future;
+		try {
+			future = invoke();
+		} catch (Throwable t) {
+			future = new CompletableFuture();
+			future.completeExceptionally(t);
+		}
+		
+		future.whenComplete(new BiConsumer() {
+			public void accept(Object value, Object exception) {
+				Throwable t = (exception == null) ? null : unwrap((Throwable)exception);
+				try {
+					tearDown();
+				} catch (Throwable tearDownException) {
+					if (t == null) {
+						t = tearDownException;
+					}
+				}
+				if (t == null) {
+					done.complete(value);
+				} else {
+					done.completeExceptionally(t);
+				}
+			}
+		});
+		
+		return done;
+	}
+	
+	/**
+	 * Runs the test method and waits for it to complete.
+	 *
+	 * @throws Throwable If the test fails or errors.
+	 */
+	protected void runTest() throws Throwable {
+		try {
+			invoke().get();
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+	
+	/**
+	 * Invokes the test method.
+	 *
+	 * @return Future completing when the test method completes.
+	 * @throws Throwable If the test method throws.
+	 */
+	protected CompletableFuture invoke() throws Throwable {
+		
+		Method m = getTestMethod();
+		
+		try {
+			
+			if (m.getParameterTypes().length == 1) {
+				CompletableFuture future = new CompletableFuture();
+				m.invoke(this, new Object[] { future });
+				return future;
+			}
+			
+			Object stage = m.invoke(this, new Object[0]);
+			
+			if (m.getReturnType() == Void.TYPE) {
+				return CompletableFuture.completedFuture(null);
+			} else if (stage == null) {
+				throw new AssertionFailedError("Test method " + getName() + " returned null");
+			}
+			
+			return ((CompletionStage)stage).toCompletableFuture();
+			
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+	
+	private Method getTestMethod() {
+		
+		Method m = method;
+		if (m != null) {
+			return m;
+		}
+		
+		Method[] methods = getClass().getMethods();
+		for (int i=0; i < methods.length; i++) {
+			if (methods[i].getName().equals(getName()) && isTestMethod(methods[i])) {
+				method = methods[i];
+				return methods[i];
+			}
+		}
+		
+		throw new AssertionFailedError("Test method " + getName() + " not found");
+	}
+	
+	static Throwable unwrap(Throwable t) {
+		while ((t instanceof CompletionException || t instanceof ExecutionException) &&
+			t.getCause() != null) {
+			t = t.getCause();
+		}
+		return t;
+	}
+}
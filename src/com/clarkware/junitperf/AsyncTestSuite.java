@@ -0,0 +1,61 @@
+package com.clarkware.junitperf;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestSuite;
+
+/**
+ * The <code>AsyncTestSuite</code> is a <code>TestSuite</code> 
+ * of the test methods of an <code>AsyncTestCase</code>, including 
+ * those returning a <code>CompletionStage</code> or taking a 
+ * <code>CompletableFuture</code> to complete.
+ * <p>
+ * For example:
+ * <blockquote>
+ * <pre>
+ * public static Test suite() {
+ *     return new AsyncTestSuite(ExampleAsyncTest.class);
+ * }
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.AsyncTestCase
+ */
+
+public class AsyncTestSuite extends TestSuite {
+
+	/**
+	 * Constructs an <code>AsyncTestSuite</code> of the test 
+	 * methods of the specified class.
+	 *
+	 * @param testClass <code>AsyncTestCase</code> class.
+	 */
+	public AsyncTestSuite(Class testClass) {
+		
+		super(testClass.getName());
+		
+		if (!AsyncTestCase.class.isAssignableFrom(testClass)) {
+			addTest(warning("Class " + testClass.getName() + 
+				" is not an AsyncTestCase"));
+			return;
+		}
+		
+		Set names = new HashSet();
+		Method[] methods = testClass.getMethods();
+		for (int i=0; i < methods.length; i++) {
+			if (AsyncTestCase.isTestMethod(methods[i]) && names.add(methods[i].getName())) {
+				addTest(createTest(testClass, methods[i].getName()));
+			}
+		}
+		
+		if (testCount() == 0) {
+			addTest(warning("No tests found in " + testClass.getName()));
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>BufferedTestResult</code> is a <code>TestResult</code> 
+ * confined to a single thread which buffers the test events and 
+ * replays them to a shared target <code>TestResult</code> in batches.
+ * <p>
+ * The methods of a <code>TestResult</code> are synchronized, so when 
+ * many users of a <code>LoadTest</code> run tests at a high rate, the
+ * shared result becomes heavily contended.  A buffered result is only
+ * used by its own thread, so recording an event does not contend with 
+ * other threads; the target is locked once per batch.
+ * </p>
+ * <p>
+ * Listeners of the target receive the same events in the same order
+ * for each test, but only when a batch is flushed: after the specified 
+ * number of events, once the maximum delay has passed since the last
+ * flush, or when <code>flush()</code> is invoked.  Listeners that need 
+ * the real-time start and end of each test, such as 
+ * <code>LoadStatistics</code>, should be added to the buffered result
+ * itself.  A stop of the target is noticed when a batch is flushed.
+ * With a batch size of 1, each event is replayed as it occurs.
+ * </p>
+ * <p>
+ * When a <code>FailureAggregator</code> is set, every failure and 
+ * error is counted by the aggregator, but only those it reports,
+ * by default those retained in its sample, are replayed to the target.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ */
+
+public class BufferedTestResult extends TestResult {
+
+	private static final int START = 1;
+	private static final int END = 2;
+	private static final int FAILURE = 3;
+	private static final int ERROR = 4;
+	
+	private final TestResult target;
+	private final int batchSize;
+	private final long maxDelay;
+	private final List events;
+	private long lastFlush;
+	private boolean targetStopped;
+	private FailureAggregator failureAggregator;
+
+	/**
+	 * Constructs a <code>BufferedTestResult</code> which flushes
+	 * to the specified target result.
+	 *
+	 * @param target Target result.
+	 * @param batchSize Number of events per batch.
+	 * @param maxDelay Maximum delay of an event (ms).
+	 */
+	public BufferedTestResult(TestResult target, int batchSize, long maxDelay) {
+		
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be > 0");
+		}
+		
+		this.target = target;
+		this.batchSize = batchSize;
+		this.maxDelay = maxDelay * 1000000L;
+		this.events = new ArrayList();
+		this.lastFlush = System.nanoTime();
+		this.targetStopped = target.shouldStop();
+	}
+	
+	/**
+	 * Sets the aggregator deciding which failures and errors
+	 * are replayed to the target.
+	 *
+	 * @param failureAggregator Failure aggregator, or 
+	 *        <code>null</code> to replay all of them.
+	 */
+	public void setFailureAggregator(FailureAggregator failureAggregator) {
+		this.failureAggregator = failureAggregator;
+	}
+	
+	public void startTest(Test test) {
+		super.startTest(test);
+		add(new Event(START, test, null));
+	}
+	
+	public void endTest(Test test) {
+		super.endTest(test);
+		add(new Event(END, test, null));
+		if (!events.isEmpty() && System.nanoTime() - lastFlush >= maxDelay) {
+			flush();
+		}
+	}
+	
+	public void addError(Test test, Throwable t) {
+		super.addError(test, t);
+		if (isRetained(test, t)) {
+			add(new Event(ERROR, test, t));
+		}
+	}
+	
+	public void addFailure(Test test, AssertionFailedError e) {
+		super.addFailure(test, e);
+		if (isRetained(test, e)) {
+			add(new Event(FAILURE, test, e));
+		}
+	}
+	
+	public boolean shouldStop() {
+		return targetStopped || super.shouldStop();
+	}
+	
+	public void stop() {
+		super.stop();
+		target.stop();
+	}
+	
+	/**
+	 * Replays the buffered events to the target result.
+	 */
+	public void flush() {
+		
+		synchronized (target) {
+			for (int i=0; i < events.size(); i++) {
+				Event event = (Event)events.get(i);
+				switch (event.type) {
+				case START:
+					target.startTest(event.test);
+					break;
+				case END:
+					target.endTest(event.test);
+					break;
+				case FAILURE:
+					target.addFailure(event.test, (AssertionFailedError)event.throwable);
+					break;
+				default:
+					target.addError(event.test, event.throwable);
+				}
+			}
+			targetStopped = target.shouldStop();
+		}
+		
+		events.clear();
+		synchronized (this) {
+			fErrors.clear();
+			fFailures.clear();
+		}
+		lastFlush = System.nanoTime();
+	}
+	
+	private void add(Event event) {
+		events.add(event);
+		if (events.size() >= batchSize) {
+			flush();
+		}
+	}
+	
+	private boolean isRetained(Test test, Throwable t) {
+		return failureAggregator == null || failureAggregator.record(test, t);
+	}
+	
+	private static final class Event {
+		
+		final int type;
+		final Test test;
+		final Throwable throwable;
+		
+		Event(int type, Test test, Throwable throwable) {
+			this.type = type;
+			this.test = test;
+			this.throwable = throwable;
+		}
+	}
+}
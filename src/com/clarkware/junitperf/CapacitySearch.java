@@ -0,0 +1,243 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>CapacitySearch</code> is a test that finds the maximum
+ * number of concurrent users a test sustains within an 
+ * <code>SlaPolicy</code>, in a single run.
+ * <p>
+ * Starting with the number of users of a template 
+ * <code>LoadTest</code>, the search runs the load test for a fixed 
+ * duration per step, adding users at each step until the steady-state
+ * measurements violate the policy or the maximum number of users is 
+ * reached.  The steady state of a step excludes its warm-up period.
+ * The search then bisects between the last passing and the first 
+ * failing step.  The errors and failures of the steps are measured
+ * against the policy, and the first few of each step are reported 
+ * on the test result with their causes; the search itself fails only
+ * if no step meets the policy.
+ * </p>
+ * <p>
+ * For example, to find the capacity of <code>ExampleTest</code> 
+ * from 10 users, in steps of 10 users up to 200 users running for 
+ * 30 seconds each, within a 99th percentile latency of 500 ms, use:
+ * <blockquote>
+ * <pre>
+ * SlaPolicy sla = new SlaPolicy(30000);
+ * sla.setMaxLatency(99, 500);
+ * LoadTest loadTest = new LoadTest(new ExampleTest("testSomething"), 10);
+ * CapacitySearch search = new CapacitySearch(loadTest, 10, 200, 30000, sla);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.SlaPolicy
+ * @see com.clarkware.junitperf.CapacityStep
+ */
+
+public class CapacitySearch implements Test {
+
+	private final LoadTest template;
+	private final int stepUsers;
+	private final int maxUsers;
+	private final long stepDuration;
+	private final SlaPolicy sla;
+	private long warmUp;
+	private boolean refine;
+	private boolean isQuiet;
+	private final List steps;
+
+	/**
+	 * Constructs a <code>CapacitySearch</code>.
+	 *
+	 * @param template Load test whose configuration is used
+	 *        at each step, starting with its number of users.
+	 *        The steps run plain <code>LoadTest</code> copies, 
+	 *        so the overrides of a subclass are not preserved.
+	 * @param stepUsers Number of users added at each step.
+	 * @param maxUsers Maximum number of users.
+	 * @param stepDuration Duration of each step (ms).
+	 * @param sla Service level policy.
+	 */
+	public CapacitySearch(LoadTest template, int stepUsers, int maxUsers,
+		long stepDuration, SlaPolicy sla) {
+		
+		if (stepUsers < 1) {
+			throw new IllegalArgumentException("Step users must be > 0");
+		} else if (maxUsers < template.getUsers()) {
+			throw new IllegalArgumentException("Maximum users must be >= initial users");
+		} else if (stepDuration < 1) {
+			throw new IllegalArgumentException("Step duration must be > 0");
+		} else if (sla == null) {
+			throw new IllegalArgumentException("SLA policy is null");
+		}
+		
+		this.template = template;
+		this.stepUsers = stepUsers;
+		this.maxUsers = maxUsers;
+		this.stepDuration = stepDuration;
+		this.sla = sla;
+		this.warmUp = stepDuration / 5;
+		this.refine = true;
+		this.steps = Collections.synchronizedList(new ArrayList());
+	}
+	
+	/**
+	 * Sets the warm-up period of each step, which is excluded
+	 * from its measurements.
+	 *
+	 * @param warmUp Warm-up (ms); defaults to a fifth of the
+	 *        step duration.
+	 */
+	public void setWarmUp(long warmUp) {
+		if (warmUp < 0 || warmUp >= stepDuration) {
+			throw new IllegalArgumentException("Warm-up must be >= 0 and < step duration");
+		}
+		this.warmUp = warmUp;
+	}
+	
+	/**
+	 * Indicates whether to bisect between the last passing
+	 * and the first failing step.
+	 *
+	 * @param refine <code>true</code> to bisect (default);
+	 *        <code>false</code> otherwise.
+	 */
+	public void setRefine(boolean refine) {
+		this.refine = refine;
+	}
+	
+	/**
+	 * Disables the output of each step.
+	 */
+	public void setQuiet() {
+		isQuiet = true;
+	}
+	
+	/**
+	 * Returns the steps of the current or most recent search,
+	 * in the order they were run.
+	 *
+	 * @return List of <code>CapacityStep</code> instances.
+	 */
+	public List getSteps() {
+		synchronized (steps) {
+			return new ArrayList(steps);
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of users which met the policy
+	 * in the current or most recent search.
+	 *
+	 * @return Number of users, or 0 if no step met the policy.
+	 */
+	public int getCapacity() {
+		int capacity = 0;
+		List list = getSteps();
+		for (int i=0; i < list.size(); i++) {
+			CapacityStep step = (CapacityStep)list.get(i);
+			if (step.isPassed()) {
+				capacity = Math.max(capacity, step.getUsers());
+			}
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of tests in one step.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		return template.countTestCases();
+	}
+	
+	/**
+	 * Runs the search.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+		
+		steps.clear();
+		
+		int passed = 0;
+		int failed = 0;
+		
+		for (int users = template.getUsers(); users <= maxUsers; users += stepUsers) {
+			
+			if (result.shouldStop()) {
+				return;
+			}
+			
+			if (runStep(users, result).isPassed()) {
+				passed = users;
+			} else {
+				failed = users;
+				break;
+			}
+		}
+		
+		while (refine && passed > 0 && failed > passed + 1 && !result.shouldStop()) {
+			
+			int users = (passed + failed) / 2;
+			
+			if (runStep(users, result).isPassed()) {
+				passed = users;
+			} else {
+				failed = users;
+			}
+		}
+		
+		print("Capacity: " + passed + " users");
+		
+		if (passed == 0) {
+			result.addFailure(this, new AssertionFailedError(
+				"No load level met the SLA: " + getSteps().get(0)));
+		}
+	}
+	
+	/**
+	 * Runs one step of the search.
+	 *
+	 * @param users Number of concurrent users.
+	 * @param result Test result.
+	 * @return Step.
+	 */
+	protected CapacityStep runStep(int users, TestResult result) {
+		
+		CapacityStep step = CapacityStep.measure(template, users, stepDuration, 
+			warmUp, sla, result);
+		
+		steps.add(step);
+		print(step.toString());
+		
+		return step;
+	}
+	
+	private void print(String line) {
+		if (!isQuiet) {
+			ConsoleReporter.getDefault().print(toString() + ": " + line);
+		}
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "CapacitySearch: " + template.toString();
+	}
+}
@@ -0,0 +1,229 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>CapacityStep</code> class holds the steady-state 
+ * measurements of one load level of a <code>CapacitySearch</code>
+ * or a <code>ScalabilitySweep</code>.
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.CapacitySearch
+ * @see com.clarkware.junitperf.ScalabilitySweep
+ */
+
+public class CapacityStep {
+
+	/**
+	 * Maximum number of failures and errors of a step 
+	 * reported on the test result.
+	 */
+	public static final int MAX_REPORTED_FAILURES = 10;
+
+	private final int users;
+	private final long iterations;
+	private final long errors;
+	private final Histogram latency;
+	private final long time;
+	private final String violation;
+
+	/**
+	 * Constructs a <code>CapacityStep</code>.
+	 *
+	 * @param users Number of concurrent users.
+	 * @param iterations Iterations completed in the steady state.
+	 * @param errors Errors and failures in the steady state.
+	 * @param latency Latency in the steady state (ns).
+	 * @param time Length of the steady state (ns).
+	 * @param violation Description of the SLA violation, or 
+	 *        <code>null</code> if the SLA was met.
+	 */
+	public CapacityStep(int users, long iterations, long errors, 
+		Histogram latency, long time, String violation) {
+		
+		this.users = users;
+		this.iterations = iterations;
+		this.errors = errors;
+		this.latency = latency;
+		this.time = time;
+		this.violation = violation;
+	}
+	
+	/**
+	 * Runs a copy of the specified load test with the specified 
+	 * number of users for a duration and measures its steady state.
+	 * The errors and failures of the run are measured, and the 
+	 * first of them are reported on the specified result, so that
+	 * their causes are not lost.
+	 * <p>
+	 * The copy is a plain <code>LoadTest</code> with the configuration
+	 * of the template.  The overrides of a <code>LoadTest</code> 
+	 * subclass, such as of <code>getDelay()</code> or 
+	 * <code>sleep()</code>, are not preserved.
+	 * </p>
+	 *
+	 * @param template Load test.
+	 * @param users Number of concurrent users.
+	 * @param duration Duration (ms).
+	 * @param warmUp Warm-up excluded from the steady state (ms).
+	 * @param sla Policy to check, or <code>null</code> for none.
+	 * @param result Test result to report the first failures 
+	 *        and errors on.
+	 * @return Step.
+	 */
+	static CapacityStep measure(LoadTest template, int users, long duration, 
+		long warmUp, SlaPolicy sla, TestResult result) {
+		
+		LoadTest loadTest = template.withUsers(users);
+		loadTest.setDuration(duration);
+		loadTest.setSlaPolicy(null);
+		loadTest.setInterval(Math.max(1, Math.min(1000, duration / 10)));
+		
+		final List intervals = new ArrayList();
+		loadTest.addIntervalListener(new IntervalListener() {
+			public void intervalEnded(IntervalSnapshot snapshot) {
+				synchronized (intervals) {
+					intervals.add(snapshot);
+				}
+			}
+		});
+		
+		loadTest.run(new ForwardingTestResult(result, MAX_REPORTED_FAILURES));
+		
+		long iterations = 0;
+		long errors = 0;
+		long time = 0;
+		Histogram latency = new Histogram();
+		
+		synchronized (intervals) {
+			for (int i=0; i < intervals.size(); i++) {
+				IntervalSnapshot s = (IntervalSnapshot)intervals.get(i);
+				if (s.getElapsedTime() - s.getIntervalTime() >= warmUp * 1000000L) {
+					iterations += s.getIntervalIterations();
+					errors += s.getIntervalErrors();
+					time += s.getIntervalTime();
+					latency.add(s.getIntervalLatency());
+				}
+			}
+		}
+		
+		String violation = (sla == null) ? null : sla.check(iterations, errors, latency, time);
+		
+		return new CapacityStep(users, iterations, errors, latency, time, violation);
+	}
+	
+	/**
+	 * Returns the number of concurrent users.
+	 *
+	 * @return Number of users.
+	 */
+	public int getUsers() {
+		return users;
+	}
+	
+	/**
+	 * Returns the number of iterations completed in the 
+	 * steady state.
+	 *
+	 * @return Number of iterations.
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Returns the number of errors and failures in the 
+	 * steady state.
+	 *
+	 * @return Number of errors and failures.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Returns the latency in the steady state.
+	 *
+	 * @return Latency histogram (ns).
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Returns the steady-state throughput.
+	 *
+	 * @return Iterations per second.
+	 */
+	public double getThroughput() {
+		return (time <= 0) ? 0.0 : iterations * 1e9 / time;
+	}
+	
+	/**
+	 * Determines whether the SLA was met.
+	 *
+	 * @return <code>true</code> if met; <code>false</code> otherwise.
+	 */
+	public boolean isPassed() {
+		return violation == null;
+	}
+	
+	/**
+	 * Returns the description of the SLA violation.
+	 *
+	 * @return Violation, or <code>null</code> if the SLA was met.
+	 */
+	public String getViolation() {
+		return violation;
+	}
+	
+	/**
+	 * Returns a one-line summary of the step.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		return users + " users: " + Math.round(getThroughput() * 10) / 10.0 + "/s, p50=" +
+			Histogram.toMillis(latency.getValueAtPercentile(50)) + " ms, p99=" +
+			Histogram.toMillis(latency.getValueAtPercentile(99)) + " ms, " +
+			errors + " errors: " + (isPassed() ? "OK" : violation);
+	}
+	
+	/*
+	 * Reports a limited number of failures and errors 
+	 * on another result.
+	 */
+	private static final class ForwardingTestResult extends TestResult {
+		
+		private final TestResult target;
+		private int remaining;
+		
+		ForwardingTestResult(TestResult target, int max) {
+			this.target = target;
+			this.remaining = max;
+		}
+		
+		public synchronized void addError(Test test, Throwable t) {
+			super.addError(test, t);
+			if (remaining > 0) {
+				remaining--;
+				target.addError(test, t);
+			}
+		}
+		
+		public synchronized void addFailure(Test test, AssertionFailedError e) {
+			super.addFailure(test, e);
+			if (remaining > 0) {
+				remaining--;
+				target.addFailure(test, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.clarkware.junitperf;
+
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The <code>ConsoleReporter</code> is an <code>IntervalListener</code>
+ * that prints a line for each interval of a running test.
+ * <p>
+ * Lines are printed asynchronously by a background thread, so 
+ * reporting never blocks the threads being measured.  Any lines 
+ * still queued are printed when the JVM shuts down.  The default
+ * reporter, which prints to the current <code>System.out</code>, 
+ * is also used by <code>TimedTest</code> to print elapsed times.
+ * </p>
+ * <p>
+ * For example, to print the progress of a load test every 
+ * 5 seconds, use:
+ * <blockquote>
+ * <pre>
+ * LoadTest loadTest = new LoadTest(test, 100, 1000);
+ * loadTest.addIntervalListener(ConsoleReporter.getDefault());
+ * loadTest.setInterval(5000);
+ * </pre>
+ * </blockquote>
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.IntervalListener
+ */
+
+public class ConsoleReporter implements IntervalListener {
+
+	private static final ConsoleReporter defaultReporter = new ConsoleReporter(null);
+	
+	private final PrintStream out;
+	private final BlockingQueue lines;
+	private Thread writer;
+
+	/**
+	 * Constructs a <code>ConsoleReporter</code> that prints
+	 * to the specified stream.
+	 *
+	 * @param out Output stream, or <code>null</code> for the 
+	 *        current <code>System.out</code>.
+	 */
+	public ConsoleReporter(PrintStream out) {
+		this.out = out;
+		this.lines = new LinkedBlockingQueue();
+	}
+	
+	/**
+	 * Returns the default reporter, which prints to 
+	 * <code>System.out</code>.
+	 *
+	 * @return Default reporter.
+	 */
+	public static ConsoleReporter getDefault() {
+		return defaultReporter;
+	}
+	
+	/**
+	 * Prints the snapshot of an interval.
+	 *
+	 * @param snapshot Snapshot.
+	 */
+	public void intervalEnded(IntervalSnapshot snapshot) {
+		print(snapshot.toString());
+	}
+	
+	/**
+	 * Queues the specified line for printing.
+	 *
+	 * @param line Line.
+	 */
+	public void print(String line) {
+		startWriter();
+		lines.add(line);
+	}
+	
+	/**
+	 * Waits until all queued lines have been printed.
+	 *
+	 * @param timeout Maximum time to wait (ms).
+	 */
+	public void flush(long timeout) {
+		
+		CountDownLatch flushed = new CountDownLatch(1);
+		
+		startWriter();
+		lines.add(flushed);
+		
+		try {
+			flushed.await(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private synchronized void startWriter() {
+		
+		if (writer != null) {
+			return;
+		}
+		
+		writer = new Thread(new Runnable() {
+			public void run() {
+				while (true) {
+					try {
+						write(lines.take());
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "JUnitPerf console reporter");
+		writer.setDaemon(true);
+		writer.start();
+		
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				flush(1000);
+			}
+		});
+	}
+	
+	private void write(Object line) {
+		
+		if (line instanceof CountDownLatch) {
+			((CountDownLatch)line).countDown();
+			return;
+		}
+		
+		PrintStream stream = (out == null) ? System.out : out;
+		stream.println(line);
+		stream.flush();
+	}
+}
@@ -0,0 +1,28 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>DataFeeder</code> interface defines the common interface
+ * implemented by all classes whose instances hand out test data
+ * records to the concurrent users of a <code>LoadTest</code>.
+ * <p>
+ * Implementations must be safe for use by many threads at once 
+ * and should not serialize users on a shared monitor.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.SharedDataFeeder
+ * @see com.clarkware.junitperf.PartitionedDataFeeder
+ */
+
+public interface DataFeeder {
+
+	/**
+	 * Returns the next test data record for the calling thread.
+	 *
+	 * @return Record, or <code>null</code> if the data 
+	 *         has been exhausted.
+	 */
+	public Object next();
+}
@@ -0,0 +1,312 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>DistributedLoadTest</code> runs the users of a 
+ * <code>LoadTest</code> in several worker JVMs, so that the load 
+ * is not limited by the garbage collector and scheduler of a 
+ * single JVM.
+ * <p>
+ * The load test is defined by the static <code>suite()</code> 
+ * method of a class, which must return a <code>LoadTest</code>.
+ * The <code>DistributedLoadTest</code> acts as the coordinator: 
+ * it forks the worker JVMs, each running a <code>LoadTestWorker</code>
+ * with a slice of the users, waits until all workers are ready, 
+ * starts them together, and merges their results and statistics 
+ * into its own <code>TestResult</code> and 
+ * <code>LoadStatistics</code>.  The workers report to the 
+ * coordinator over a socket, so they could run on other hosts 
+ * by binding the coordinator to a non-loopback address.  A worker
+ * that fails to report its results, for example because its JVM
+ * exits, is reported as an error of its slice of the users.
+ * </p>
+ * <p>
+ * For example, to run the load test defined by 
+ * <code>ExampleLoadTest.suite()</code> in 4 worker JVMs, use:
+ * <blockquote>
+ * <pre>
+ * DistributedLoadTest test = new DistributedLoadTest(ExampleLoadTest.class, 4);
+ * test.setJvmArgs(new String[] { "-Xmx256m" });
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ * @see com.clarkware.junitperf.LoadTestWorker
+ */
+
+public class DistributedLoadTest implements Test {
+
+	private final Class suiteClass;
+	private final int workers;
+	private final ForkedJvm jvm;
+	private InetAddress bindAddress;
+	private int connectTimeout;
+	private int readTimeout;
+	private LoadTest loadTest;
+	private volatile LoadStatistics statistics;
+
+	/**
+	 * Constructs a <code>DistributedLoadTest</code> to run the
+	 * load test of the specified class in the specified number 
+	 * of worker JVMs.
+	 *
+	 * @param suiteClass Class with a static <code>suite()</code> 
+	 *        method returning a <code>LoadTest</code>.
+	 * @param workers Number of worker JVMs.
+	 */
+	public DistributedLoadTest(Class suiteClass, int workers) {
+		
+		if (suiteClass == null) {
+			throw new IllegalArgumentException("Suite class is null");
+		} else if (workers < 1) {
+			throw new IllegalArgumentException("Number of workers must be > 0");
+		}
+		
+		this.suiteClass = suiteClass;
+		this.workers = workers;
+		this.jvm = new ForkedJvm(LoadTestWorker.class.getName());
+		this.bindAddress = InetAddress.getLoopbackAddress();
+		this.connectTimeout = 60000;
+		this.readTimeout = 10000;
+		this.statistics = new LoadStatistics();
+	}
+	
+	/**
+	 * Sets the arguments of the worker JVMs.
+	 *
+	 * @param jvmArgs JVM arguments.
+	 */
+	public void setJvmArgs(String[] jvmArgs) {
+		jvm.setJvmArgs(jvmArgs);
+	}
+	
+	/**
+	 * Sets the address the coordinator listens on for workers.
+	 * The default is the loopback address.
+	 *
+	 * @param bindAddress Address.
+	 */
+	public void setBindAddress(InetAddress bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+	
+	/**
+	 * Sets the maximum time to wait for each worker to connect.
+	 *
+	 * @param connectTimeout Timeout (ms).
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+	
+	/**
+	 * Sets the maximum time a started worker may go without
+	 * reporting to the coordinator before it is considered hung.
+	 * A running worker reports a heartbeat every second.
+	 *
+	 * @param readTimeout Timeout (ms), such as 10000 (default), 
+	 *        or 0 for none.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+	
+	/**
+	 * Returns the merged statistics of the current or most 
+	 * recent run.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Returns the number of tests in this load test.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		try {
+			return getLoadTest().countTestCases();
+		} catch (Exception e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Runs the test.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+		
+		LoadStatistics stats = new LoadStatistics();
+		statistics = stats;
+		
+		int users;
+		try {
+			users = getLoadTest().getUsers();
+		} catch (Exception e) {
+			result.addError(this, e);
+			return;
+		}
+		
+		int workerCount = Math.min(workers, users);
+		Process[] processes = new Process[workerCount];
+		Socket[] sockets = new Socket[workerCount];
+		DataInputStream[] in = new DataInputStream[workerCount];
+		DataOutputStream[] out = new DataOutputStream[workerCount];
+		
+		ServerSocket server = null;
+		try {
+			
+			server = new ServerSocket(0, workerCount, bindAddress);
+			server.setSoTimeout(connectTimeout);
+			
+			for (int i=0; i < workerCount; i++) {
+				int slice = users / workerCount + ((i < users % workerCount) ? 1 : 0);
+				processes[i] = jvm.start(new String[] { 
+					server.getInetAddress().getHostAddress(),
+					String.valueOf(server.getLocalPort()),
+					String.valueOf(i),
+					String.valueOf(slice),
+					suiteClass.getName() });
+			}
+			
+			for (int i=0; i < workerCount; i++) {
+				Socket socket = server.accept();
+				socket.setSoTimeout(connectTimeout);
+				DataInputStream input = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+				int worker = input.readInt();
+				if (worker < 0 || worker >= workerCount || sockets[worker] != null) {
+					socket.close();
+					throw new IOException("Invalid worker number: " + worker);
+				}
+				sockets[worker] = socket;
+				in[worker] = input;
+				out[worker] = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			}
+			
+			for (int i=0; i < workerCount; i++) {
+				sockets[i].setSoTimeout(readTimeout);
+				out[i].writeInt(LoadTestWorker.START);
+				out[i].flush();
+			}
+			
+			for (int i=0; i < workerCount; i++) {
+				String prefix = "[worker " + i + "] ";
+				try {
+					awaitResult(in[i]);
+					LoadTestWorker.readResult(in[i], result, stats, prefix);
+				} catch (IOException e) {
+					result.addError(new RemoteTest(prefix + suiteClass.getName()), 
+						workerFailed(i, processes[i], e));
+				}
+			}
+			
+		} catch (IOException e) {
+			result.addError(this, e);
+		} finally {
+			cleanup(server, sockets, processes);
+		}
+	}
+	
+	/*
+	 * Skips the heartbeats of a worker until its result follows.
+	 */
+	private void awaitResult(DataInputStream in) throws IOException {
+		int message;
+		while ((message = in.readInt()) == LoadTestWorker.HEARTBEAT) {
+		}
+		if (message != LoadTestWorker.RESULT) {
+			throw new IOException("Unexpected message from worker: " + message);
+		}
+	}
+	
+	/*
+	 * Describes the failure of the specified worker, with the
+	 * exit code of its JVM if it has exited.
+	 */
+	private IOException workerFailed(int worker, Process process, IOException cause) {
+		
+		String message = "Worker " + worker + " failed to report its results";
+		try {
+			if (process.waitFor(1, TimeUnit.SECONDS)) {
+				message += " (exit code " + process.exitValue() + ")";
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		return new IOException(message + ": " + cause, cause);
+	}
+	
+	protected void cleanup(ServerSocket server, Socket[] sockets, Process[] processes) {
+		
+		try {
+			if (server != null) {
+				server.close();
+			}
+		} catch (IOException ignored) { }
+		
+		for (int i=0; i < sockets.length; i++) {
+			try {
+				if (sockets[i] != null) {
+					sockets[i].close();
+				}
+			} catch (IOException ignored) { }
+		}
+		
+		for (int i=0; i < processes.length; i++) {
+			if (processes[i] != null) {
+				try {
+					if (!processes[i].waitFor(10, TimeUnit.SECONDS)) {
+						processes[i].destroy();
+					}
+				} catch (InterruptedException e) {
+					processes[i].destroy();
+				}
+			}
+		}
+	}
+	
+	private synchronized LoadTest getLoadTest() throws Exception {
+		if (loadTest == null) {
+			Test test = ForkedJvm.loadSuite(suiteClass.getName());
+			if (!(test instanceof LoadTest)) {
+				throw new IllegalArgumentException(suiteClass.getName() + 
+					".suite() does not return a LoadTest");
+			}
+			loadTest = (LoadTest)test;
+		}
+		return loadTest;
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "DistributedLoadTest (" + workers + " workers): " + suiteClass.getName();
+	}
+}
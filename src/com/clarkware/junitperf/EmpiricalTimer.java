@@ -0,0 +1,128 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>EmpiricalTimer</code> is a <code>Timer</code>
+ * with delays drawn from a measured histogram, such as the
+ * think times observed in production.
+ * <p>
+ * The histogram is specified by its bucket boundaries and the
+ * number of observations in each bucket.  A bucket is chosen 
+ * with a probability proportional to its count and the delay 
+ * is uniformly distributed within the bucket.  For example, 
+ * for 70% of delays between 0 and 1 second and 30% between 
+ * 1 and 5 seconds, use:
+ * <blockquote>
+ * <pre>
+ * Timer timer = new EmpiricalTimer(new long[] { 0, 1000, 5000 },
+ *                                  new long[] { 70, 30 });
+ * </pre>
+ * </blockquote>
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ * 
+ * @see com.clarkware.junitperf.Timer
+ */
+
+public class EmpiricalTimer implements PreciseTimer {
+
+	private final RandomSource random;
+	private final long[] bounds;
+	private final double[] cumulative;
+
+	/**
+	 * Constructs an <code>EmpiricalTimer</code> with the
+	 * specified histogram.
+	 *
+	 * @param bounds Ascending bucket boundaries (ms), one 
+	 *        more than the number of buckets.
+	 * @param counts Number of observations in each bucket.
+	 */
+	public EmpiricalTimer(long[] bounds, long[] counts) {
+		this(bounds, counts, new RandomSource());
+	}
+
+	/**
+	 * Constructs an <code>EmpiricalTimer</code> with the
+	 * specified histogram and seed.
+	 *
+	 * @param bounds Ascending bucket boundaries (ms), one 
+	 *        more than the number of buckets.
+	 * @param counts Number of observations in each bucket.
+	 * @param seed Random seed.
+	 */
+	public EmpiricalTimer(long[] bounds, long[] counts, long seed) {
+		this(bounds, counts, new RandomSource(seed));
+	}
+	
+	private EmpiricalTimer(long[] bounds, long[] counts, RandomSource random) {
+		
+		if (counts.length == 0 || bounds.length != counts.length + 1) {
+			throw new IllegalArgumentException("Number of bucket boundaries " +
+				"must be one more than the number of buckets");
+		}
+		
+		this.bounds = bounds.clone();
+		this.cumulative = new double[counts.length];
+		this.random = random;
+		
+		double total = 0;
+		for (int i=0; i < counts.length; i++) {
+			if (counts[i] < 0 || bounds[i + 1] < bounds[i]) {
+				throw new IllegalArgumentException("Invalid bucket " + i);
+			}
+			total += counts[i];
+			cumulative[i] = total;
+		}
+		
+		if (total == 0) {
+			throw new IllegalArgumentException("Histogram is empty");
+		}
+		
+		for (int i=0; i < cumulative.length; i++) {
+			cumulative[i] /= total;
+		}
+	}
+
+	/**
+	 * Returns the timer delay.
+	 *
+	 * @return Delay (ms).
+	 */
+	public long getDelay() {
+		int bucket = nextBucket();
+		long width = bounds[bucket + 1] - bounds[bucket];
+		return bounds[bucket] + (long)(random.nextDouble() * width);
+	}
+	
+	/**
+	 * Returns the timer delay with a sub-millisecond
+	 * resolution.
+	 *
+	 * @return Delay (ns).
+	 */
+	public long getDelayNanos() {
+		int bucket = nextBucket();
+		long width = bounds[bucket + 1] - bounds[bucket];
+		return Math.round((bounds[bucket] + random.nextDouble() * width) * 1e6);
+	}
+	
+	private int nextBucket() {
+		
+		double u = random.nextDouble();
+		
+		int low = 0;
+		int high = cumulative.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (cumulative[middle] > u) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		
+		return low;
+	}
+}
@@ -0,0 +1,72 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>ExponentialTimer</code> is a <code>Timer</code>
+ * with exponentially distributed delays.
+ * <p>
+ * Exponential delays between the addition of users model
+ * arrivals as a Poisson process, which is typical of 
+ * independent clients.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ * 
+ * @see com.clarkware.junitperf.Timer
+ */
+
+public class ExponentialTimer implements PreciseTimer {
+
+	private final RandomSource random;
+	private final double meanDelay;
+
+	/**
+	 * Constructs an <code>ExponentialTimer</code> with the
+	 * specified mean delay.
+	 *
+	 * @param meanDelay Mean delay (ms).
+	 */
+	public ExponentialTimer(double meanDelay) {
+		this(meanDelay, new RandomSource());
+	}
+
+	/**
+	 * Constructs an <code>ExponentialTimer</code> with the
+	 * specified mean delay and seed.
+	 *
+	 * @param meanDelay Mean delay (ms).
+	 * @param seed Random seed.
+	 */
+	public ExponentialTimer(double meanDelay, long seed) {
+		this(meanDelay, new RandomSource(seed));
+	}
+	
+	private ExponentialTimer(double meanDelay, RandomSource random) {
+		
+		if (meanDelay < 0) {
+			throw new IllegalArgumentException("Mean delay must be >= 0");
+		}
+		
+		this.meanDelay = meanDelay;
+		this.random = random;
+	}
+
+	/**
+	 * Returns the timer delay.
+	 *
+	 * @return Delay (ms).
+	 */
+	public long getDelay() {
+		return Math.round(random.nextExponential() * meanDelay);
+	}
+	
+	/**
+	 * Returns the timer delay with a sub-millisecond
+	 * resolution.
+	 *
+	 * @return Delay (ns).
+	 */
+	public long getDelayNanos() {
+		return Math.round(random.nextExponential() * meanDelay * 1e6);
+	}
+}
@@ -0,0 +1,237 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.Test;
+
+/**
+ * The <code>FailureAggregator</code> groups the failures and errors
+ * of a load test by signature, which consists of the exception type, 
+ * message, and top stack frames, and counts them.
+ * <p>
+ * Only a bounded sample of full instances is retained for each 
+ * signature, and only a bounded number of signatures is tracked;
+ * further signatures are counted under a single overflow signature.
+ * This bounds the memory held by a load test that fails thousands
+ * of times in the same way.
+ * </p>
+ * <p>
+ * By default, only the retained instances should be reported in 
+ * full to the <code>TestResult</code>.  Alternatively, every instance
+ * can be reported, so that the counts of the <code>TestResult</code>
+ * remain exact, while still being grouped by signature.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.FailureSignature
+ */
+
+public class FailureAggregator {
+
+	/**
+	 * Number of stack frames in a signature.  Reflection frames, 
+	 * which change once the JVM inflates reflective calls, are
+	 * not included.
+	 */
+	public static final int STACK_DEPTH = 5;
+	
+	private final int maxSamples;
+	private final int maxSignatures;
+	private final ConcurrentHashMap signatures;
+	private final FailureSignature overflow;
+	private volatile boolean isReportingAll;
+
+	/**
+	 * Constructs a <code>FailureAggregator</code> retaining up to
+	 * 10 instances of each of up to 100 signatures.
+	 */
+	public FailureAggregator() {
+		this(10, 100);
+	}
+	
+	/**
+	 * Constructs a <code>FailureAggregator</code>.
+	 *
+	 * @param maxSamples Maximum instances retained per signature.
+	 * @param maxSignatures Maximum number of signatures.
+	 */
+	public FailureAggregator(int maxSamples, int maxSignatures) {
+		
+		if (maxSamples < 0) {
+			throw new IllegalArgumentException("Maximum samples must be >= 0");
+		} else if (maxSignatures < 1) {
+			throw new IllegalArgumentException("Maximum signatures must be > 0");
+		}
+		
+		this.maxSamples = maxSamples;
+		this.maxSignatures = maxSignatures;
+		this.signatures = new ConcurrentHashMap();
+		this.overflow = new FailureSignature("(other)", null, "", false, 0);
+	}
+	
+	/**
+	 * Counts a failure or error under its signature.
+	 *
+	 * @param test Test.
+	 * @param t Failure or error.
+	 * @return <code>true</code> if the instance should be reported
+	 *         in full; <code>false</code> otherwise.
+	 */
+	public boolean record(Test test, Throwable t) {
+		
+		String type = t.getClass().getName();
+		String message = t.getMessage();
+		String location = getLocation(t);
+		String key = type + '\u0000' + message + '\u0000' + location;
+		
+		FailureSignature signature = (FailureSignature)signatures.get(key);
+		
+		if (signature == null) {
+			
+			if (signatures.size() >= maxSignatures) {
+				return overflow.record(test, t) || isReportingAll;
+			}
+			
+			FailureSignature created = new FailureSignature(type, message, 
+				location, FailureSignature.isFailure(t), maxSamples);
+			signature = (FailureSignature)signatures.putIfAbsent(key, created);
+			if (signature == null) {
+				signature = created;
+			}
+		}
+		
+		return signature.record(test, t) || isReportingAll;
+	}
+	
+	/**
+	 * Sets whether every failure and error should be reported
+	 * in full, rather than only those retained in the sample.
+	 *
+	 * @param isReportingAll <code>true</code> to report every
+	 *        instance; <code>false</code> (default) to report
+	 *        the retained instances.
+	 */
+	public void setReportingAll(boolean isReportingAll) {
+		this.isReportingAll = isReportingAll;
+	}
+	
+	/**
+	 * Indicates whether every failure and error is reported in full.
+	 *
+	 * @return <code>true</code> if every instance is reported;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isReportingAll() {
+		return isReportingAll;
+	}
+	
+	/**
+	 * Returns the signatures, most frequent first, including
+	 * the overflow signature if any instances overflowed.
+	 *
+	 * @return List of <code>FailureSignature</code> instances.
+	 */
+	public List getSignatures() {
+		
+		List result = new ArrayList(signatures.values());
+		if (overflow.getCount() > 0) {
+			result.add(overflow);
+		}
+		
+		Collections.sort(result, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long c1 = ((FailureSignature)o1).getCount();
+				long c2 = ((FailureSignature)o2).getCount();
+				return (c1 > c2) ? -1 : ((c1 < c2) ? 1 : 0);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the most frequent signatures.
+	 *
+	 * @param count Maximum number of signatures.
+	 * @return List of <code>FailureSignature</code> instances.
+	 */
+	public List getTopSignatures(int count) {
+		List result = getSignatures();
+		return result.subList(0, Math.min(count, result.size()));
+	}
+	
+	/**
+	 * Returns the number of failures and errors counted.
+	 *
+	 * @return Count.
+	 */
+	public long getCount() {
+		long count = 0;
+		List list = getSignatures();
+		for (int i=0; i < list.size(); i++) {
+			count += ((FailureSignature)list.get(i)).getCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of failures and errors counted
+	 * but not retained.
+	 *
+	 * @return Count.
+	 */
+	public long getSuppressedCount() {
+		long count = 0;
+		List list = getSignatures();
+		for (int i=0; i < list.size(); i++) {
+			count += ((FailureSignature)list.get(i)).getSuppressedCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns a summary of the top signatures.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		
+		List top = getTopSignatures(5);
+		StringBuffer summary = new StringBuffer();
+		
+		for (int i=0; i < top.size(); i++) {
+			summary.append(i == 0 ? "" : "; ").append(top.get(i));
+		}
+		
+		return summary.toString();
+	}
+	
+	private static String getLocation(Throwable t) {
+		
+		StackTraceElement[] stack = t.getStackTrace();
+		StringBuffer location = new StringBuffer();
+		int depth = 0;
+		
+		for (int i=0; i < stack.length && depth < STACK_DEPTH; i++) {
+			if (!isReflection(stack[i].getClassName())) {
+				location.append(depth == 0 ? "" : "\n").append(stack[i]);
+				depth++;
+			}
+		}
+		
+		return location.toString();
+	}
+	
+	private static boolean isReflection(String className) {
+		return className.startsWith("java.lang.reflect.") ||
+			className.startsWith("sun.reflect.") ||
+			className.startsWith("jdk.internal.reflect.") ||
+			className.startsWith("java.lang.invoke.");
+	}
+}
@@ -0,0 +1,162 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestFailure;
+
+/**
+ * The <code>FailureSignature</code> class counts the failures or
+ * errors that share the same exception type, message, and top
+ * stack frames, and retains a bounded sample of them.
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.FailureAggregator
+ */
+
+public class FailureSignature {
+
+	private final String type;
+	private final String message;
+	private final String location;
+	private final boolean failure;
+	private final AtomicLong count;
+	private final List samples;
+	private final int maxSamples;
+	private volatile boolean isFull;
+
+	FailureSignature(String type, String message, String location, 
+		boolean failure, int maxSamples) {
+		
+		this.type = type;
+		this.message = message;
+		this.location = location;
+		this.failure = failure;
+		this.count = new AtomicLong();
+		this.samples = new ArrayList();
+		this.maxSamples = maxSamples;
+		this.isFull = (maxSamples <= 0);
+	}
+	
+	/**
+	 * Counts an instance and retains it if the sample
+	 * is not yet full.
+	 *
+	 * @return <code>true</code> if the instance was retained;
+	 *         <code>false</code> otherwise.
+	 */
+	boolean record(Test test, Throwable t) {
+		
+		count.incrementAndGet();
+		
+		//
+		// Once the sample is full, further instances are only
+		// counted, without contending on the sample.
+		//
+		if (isFull) {
+			return false;
+		}
+		
+		synchronized (samples) {
+			if (samples.size() < maxSamples) {
+				samples.add(new TestFailure(test, t));
+				isFull = (samples.size() >= maxSamples);
+				return true;
+			}
+			isFull = true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the exception class name.
+	 *
+	 * @return Class name.
+	 */
+	public String getType() {
+		return type;
+	}
+	
+	/**
+	 * Returns the exception message.
+	 *
+	 * @return Message, or <code>null</code>.
+	 */
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Returns the top stack frames of the exception.
+	 *
+	 * @return Stack frames, separated by newlines.
+	 */
+	public String getLocation() {
+		return location;
+	}
+	
+	/**
+	 * Determines whether the signature is of assertion 
+	 * failures rather than errors.
+	 *
+	 * @return <code>true</code> for failures;
+	 *         <code>false</code> for errors.
+	 */
+	public boolean isFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Returns the number of instances.
+	 *
+	 * @return Count.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Returns the retained instances.
+	 *
+	 * @return List of <code>TestFailure</code> instances.
+	 */
+	public List getSamples() {
+		synchronized (samples) {
+			return Collections.unmodifiableList(new ArrayList(samples));
+		}
+	}
+	
+	/**
+	 * Returns the number of instances that were counted
+	 * but not retained.
+	 *
+	 * @return Count.
+	 */
+	public long getSuppressedCount() {
+		synchronized (samples) {
+			return getCount() - samples.size();
+		}
+	}
+	
+	/**
+	 * Returns a one-line description of the signature.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		String first = (location.length() == 0) ? "" : 
+			" at " + location.split("\n")[0];
+		return getCount() + " x " + type + 
+			(message == null ? "" : ": " + message) + first;
+	}
+	
+	static boolean isFailure(Throwable t) {
+		return t instanceof AssertionFailedError;
+	}
+}
@@ -0,0 +1,134 @@
+package com.clarkware.junitperf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+
+/**
+ * The <code>ForkedJvm</code> class launches a main class 
+ * in a new JVM with the same Java installation and, by default,
+ * the same class path as the current JVM.
+ * <p>
+ * The output of the forked JVM is inherited by the current 
+ * process.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ */
+
+public class ForkedJvm {
+
+	private static final int MAX_STRING_LENGTH = 16000;
+	
+	private final String mainClass;
+	private String[] jvmArgs;
+	private String classpath;
+
+	/**
+	 * Constructs a <code>ForkedJvm</code> to run the 
+	 * specified main class.
+	 *
+	 * @param mainClass Main class name.
+	 */
+	public ForkedJvm(String mainClass) {
+		this.mainClass = mainClass;
+		this.jvmArgs = new String[0];
+		this.classpath = System.getProperty("java.class.path");
+	}
+	
+	/**
+	 * Sets the arguments of the forked JVM, such as
+	 * <code>-Xmx512m</code>.
+	 *
+	 * @param jvmArgs JVM arguments.
+	 */
+	public void setJvmArgs(String[] jvmArgs) {
+		this.jvmArgs = jvmArgs.clone();
+	}
+	
+	/**
+	 * Sets the class path of the forked JVM.
+	 *
+	 * @param classpath Class path.
+	 */
+	public void setClasspath(String classpath) {
+		this.classpath = classpath;
+	}
+	
+	/**
+	 * Starts the forked JVM.
+	 *
+	 * @param args Arguments of the main class.
+	 * @return Forked process.
+	 * @throws IOException If the JVM cannot be started.
+	 */
+	public Process start(String[] args) throws IOException {
+		
+		String java = System.getProperty("java.home") + 
+			File.separator + "bin" + File.separator + "java";
+		
+		List command = new ArrayList();
+		command.add(java);
+		command.addAll(Arrays.asList(jvmArgs));
+		command.add("-cp");
+		command.add(classpath);
+		command.add(mainClass);
+		command.addAll(Arrays.asList(args));
+		
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.inheritIO();
+		
+		return builder.start();
+	}
+	
+	/**
+	 * Returns the test returned by the static <code>suite()</code>
+	 * method of the specified class.
+	 *
+	 * @param className Class name.
+	 * @return Test.
+	 * @throws Exception If the suite cannot be created.
+	 */
+	static Test loadSuite(String className) throws Exception {
+		
+		Class suiteClass = Class.forName(className);
+		Method suiteMethod = suiteClass.getMethod("suite", new Class[0]);
+		
+		try {
+			return (Test)suiteMethod.invoke(null, new Object[0]);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getTargetException();
+			throw (cause instanceof Exception) ? (Exception)cause : e;
+		}
+	}
+	
+	/**
+	 * Truncates the specified string to a length that can
+	 * be transferred between JVMs.
+	 *
+	 * @param s String.
+	 * @return Truncated string.
+	 */
+	static String truncate(String s) {
+		if (s == null) {
+			return "";
+		}
+		return (s.length() > MAX_STRING_LENGTH) ? s.substring(0, MAX_STRING_LENGTH) : s;
+	}
+	
+	static String toString(Throwable t) {
+		StringWriter stringWriter = new StringWriter();
+		PrintWriter writer = new PrintWriter(stringWriter);
+		t.printStackTrace(writer);
+		return stringWriter.toString();
+	}
+}
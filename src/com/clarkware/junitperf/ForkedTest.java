@@ -0,0 +1,255 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>ForkedTest</code> runs a performance test in a 
+ * fresh JVM, so that the JIT profile, heap state, and leftover 
+ * threads of one test cannot affect the measurements of the next.
+ * <p>
+ * The test is defined by the static <code>suite()</code> method
+ * of a class.  The forked JVM runs it with a 
+ * <code>ForkedTestRunner</code>, which streams the test events 
+ * back as they occur, and the <code>ForkedTest</code> replays them
+ * on its own <code>TestResult</code>, so test runners and listeners
+ * see the remote tests as if they were run locally.  Stopping the
+ * <code>TestResult</code> terminates the forked JVM.
+ * </p>
+ * <p>
+ * For example, to run each top-level performance test of a 
+ * suite in its own JVM with a 256 MB heap, use:
+ * <blockquote>
+ * <pre>
+ * String[] jvmArgs = { "-Xmx256m" };
+ * TestSuite suite = new TestSuite();
+ * suite.addTest(new ForkedTest(ExampleTimedTest.class, jvmArgs));
+ * suite.addTest(new ForkedTest(ExampleLoadTest.class, jvmArgs));
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.ForkedTestRunner
+ */
+
+public class ForkedTest implements Test {
+
+	private final Class suiteClass;
+	private final ForkedJvm jvm;
+	private int connectTimeout;
+	private int readTimeout;
+	private volatile int testCount;
+
+	/**
+	 * Constructs a <code>ForkedTest</code> to run the test
+	 * of the specified class in a forked JVM.
+	 *
+	 * @param suiteClass Class with a static <code>suite()</code> method.
+	 */
+	public ForkedTest(Class suiteClass) {
+		this(suiteClass, new String[0]);
+	}
+	
+	/**
+	 * Constructs a <code>ForkedTest</code> to run the test
+	 * of the specified class in a forked JVM with the 
+	 * specified JVM arguments.
+	 *
+	 * @param suiteClass Class with a static <code>suite()</code> method.
+	 * @param jvmArgs JVM arguments.
+	 */
+	public ForkedTest(Class suiteClass, String[] jvmArgs) {
+		
+		if (suiteClass == null) {
+			throw new IllegalArgumentException("Suite class is null");
+		}
+		
+		this.suiteClass = suiteClass;
+		this.jvm = new ForkedJvm(ForkedTestRunner.class.getName());
+		this.jvm.setJvmArgs(jvmArgs);
+		this.connectTimeout = 60000;
+		this.readTimeout = 10000;
+		this.testCount = -1;
+	}
+	
+	/**
+	 * Sets the maximum time to wait for the forked JVM 
+	 * to connect.
+	 *
+	 * @param connectTimeout Timeout (ms).
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Sets the maximum time the forked JVM may go without
+	 * reporting before it is considered hung and terminated.
+	 * A running forked JVM reports at least every second.
+	 *
+	 * @param readTimeout Timeout (ms), such as 10000 (default), 
+	 *        or 0 for none.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Returns the number of tests, as reported by the forked
+	 * JVM of the most recent run.  The suite is not created in
+	 * the current JVM, so the number is 1 until the first run.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		int count = testCount;
+		return (count < 0) ? 1 : count;
+	}
+
+	/**
+	 * Runs the test in a forked JVM.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+		
+		ServerSocket server = null;
+		Socket socket = null;
+		Process process = null;
+		
+		try {
+			
+			server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+			server.setSoTimeout(connectTimeout);
+			
+			process = jvm.start(new String[] {
+				server.getInetAddress().getHostAddress(),
+				String.valueOf(server.getLocalPort()),
+				suiteClass.getName() });
+			
+			socket = server.accept();
+			socket.setSoTimeout(readTimeout);
+			
+			DataInputStream in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream()));
+			
+			if (!replay(in, result)) {
+				process.destroy();
+			}
+			
+		} catch (SocketTimeoutException e) {
+			if (socket == null) {
+				result.addError(this, e);
+			} else {
+				process.destroy();
+				result.addError(this, new IOException("Forked JVM did not report for " + 
+					readTimeout + " ms and was terminated"));
+			}
+		} catch (EOFException e) {
+			result.addError(this, 
+				new IOException("Forked JVM exited before the test completed"));
+		} catch (IOException e) {
+			result.addError(this, e);
+		} finally {
+			cleanup(server, socket, process);
+		}
+	}
+	
+	/*
+	 * Replays the events of the forked JVM on the result.
+	 * Returns false if the result was stopped.
+	 */
+	private boolean replay(DataInputStream in, TestResult result) throws IOException {
+		
+		Map tests = new HashMap();
+		
+		while (true) {
+			
+			if (result.shouldStop()) {
+				return false;
+			}
+			
+			int type = in.readByte();
+			
+			if (type == ForkedTestRunner.DONE) {
+				return true;
+			} else if (type == ForkedTestRunner.HEARTBEAT) {
+				continue;
+			} else if (type == ForkedTestRunner.COUNT) {
+				testCount = in.readInt();
+				continue;
+			}
+			
+			Integer id = Integer.valueOf(in.readInt());
+			
+			switch (type) {
+				case ForkedTestRunner.TEST:
+					tests.put(id, new RemoteTest(in.readUTF(), in.readInt()));
+					break;
+				case ForkedTestRunner.START:
+					result.startTest((Test)tests.get(id));
+					break;
+				case ForkedTestRunner.END:
+					result.endTest((Test)tests.get(id));
+					break;
+				case ForkedTestRunner.FAILURE:
+					result.addFailure((Test)tests.get(id), 
+						new AssertionFailedError(in.readUTF()));
+					break;
+				case ForkedTestRunner.ERROR:
+					result.addError((Test)tests.get(id), 
+						new RemoteTestException(in.readUTF(), in.readUTF(), in.readUTF()));
+					break;
+				default:
+					throw new IOException("Unknown event from forked JVM: " + type);
+			}
+		}
+	}
+	
+	protected void cleanup(ServerSocket server, Socket socket, Process process) {
+		
+		try {
+			if (socket != null) {
+				socket.close();
+			}
+			if (server != null) {
+				server.close();
+			}
+		} catch (IOException ignored) { }
+		
+		if (process != null) {
+			try {
+				if (!process.waitFor(10, TimeUnit.SECONDS)) {
+					process.destroy();
+				}
+			} catch (InterruptedException e) {
+				process.destroy();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "ForkedTest: " + suiteClass.getName();
+	}
+}
@@ -0,0 +1,253 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestListener;
+import junit.framework.TestResult;
+
+/**
+ * The <code>ForkedTestRunner</code> runs the test returned by
+ * the static <code>suite()</code> method of a class in a JVM 
+ * forked by a <code>ForkedTest</code>, and streams the test 
+ * events back to the parent JVM.  The events are queued without
+ * locking and written in batches by a separate thread, so that
+ * reporting them does not serialize the users of a load test.
+ * <p>
+ * Usage:
+ * <blockquote>
+ * <pre>
+ * java com.clarkware.junitperf.ForkedTestRunner host port suiteClass
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.ForkedTest
+ */
+
+public class ForkedTestRunner implements TestListener {
+
+	static final int TEST = 1;
+	static final int START = 2;
+	static final int END = 3;
+	static final int FAILURE = 4;
+	static final int ERROR = 5;
+	static final int DONE = 6;
+	static final int COUNT = 7;
+	static final int HEARTBEAT = 8;
+	
+	private static final long FLUSH_INTERVAL = 100;
+	private static final long HEARTBEAT_INTERVAL = 1000;
+	
+	private final DataOutputStream out;
+	private final Map testIds;
+	private final Queue events;
+	private final Thread writer;
+	private volatile boolean isConnected;
+	
+	ForkedTestRunner(DataOutputStream out) {
+		this.out = out;
+		this.testIds = new IdentityHashMap();
+		this.events = new ConcurrentLinkedQueue();
+		this.writer = new Thread("JUnitPerf forked test writer") {
+			public void run() {
+				writeEvents();
+			}
+		};
+		this.writer.setDaemon(true);
+		this.isConnected = true;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		if (args.length != 3) {
+			System.err.println("Usage: ForkedTestRunner host port suiteClass");
+			System.exit(2);
+		}
+		
+		Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+		try {
+			
+			DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream()));
+			ForkedTestRunner runner = new ForkedTestRunner(out);
+			runner.start();
+			
+			TestResult result = new TestResult();
+			result.addListener(runner);
+			
+			try {
+				Test suite = ForkedJvm.loadSuite(args[2]);
+				runner.count(suite);
+				suite.run(result);
+			} catch (Exception e) {
+				result.addError(new RemoteTest(args[2]), e);
+			}
+			
+			runner.done();
+			
+		} finally {
+			socket.close();
+		}
+		
+		System.exit(0);
+	}
+	
+	public void startTest(Test test) {
+		add(new Event(START, test, null));
+	}
+
+	public void endTest(Test test) {
+		add(new Event(END, test, null));
+	}
+
+	public void addFailure(Test test, AssertionFailedError e) {
+		add(new Event(FAILURE, test, e));
+	}
+
+	public void addError(Test test, Throwable t) {
+		add(new Event(ERROR, test, t));
+	}
+	
+	/*
+	 * Queues the event for the writer thread, so that the 
+	 * users of a load test neither wait on a lock nor on
+	 * the socket.
+	 */
+	private void add(Event event) {
+		if (!isConnected) {
+			throw new IllegalStateException("Lost connection to parent JVM");
+		}
+		events.add(event);
+	}
+	
+	void start() {
+		writer.start();
+	}
+	
+	void count(Test test) throws IOException {
+		synchronized (out) {
+			out.writeByte(COUNT);
+			out.writeInt(test.countTestCases());
+		}
+	}
+	
+	void done() throws IOException {
+		
+		writer.interrupt();
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		synchronized (out) {
+			write();
+			out.writeByte(DONE);
+			out.flush();
+		}
+	}
+	
+	/*
+	 * Writes the queued events in batches every flush interval,
+	 * and a heartbeat when there were none for a heartbeat 
+	 * interval, so that the parent JVM can tell a running test
+	 * from a hung one.
+	 */
+	private void writeEvents() {
+		
+		long lastWriteTime = System.currentTimeMillis();
+		
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Thread.sleep(FLUSH_INTERVAL);
+				long now = System.currentTimeMillis();
+				synchronized (out) {
+					if (write()) {
+						lastWriteTime = now;
+					} else if (now - lastWriteTime >= HEARTBEAT_INTERVAL) {
+						out.writeByte(HEARTBEAT);
+						lastWriteTime = now;
+					} else {
+						continue;
+					}
+					out.flush();
+				}
+			}
+		} catch (InterruptedException ignored) {
+		} catch (IOException e) {
+			isConnected = false;
+		}
+	}
+	
+	/*
+	 * Writes the queued events.  Returns false if there
+	 * were none.
+	 */
+	private boolean write() throws IOException {
+		
+		boolean isWritten = false;
+		Event event;
+		
+		while ((event = (Event)events.poll()) != null) {
+			int id = testId(event.test);
+			out.writeByte(event.type);
+			out.writeInt(id);
+			if (event.type == FAILURE) {
+				out.writeUTF(ForkedJvm.truncate(event.throwable.getMessage()));
+			} else if (event.type == ERROR) {
+				Throwable t = event.throwable;
+				out.writeUTF(t.getClass().getName());
+				out.writeUTF(ForkedJvm.truncate(t.getMessage()));
+				out.writeUTF(ForkedJvm.truncate(ForkedJvm.toString(t)));
+			}
+			isWritten = true;
+		}
+		
+		return isWritten;
+	}
+	
+	/*
+	 * Returns the id of the specified test, describing
+	 * the test to the parent JVM on first use.
+	 */
+	private int testId(Test test) throws IOException {
+		
+		Integer id = (Integer)testIds.get(test);
+		
+		if (id == null) {
+			id = Integer.valueOf(testIds.size());
+			testIds.put(test, id);
+			out.writeByte(TEST);
+			out.writeInt(id.intValue());
+			out.writeUTF(ForkedJvm.truncate(String.valueOf(test)));
+			out.writeInt(test.countTestCases());
+		}
+		
+		return id.intValue();
+	}
+	
+	private static final class Event {
+		
+		final int type;
+		final Test test;
+		final Throwable throwable;
+		
+		Event(int type, Test test, Throwable throwable) {
+			this.type = type;
+			this.test = test;
+			this.throwable = throwable;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>GaussianTimer</code> is a <code>Timer</code>
+ * with normally distributed delays.  Negative delays are 
+ * truncated to zero.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ * 
+ * @see com.clarkware.junitperf.Timer
+ */
+
+public class GaussianTimer implements PreciseTimer {
+
+	private final RandomSource random;
+	private final double meanDelay;
+	private final double deviation;
+
+	/**
+	 * Constructs a <code>GaussianTimer</code> with the
+	 * specified mean delay and standard deviation.
+	 *
+	 * @param meanDelay Mean delay (ms).
+	 * @param deviation Standard deviation (ms).
+	 */
+	public GaussianTimer(double meanDelay, double deviation) {
+		this(meanDelay, deviation, new RandomSource());
+	}
+
+	/**
+	 * Constructs a <code>GaussianTimer</code> with the
+	 * specified mean delay, standard deviation, and seed.
+	 *
+	 * @param meanDelay Mean delay (ms).
+	 * @param deviation Standard deviation (ms).
+	 * @param seed Random seed.
+	 */
+	public GaussianTimer(double meanDelay, double deviation, long seed) {
+		this(meanDelay, deviation, new RandomSource(seed));
+	}
+	
+	private GaussianTimer(double meanDelay, double deviation, RandomSource random) {
+		
+		if (deviation < 0) {
+			throw new IllegalArgumentException("Standard deviation must be >= 0");
+		}
+		
+		this.meanDelay = meanDelay;
+		this.deviation = deviation;
+		this.random = random;
+	}
+
+	/**
+	 * Returns the timer delay.
+	 *
+	 * @return Delay (ms).
+	 */
+	public long getDelay() {
+		return Math.max(0, Math.round(meanDelay + random.nextGaussian() * deviation));
+	}
+	
+	/**
+	 * Returns the timer delay with a sub-millisecond
+	 * resolution.
+	 *
+	 * @return Delay (ns).
+	 */
+	public long getDelayNanos() {
+		return Math.max(0, Math.round((meanDelay + random.nextGaussian() * deviation) * 1e6));
+	}
+}
@@ -0,0 +1,359 @@
+package com.clarkware.junitperf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The <code>Histogram</code> class records the distribution of
+ * non-negative values, such as response times in nanoseconds, 
+ * in logarithmic buckets with a relative precision of about 1.6%.
+ * <p>
+ * Recording is lock-free, so many threads can record into the 
+ * same histogram while others read percentiles from it.  Reads 
+ * taken while values are being recorded are not atomic across 
+ * buckets, which is fine for reporting purposes.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ */
+
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = 
+		SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong total;
+	private final AtomicLong min;
+	private final AtomicLong max;
+
+	/**
+	 * Constructs an empty <code>Histogram</code>.
+	 */
+	public Histogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		min = new AtomicLong(Long.MAX_VALUE);
+		max = new AtomicLong(Long.MIN_VALUE);
+	}
+	
+	/**
+	 * Records the specified value.  Negative values are
+	 * recorded as zero.
+	 *
+	 * @param value Value.
+	 */
+	public void record(long value) {
+		
+		if (value < 0) {
+			value = 0;
+		}
+		
+		counts.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		
+		long current;
+		while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+		}
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+		}
+	}
+	
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return Count.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Returns the sum of the recorded values.
+	 *
+	 * @return Total.
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+	
+	/**
+	 * Returns the mean of the recorded values.
+	 *
+	 * @return Mean, or zero if no values were recorded.
+	 */
+	public double getMean() {
+		long n = getCount();
+		return (n == 0) ? 0.0 : (double)getTotal() / n;
+	}
+	
+	/**
+	 * Returns the smallest recorded value.
+	 *
+	 * @return Minimum, or zero if no values were recorded.
+	 */
+	public long getMin() {
+		long value = min.get();
+		return (value == Long.MAX_VALUE) ? 0 : value;
+	}
+	
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return Maximum, or zero if no values were recorded.
+	 */
+	public long getMax() {
+		long value = max.get();
+		return (value == Long.MIN_VALUE) ? 0 : value;
+	}
+	
+	/**
+	 * Returns the value below which the specified percentage
+	 * of the recorded values fall.
+	 *
+	 * @param percentile Percentile (0 - 100).
+	 * @return Value, or zero if no values were recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		
+		long n = getCount();
+		if (n == 0) {
+			return 0;
+		}
+		
+		long target = (long)Math.ceil(Math.min(percentile, 100.0) / 100.0 * n);
+		target = Math.max(1, target);
+		
+		long cumulative = 0;
+		for (int i=0; i < BUCKETS; i++) {
+			cumulative += counts.get(i);
+			if (cumulative >= target) {
+				return Math.max(getMin(), Math.min(getMax(), highestValue(i)));
+			}
+		}
+		
+		return getMax();
+	}
+	
+	/**
+	 * Returns the number of recorded values less than or
+	 * equal to the specified value, to within the precision
+	 * of the histogram.
+	 *
+	 * @param value Value.
+	 * @return Count.
+	 */
+	public long getCountAtOrBelow(long value) {
+		
+		if (value < 0) {
+			return 0;
+		}
+		
+		long cumulative = 0;
+		int last = bucketIndex(value);
+		for (int i=0; i <= last; i++) {
+			cumulative += counts.get(i);
+		}
+		
+		return cumulative;
+	}
+	
+	/**
+	 * Adds the values recorded in the specified histogram
+	 * to this histogram.
+	 *
+	 * @param other Histogram.
+	 */
+	public void add(Histogram other) {
+		
+		for (int i=0; i < BUCKETS; i++) {
+			long n = other.counts.get(i);
+			if (n != 0) {
+				counts.addAndGet(i, n);
+			}
+		}
+		
+		count.addAndGet(other.getCount());
+		total.addAndGet(other.getTotal());
+		
+		if (other.getCount() > 0) {
+			long current;
+			long value = other.getMin();
+			while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+			}
+			value = other.getMax();
+			while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			}
+		}
+	}
+	
+	/**
+	 * Returns a copy of this histogram.
+	 *
+	 * @return Copy.
+	 */
+	public Histogram copy() {
+		Histogram copy = new Histogram();
+		copy.add(this);
+		return copy;
+	}
+	
+	/**
+	 * Returns a histogram of the values recorded in this 
+	 * histogram since the specified earlier copy was taken.
+	 * The minimum and maximum of the difference are estimated
+	 * from its buckets.
+	 *
+	 * @param earlier Earlier copy of this histogram.
+	 * @return Difference.
+	 */
+	public Histogram since(Histogram earlier) {
+		
+		Histogram difference = new Histogram();
+		
+		for (int i=0; i < BUCKETS; i++) {
+			long n = counts.get(i) - earlier.counts.get(i);
+			if (n > 0) {
+				difference.counts.set(i, n);
+				if (difference.count.get() == 0) {
+					difference.min.set(lowestValue(i));
+				}
+				difference.max.set(highestValue(i));
+				difference.count.addAndGet(n);
+			}
+		}
+		
+		difference.total.set(Math.max(0, getTotal() - earlier.getTotal()));
+		
+		return difference;
+	}
+	
+	/**
+	 * Writes this histogram to the specified output.
+	 *
+	 * @param out Output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		
+		int buckets = 0;
+		for (int i=0; i < BUCKETS; i++) {
+			if (counts.get(i) != 0) {
+				buckets++;
+			}
+		}
+		
+		out.writeInt(buckets);
+		for (int i=0; i < BUCKETS && buckets > 0; i++) {
+			long n = counts.get(i);
+			if (n != 0) {
+				out.writeShort(i);
+				out.writeLong(n);
+				buckets--;
+			}
+		}
+		
+		out.writeLong(getTotal());
+		out.writeLong(min.get());
+		out.writeLong(max.get());
+	}
+	
+	/**
+	 * Reads a histogram written by <code>writeTo()</code>
+	 * from the specified input.
+	 *
+	 * @param in Input.
+	 * @return Histogram.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static Histogram readFrom(DataInput in) throws IOException {
+		
+		Histogram histogram = new Histogram();
+		
+		int buckets = in.readInt();
+		for (int i=0; i < buckets; i++) {
+			int index = in.readShort();
+			long n = in.readLong();
+			histogram.counts.set(index, n);
+			histogram.count.addAndGet(n);
+		}
+		
+		histogram.total.set(in.readLong());
+		histogram.min.set(in.readLong());
+		histogram.max.set(in.readLong());
+		
+		return histogram;
+	}
+	
+	/**
+	 * Returns a summary of this histogram with values
+	 * formatted as milliseconds, assuming that the recorded
+	 * values are nanoseconds.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		return "count=" + getCount() +
+			", mean=" + toMillis(getMean()) + " ms" +
+			", p50=" + toMillis(getValueAtPercentile(50)) + " ms" +
+			", p90=" + toMillis(getValueAtPercentile(90)) + " ms" +
+			", p99=" + toMillis(getValueAtPercentile(99)) + " ms" +
+			", max=" + toMillis(getMax()) + " ms";
+	}
+	
+	/**
+	 * Formats the specified number of nanoseconds as
+	 * milliseconds with three decimals.
+	 *
+	 * @param nanos Nanoseconds.
+	 * @return Milliseconds.
+	 */
+	public static String toMillis(double nanos) {
+		return String.valueOf(Math.round(nanos / 1000.0) / 1000.0);
+	}
+	
+	static int bucketIndex(long value) {
+		
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int mantissa = (int)(value >>> shift) - SUB_BUCKETS;
+		
+		return SUB_BUCKETS + (shift * SUB_BUCKETS) + mantissa;
+	}
+	
+	static long lowestValue(int index) {
+		
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int mantissa = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		
+		return ((long)(SUB_BUCKETS + mantissa)) << shift;
+	}
+	
+	static long highestValue(int index) {
+		return (index == BUCKETS - 1) ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+	}
+	
+	static int getBucketCount() {
+		return BUCKETS;
+	}
+	
+	long getBucket(int index) {
+		return counts.get(index);
+	}
+}
@@ -0,0 +1,847 @@
+package com.clarkware.junitperf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>HttpDriver</code> is a non-blocking HTTP/1.1 client
+ * for driving load against a single server from a few threads.
+ * <p>
+ * The driver keeps a fixed number of persistent connections to the
+ * server, which are served by a small number of selector threads.
+ * Requests are spread over the connections in turn, and up to the
+ * pipeline depth of requests are written to a connection before
+ * the response to the first one is read.  A connection closed by
+ * the server is reopened for the requests not yet written, while
+ * the requests awaiting a response on it fail.
+ * </p>
+ * <p>
+ * Each request returns a <code>CompletableFuture</code> of its
+ * <code>HttpResponse</code>, so the driver is typically used from an
+ * <code>AsyncTestCase</code> run by an <code>AsyncLoadTest</code>.
+ * The futures complete on the selector threads, so their dependent
+ * actions should not block.  The latency of each response, from
+ * writing the request until reading the response, is recorded in
+ * the <code>LoadStatistics</code> of the driver, broken down by
+ * method and path.  The time a request waits for a free slot in
+ * the pipeline of its connection is not included.  A request sent
+ * by a user of a <code>LoadTest</code>, or by the dispatching thread
+ * of an <code>AsyncLoadTest</code>, is also recorded by method and
+ * path in the test statistics of that load test, alongside the
+ * operation that sent it.  For example:
+ * <blockquote>
+ * <pre>
+ * HttpDriver driver = new HttpDriver(new InetSocketAddress("localhost", 8080), 8, 4, 2);
+ * driver.start();
+ * CompletableFuture response = driver.get("/index.html");
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.AsyncLoadTest
+ */
+
+public class HttpDriver {
+
+	private final InetSocketAddress address;
+	private final int pipelineDepth;
+	private final Map headers;
+	private final Connection[] connections;
+	private final SelectorLoop[] loops;
+	private final AtomicInteger nextConnection;
+	private volatile LoadStatistics statistics;
+	private volatile boolean started;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs an <code>HttpDriver</code> without pipelining,
+	 * served by one selector thread.
+	 *
+	 * @param address Server address.
+	 * @param connections Number of connections.
+	 */
+	public HttpDriver(InetSocketAddress address, int connections) {
+		this(address, connections, 1, 1);
+	}
+
+	/**
+	 * Constructs an <code>HttpDriver</code>.
+	 *
+	 * @param address Server address.
+	 * @param connections Number of connections.
+	 * @param pipelineDepth Maximum number of requests awaiting
+	 *        a response on a connection.
+	 * @param selectors Number of selector threads.
+	 */
+	public HttpDriver(InetSocketAddress address, int connections,
+		int pipelineDepth, int selectors) {
+
+		if (connections < 1) {
+			throw new IllegalArgumentException("Number of connections must be > 0");
+		} else if (pipelineDepth < 1) {
+			throw new IllegalArgumentException("Pipeline depth must be > 0");
+		} else if (selectors < 1) {
+			throw new IllegalArgumentException("Number of selectors must be > 0");
+		}
+
+		this.address = address;
+		this.pipelineDepth = pipelineDepth;
+		this.headers = new LinkedHashMap();
+		this.connections = new Connection[connections];
+		this.loops = new SelectorLoop[Math.min(selectors, connections)];
+		this.nextConnection = new AtomicInteger();
+		this.statistics = new LoadStatistics();
+
+		headers.put("Host", address.getHostString() + ":" + address.getPort());
+	}
+
+	/**
+	 * Sets a header sent with every request.
+	 *
+	 * @param name Header name.
+	 * @param value Header value.
+	 */
+	public synchronized void setHeader(String name, String value) {
+		if (started) {
+			throw new IllegalStateException("Driver already started");
+		}
+		headers.put(name, value);
+	}
+
+	/**
+	 * Sets the statistics in which the latency of each response
+	 * is recorded.
+	 *
+	 * @param statistics Statistics.
+	 */
+	public void setStatistics(LoadStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Returns the statistics in which the latency of each
+	 * response is recorded.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Starts the selector threads and opens the connections.
+	 *
+	 * @throws IOException If a selector cannot be opened.
+	 */
+	public synchronized void start() throws IOException {
+
+		if (started) {
+			throw new IllegalStateException("Driver already started");
+		}
+
+		for (int i=0; i < loops.length; i++) {
+			loops[i] = new SelectorLoop(i);
+		}
+		for (int i=0; i < connections.length; i++) {
+			connections[i] = new Connection(loops[i % loops.length]);
+			loops[i % loops.length].connections.add(connections[i]);
+		}
+
+		started = true;
+
+		for (int i=0; i < loops.length; i++) {
+			loops[i].thread.start();
+		}
+		for (int i=0; i < connections.length; i++) {
+			connections[i].loop.schedule(connections[i]);
+		}
+	}
+
+	/**
+	 * Closes the connections and stops the selector threads.
+	 * Requests that have not completed fail.
+	 */
+	public synchronized void close() {
+
+		if (!started || closed) {
+			return;
+		}
+
+		closed = true;
+
+		for (int i=0; i < loops.length; i++) {
+			loops[i].selector.wakeup();
+		}
+		for (int i=0; i < loops.length; i++) {
+			try {
+				loops[i].thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Sends a <code>GET</code> request.
+	 *
+	 * @param path Request path.
+	 * @return Future of the <code>HttpResponse</code>.
+	 */
+	public CompletableFuture get(String path) {
+		return send("GET", path, null, null);
+	}
+
+	/**
+	 * Sends a <code>POST</code> request.
+	 *
+	 * @param path Request path.
+	 * @param contentType Content type of the body.
+	 * @param body Body.
+	 * @return Future of the <code>HttpResponse</code>.
+	 */
+	public CompletableFuture post(String path, String contentType, byte[] body) {
+		Map requestHeaders = new LinkedHashMap();
+		requestHeaders.put("Content-Type", contentType);
+		return send("POST", path, requestHeaders, body);
+	}
+
+	/**
+	 * Sends a request.
+	 *
+	 * @param method Request method.
+	 * @param path Request path.
+	 * @param requestHeaders Additional headers, or <code>null</code>.
+	 * @param body Body, or <code>null</code> for none.
+	 * @return Future of the <code>HttpResponse</code>, which
+	 *         completes exceptionally with an <code>IOException</code>
+	 *         if the request cannot be sent or the connection is
+	 *         closed before the response is read.
+	 */
+	public CompletableFuture send(String method, String path, Map requestHeaders, byte[] body) {
+
+		if (!started || closed) {
+			throw new IllegalStateException("Driver is not running");
+		}
+
+		Exchange exchange = new Exchange(method, path,
+			encode(method, path, requestHeaders, body), getLoadTestStatistics());
+
+		int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+		Connection connection = connections[index];
+		connection.submitted.add(exchange);
+		connection.loop.schedule(connection);
+
+		if (closed) {
+			exchange.future.completeExceptionally(new IOException("Driver closed"));
+		}
+
+		return exchange.future;
+	}
+
+	/*
+	 * Returns the statistics of the load test the current thread
+	 * sends requests for, if any.
+	 */
+	private static LoadStatistics getLoadTestStatistics() {
+		AsyncLoadTest asyncLoadTest = AsyncLoadTest.getCurrent();
+		if (asyncLoadTest != null) {
+			return asyncLoadTest.getStatistics();
+		}
+		LoadTest loadTest = LoadTest.getCurrent();
+		if (loadTest != null) {
+			return loadTest.getStatistics();
+		}
+		return null;
+	}
+	
+	private byte[] encode(String method, String path, Map requestHeaders, byte[] body) {
+
+		StringBuffer head = new StringBuffer();
+		head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+		appendHeaders(head, headers);
+		if (requestHeaders != null) {
+			appendHeaders(head, requestHeaders);
+		}
+		if (body != null) {
+			head.append("Content-Length: ").append(body.length).append("\r\n");
+		}
+		head.append("\r\n");
+
+		byte[] headBytes;
+		try {
+			headBytes = head.toString().getBytes("ISO-8859-1");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.toString());
+		}
+
+		if (body == null || body.length == 0) {
+			return headBytes;
+		}
+
+		byte[] request = new byte[headBytes.length + body.length];
+		System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+		System.arraycopy(body, 0, request, headBytes.length, body.length);
+		return request;
+	}
+
+	private static void appendHeaders(StringBuffer head, Map map) {
+		for (Iterator i = map.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry entry = (Map.Entry)i.next();
+			head.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+		}
+	}
+
+	/**
+	 * Returns the driver description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "HttpDriver: " + address + " (" + connections.length +
+			" connections, pipeline depth " + pipelineDepth + ")";
+	}
+
+	/*
+	 * A request and the future of its response.
+	 */
+	private static final class Exchange {
+
+		final String method;
+		final String path;
+		final byte[] request;
+		final CompletableFuture future;
+		final LoadStatistics loadTestStatistics;
+		long sent;
+
+		Exchange(String method, String path, byte[] request, 
+			LoadStatistics loadTestStatistics) {
+			this.method = method;
+			this.path = path;
+			this.request = request;
+			this.future = new CompletableFuture();
+			this.loadTestStatistics = loadTestStatistics;
+		}
+	}
+
+	/*
+	 * A selector thread serving some of the connections.
+	 */
+	private final class SelectorLoop implements Runnable {
+
+		final Selector selector;
+		final Thread thread;
+		final List connections;
+		final ConcurrentLinkedQueue ready;
+		final AtomicBoolean isWoken;
+
+		SelectorLoop(int index) throws IOException {
+			selector = Selector.open();
+			connections = new ArrayList();
+			ready = new ConcurrentLinkedQueue();
+			isWoken = new AtomicBoolean();
+			thread = new Thread(this, "JUnitPerf HTTP driver " + index);
+			thread.setDaemon(true);
+		}
+
+		void schedule(Connection connection) {
+			ready.add(connection);
+			if (isWoken.compareAndSet(false, true)) {
+				selector.wakeup();
+			}
+		}
+
+		public void run() {
+
+			try {
+
+				while (!closed) {
+
+					selector.select();
+					isWoken.set(false);
+
+					Connection connection;
+					while ((connection = (Connection)ready.poll()) != null) {
+						connection.process();
+					}
+
+					for (Iterator i = selector.selectedKeys().iterator(); i.hasNext(); ) {
+						SelectionKey key = (SelectionKey)i.next();
+						i.remove();
+						connection = (Connection)key.attachment();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isConnectable()) {
+							connection.finishConnect();
+						} else {
+							if (key.isReadable()) {
+								connection.read();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.write();
+							}
+						}
+					}
+				}
+
+			} catch (IOException e) {
+				// Fail the pending requests below
+			} finally {
+				IOException closedException = new IOException("Driver closed");
+				for (int i=0; i < connections.size(); i++) {
+					Connection connection = (Connection)connections.get(i);
+					connection.drainSubmitted();
+					connection.fail(closedException, true);
+				}
+				try {
+					selector.close();
+				} catch (IOException ignored) { }
+			}
+		}
+	}
+
+	/*
+	 * A persistent connection, only accessed by its selector
+	 * thread except for the queue of submitted requests.
+	 */
+	private final class Connection {
+
+		final SelectorLoop loop;
+		final ConcurrentLinkedQueue submitted;
+		final LinkedList waiting;
+		final LinkedList inFlight;
+		final ResponseParser parser;
+		SocketChannel channel;
+		SelectionKey key;
+		boolean isConnected;
+		boolean isClosing;
+		ByteBuffer out;
+
+		Connection(SelectorLoop loop) {
+			this.loop = loop;
+			this.submitted = new ConcurrentLinkedQueue();
+			this.waiting = new LinkedList();
+			this.inFlight = new LinkedList();
+			this.parser = new ResponseParser();
+		}
+
+		void drainSubmitted() {
+			Exchange exchange;
+			while ((exchange = (Exchange)submitted.poll()) != null) {
+				waiting.add(exchange);
+			}
+		}
+
+		void process() {
+			drainSubmitted();
+			if (channel == null) {
+				open();
+			} else if (isConnected) {
+				write();
+			}
+		}
+
+		void open() {
+			try {
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				isConnected = channel.connect(address);
+				key = channel.register(loop.selector,
+					isConnected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+				if (isConnected) {
+					write();
+				}
+			} catch (IOException e) {
+				fail(e, true);
+			}
+		}
+
+		void finishConnect() {
+			try {
+				if (channel.finishConnect()) {
+					isConnected = true;
+					key.interestOps(SelectionKey.OP_READ);
+					write();
+				}
+			} catch (IOException e) {
+				fail(e, true);
+			}
+		}
+
+		void write() {
+			try {
+
+				while (true) {
+
+					if (out == null || !out.hasRemaining()) {
+
+						out = null;
+						if (waiting.isEmpty() || isClosing || inFlight.size() >= pipelineDepth) {
+							break;
+						}
+
+						Exchange exchange = (Exchange)waiting.removeFirst();
+						if (exchange.future.isDone()) {
+							continue;
+						}
+
+						exchange.sent = System.nanoTime();
+						inFlight.add(exchange);
+						out = ByteBuffer.wrap(exchange.request);
+					}
+
+					channel.write(out);
+					if (out.hasRemaining()) {
+						break;
+					}
+				}
+
+				int ops = SelectionKey.OP_READ;
+				if (out != null && out.hasRemaining()) {
+					ops |= SelectionKey.OP_WRITE;
+				}
+				key.interestOps(ops);
+
+			} catch (IOException e) {
+				fail(e, false);
+			}
+		}
+
+		void read() {
+			try {
+
+				int count = parser.read(channel);
+				boolean isEof = (count < 0);
+
+				while (!inFlight.isEmpty()) {
+					Exchange exchange = (Exchange)inFlight.getFirst();
+					if (!parser.parse("HEAD".equals(exchange.method), isEof)) {
+						break;
+					}
+					inFlight.removeFirst();
+					complete(exchange);
+					if (parser.isClose()) {
+						isClosing = true;
+						break;
+					}
+				}
+
+				if (isEof) {
+					fail(new IOException("Connection closed by server"), false);
+				} else if (isClosing && inFlight.isEmpty()) {
+					fail(new IOException("Connection closed by server"), false);
+				} else {
+					write();
+				}
+
+			} catch (IOException e) {
+				fail(e, false);
+			}
+		}
+
+		void complete(Exchange exchange) {
+
+			long latency = System.nanoTime() - exchange.sent;
+
+			String name = exchange.method + " " + exchange.path;
+			LoadStatistics stats = statistics;
+			stats.recordIteration(latency);
+			stats.recordTest(name, latency);
+			
+			//
+			// The load test records the operation sending the request
+			// as an iteration, so only the request itself is added.
+			//
+			LoadStatistics testStats = exchange.loadTestStatistics;
+			if (testStats != null && testStats != stats) {
+				testStats.recordTest(name, latency);
+			}
+
+			exchange.future.complete(parser.getResponse(latency));
+		}
+
+		/*
+		 * Closes the connection and fails the requests awaiting
+		 * a response, and all requests if the server cannot be
+		 * reached.  Otherwise, the connection is reopened for the
+		 * requests not yet written.
+		 */
+		void fail(IOException e, boolean isUnreachable) {
+
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException ignored) { }
+			}
+
+			channel = null;
+			key = null;
+			isConnected = false;
+			isClosing = false;
+			out = null;
+			parser.reset();
+
+			failAll(inFlight, e);
+			if (isUnreachable || closed) {
+				failAll(waiting, e);
+			} else if (!waiting.isEmpty()) {
+				loop.schedule(this);
+			}
+		}
+
+		private void failAll(LinkedList exchanges, IOException e) {
+			while (!exchanges.isEmpty()) {
+				((Exchange)exchanges.removeFirst()).future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/*
+	 * An incremental parser of the responses read from
+	 * a connection.
+	 */
+	private static final class ResponseParser {
+
+		private static final int HEAD = 0;
+		private static final int BODY = 1;
+		private static final int CHUNK_SIZE = 2;
+		private static final int CHUNK_DATA = 3;
+		private static final int TRAILER = 4;
+
+		private static final int MAX_HEAD = 65536;
+
+		private byte[] buffer = new byte[16384];
+		private int start;
+		private int end;
+		private int state;
+		private int status;
+		private String reason;
+		private Map headers;
+		private boolean isClose;
+		private boolean isUntilClose;
+		private long remaining;
+		private ByteArrayOutputStream body;
+
+		int read(SocketChannel channel) throws IOException {
+
+			if (end == buffer.length) {
+				if (start > 0) {
+					System.arraycopy(buffer, start, buffer, 0, end - start);
+					end -= start;
+					start = 0;
+				} else {
+					byte[] larger = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, larger, 0, end);
+					buffer = larger;
+				}
+			}
+
+			int count = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+			if (count > 0) {
+				end += count;
+			}
+			return count;
+		}
+
+		/*
+		 * Parses the buffered bytes and returns true when
+		 * a response is complete.
+		 */
+		boolean parse(boolean isHead, boolean isEof) throws IOException {
+
+			while (true) {
+
+				switch (state) {
+
+				case HEAD:
+					int headEnd = indexOf("\r\n\r\n");
+					if (headEnd < 0) {
+						if (end - start > MAX_HEAD) {
+							throw new IOException("Response head too large");
+						}
+						return false;
+					}
+					parseHead(new String(buffer, start, headEnd - start, "ISO-8859-1"));
+					start = headEnd + 4;
+					if (status / 100 == 1) {
+						continue;
+					}
+					body = new ByteArrayOutputStream();
+					String length = (String)headers.get("content-length");
+					String encoding = (String)headers.get("transfer-encoding");
+					if (isHead || status == 204 || status == 304) {
+						return finish();
+					} else if (encoding != null && encoding.toLowerCase().indexOf("chunked") >= 0) {
+						state = CHUNK_SIZE;
+					} else if (length != null) {
+						remaining = parseLong(length.trim(), 10);
+						state = BODY;
+					} else {
+						isUntilClose = true;
+						isClose = true;
+						state = BODY;
+					}
+					break;
+
+				case BODY:
+					if (isUntilClose) {
+						take(end - start);
+						return isEof && finish();
+					}
+					take((int)Math.min(remaining, end - start));
+					if (remaining > 0) {
+						return false;
+					}
+					return finish();
+
+				case CHUNK_SIZE:
+					String sizeLine = readLine();
+					if (sizeLine == null) {
+						return false;
+					}
+					int extension = sizeLine.indexOf(';');
+					if (extension >= 0) {
+						sizeLine = sizeLine.substring(0, extension);
+					}
+					remaining = parseLong(sizeLine.trim(), 16);
+					state = (remaining == 0) ? TRAILER : CHUNK_DATA;
+					break;
+
+				case CHUNK_DATA:
+					take((int)Math.min(remaining, end - start));
+					if (remaining > 0 || end - start < 2) {
+						return false;
+					}
+					start += 2;
+					state = CHUNK_SIZE;
+					break;
+
+				case TRAILER:
+					String trailer = readLine();
+					if (trailer == null) {
+						return false;
+					} else if (trailer.length() == 0) {
+						return finish();
+					}
+					break;
+				}
+			}
+		}
+
+		boolean isClose() {
+			return isClose;
+		}
+
+		HttpResponse getResponse(long latency) {
+			return new HttpResponse(status, reason, headers, body.toByteArray(), latency);
+		}
+
+		void reset() {
+			start = 0;
+			end = 0;
+			state = HEAD;
+			isClose = false;
+			isUntilClose = false;
+		}
+
+		private boolean finish() {
+			state = HEAD;
+			isUntilClose = false;
+			return true;
+		}
+
+		private void parseHead(String head) throws IOException {
+
+			String[] lines = head.split("\r\n");
+			String[] statusLine = lines[0].split(" ", 3);
+			if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+				throw new IOException("Invalid status line: " + lines[0]);
+			}
+
+			status = (int)parseLong(statusLine[1], 10);
+			reason = (statusLine.length > 2) ? statusLine[2] : "";
+			headers = new LinkedHashMap();
+
+			for (int i=1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon <= 0) {
+					continue;
+				}
+				String name = lines[i].substring(0, colon).trim().toLowerCase();
+				String value = lines[i].substring(colon + 1).trim();
+				String previous = (String)headers.get(name);
+				headers.put(name, (previous == null) ? value : previous + ", " + value);
+			}
+
+			String connection = (String)headers.get("connection");
+			if (statusLine[0].equals("HTTP/1.0")) {
+				isClose = !"keep-alive".equalsIgnoreCase(connection);
+			} else {
+				isClose = "close".equalsIgnoreCase(connection);
+			}
+		}
+
+		private void take(int count) {
+			body.write(buffer, start, count);
+			start += count;
+			remaining -= count;
+		}
+
+		private String readLine() throws IOException {
+			int lineEnd = indexOf("\r\n");
+			if (lineEnd < 0) {
+				return null;
+			}
+			String line = new String(buffer, start, lineEnd - start, "ISO-8859-1");
+			start = lineEnd + 2;
+			return line;
+		}
+
+		private int indexOf(String delimiter) {
+			int length = delimiter.length();
+			for (int i=start; i <= end - length; i++) {
+				int j = 0;
+				while (j < length && buffer[i + j] == delimiter.charAt(j)) {
+					j++;
+				}
+				if (j == length) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private static long parseLong(String value, int radix) throws IOException {
+			try {
+				long result = Long.parseLong(value, radix);
+				if (result < 0) {
+					throw new IOException("Invalid length: " + value);
+				}
+				return result;
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid number: " + value);
+			}
+		}
+	}
+}
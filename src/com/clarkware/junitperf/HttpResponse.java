@@ -0,0 +1,111 @@
+package com.clarkware.junitperf;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The <code>HttpResponse</code> class is a response received 
+ * by an <code>HttpDriver</code>.
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.HttpDriver
+ */
+
+public class HttpResponse {
+
+	private final int status;
+	private final String reason;
+	private final Map headers;
+	private final byte[] body;
+	private final long latency;
+
+	HttpResponse(int status, String reason, Map headers, byte[] body, long latency) {
+		this.status = status;
+		this.reason = reason;
+		this.headers = Collections.unmodifiableMap(headers);
+		this.body = body;
+		this.latency = latency;
+	}
+	
+	/**
+	 * Returns the status code.
+	 *
+	 * @return Status code.
+	 */
+	public int getStatus() {
+		return status;
+	}
+	
+	/**
+	 * Returns the reason phrase.
+	 *
+	 * @return Reason phrase.
+	 */
+	public String getReason() {
+		return reason;
+	}
+	
+	/**
+	 * Returns the value of the specified header.  The values of
+	 * a repeated header are joined with commas.
+	 *
+	 * @param name Header name, in any case.
+	 * @return Value, or <code>null</code> if none.
+	 */
+	public String getHeader(String name) {
+		return (String)headers.get(name.toLowerCase());
+	}
+	
+	/**
+	 * Returns the headers.
+	 *
+	 * @return Map of lower-case header names to values.
+	 */
+	public Map getHeaders() {
+		return headers;
+	}
+	
+	/**
+	 * Returns the body.
+	 *
+	 * @return Body.
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+	
+	/**
+	 * Returns the body decoded as UTF-8.
+	 *
+	 * @return Body.
+	 */
+	public String getBodyAsString() {
+		try {
+			return new String(body, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.toString());
+		}
+	}
+	
+	/**
+	 * Returns the time from writing the first byte of the
+	 * request until reading the last byte of the response.
+	 *
+	 * @return Latency (ns).
+	 */
+	public long getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Returns a description of the response.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "HTTP " + status + " " + reason + " (" + body.length + " bytes)";
+	}
+}
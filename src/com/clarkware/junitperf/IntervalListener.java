@@ -0,0 +1,28 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>IntervalListener</code> interface defines the common
+ * interface implemented by all classes that are notified of the
+ * progress of a running <code>LoadTest</code> at regular intervals.
+ * <p>
+ * Listeners are notified on a separate sampling thread and 
+ * should return quickly.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.IntervalSnapshot
+ * @see com.clarkware.junitperf.ConsoleReporter
+ */
+
+public interface IntervalListener {
+
+	/**
+	 * Called at the end of each interval, and once more with
+	 * the last, possibly shorter, interval when the test ends.
+	 *
+	 * @param snapshot Snapshot of the interval.
+	 */
+	public void intervalEnded(IntervalSnapshot snapshot);
+}
@@ -0,0 +1,140 @@
+package com.clarkware.junitperf;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The <code>IntervalSampler</code> takes snapshots of the
+ * <code>LoadStatistics</code> of a running test at regular 
+ * intervals on a background thread and notifies 
+ * <code>IntervalListener</code> instances.
+ * <p>
+ * Snapshots are computed by comparing copies of the cumulative 
+ * histograms, so the users recording into them are never paused.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.IntervalListener
+ */
+
+public class IntervalSampler implements Runnable {
+
+	private final String testName;
+	private final LoadStatistics statistics;
+	private final long interval;
+	private final List listeners;
+	private final Thread thread;
+	
+	private Histogram lastLatency;
+	private long lastTime;
+	private long lastErrors;
+	private volatile boolean stopped;
+
+	/**
+	 * Constructs an <code>IntervalSampler</code>.
+	 *
+	 * @param testName Description of the sampled test.
+	 * @param statistics Statistics to sample.
+	 * @param interval Sampling interval (ms).
+	 * @param listeners <code>IntervalListener</code> instances.
+	 */
+	public IntervalSampler(String testName, LoadStatistics statistics,
+		long interval, List listeners) {
+		
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be > 0");
+		}
+		
+		this.testName = testName;
+		this.statistics = statistics;
+		this.interval = interval;
+		this.listeners = listeners;
+		this.lastLatency = new Histogram();
+		this.lastTime = 0;
+		this.lastErrors = 0;
+		
+		this.thread = new Thread(this, "JUnitPerf sampler: " + testName);
+		this.thread.setDaemon(true);
+	}
+	
+	/**
+	 * Starts sampling.
+	 */
+	public void start() {
+		thread.start();
+	}
+	
+	/**
+	 * Stops sampling and notifies the listeners of the
+	 * last interval.
+	 */
+	public void stop() {
+		
+		stopped = true;
+		thread.interrupt();
+		
+		try {
+			thread.join();
+		} catch (InterruptedException ignored) { }
+		
+		sample(true);
+	}
+	
+	public void run() {
+		
+		long next = System.nanoTime();
+		
+		while (!stopped) {
+			
+			next += interval * 1000000L;
+			long remaining = next - System.nanoTime();
+			
+			if (remaining > 0) {
+				try {
+					Thread.sleep(remaining / 1000000L, (int)(remaining % 1000000L));
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			
+			if (!stopped) {
+				sample(false);
+			}
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of the interval since the last 
+	 * snapshot and notifies the listeners.
+	 *
+	 * @param last <code>true</code> if this is the last interval.
+	 */
+	protected synchronized void sample(boolean last) {
+		
+		long time = statistics.getElapsedTime();
+		Histogram latency = statistics.getLatency().copy();
+		long errors = statistics.getErrorCount() + statistics.getFailureCount();
+		
+		Histogram intervalLatency = latency.since(lastLatency);
+		
+		IntervalSnapshot snapshot = new IntervalSnapshot(testName,
+			time, time - lastTime, latency.getCount(), intervalLatency.getCount(),
+			errors, errors - lastErrors, statistics.getActiveUsers(), 
+			intervalLatency, last);
+		
+		lastLatency = latency;
+		lastTime = time;
+		lastErrors = errors;
+		
+		for (Iterator i = listeners.iterator(); i.hasNext(); ) {
+			IntervalListener listener = (IntervalListener)i.next();
+			try {
+				listener.intervalEnded(snapshot);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
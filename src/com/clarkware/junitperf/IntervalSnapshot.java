@@ -0,0 +1,183 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>IntervalSnapshot</code> class describes the progress 
+ * of a running test during one reporting interval.
+ * <p>
+ * The latency percentiles are computed from the iterations 
+ * completed during the interval only.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.IntervalListener
+ */
+
+public class IntervalSnapshot {
+
+	private final String testName;
+	private final long elapsedTime;
+	private final long intervalTime;
+	private final long iterations;
+	private final long intervalIterations;
+	private final long errors;
+	private final long intervalErrors;
+	private final int activeUsers;
+	private final Histogram intervalLatency;
+	private final boolean last;
+
+	/**
+	 * Constructs an <code>IntervalSnapshot</code>.
+	 *
+	 * @param testName Test description.
+	 * @param elapsedTime Time since the test started (ns).
+	 * @param intervalTime Length of the interval (ns).
+	 * @param iterations Iterations completed since the test started.
+	 * @param intervalIterations Iterations completed in the interval.
+	 * @param errors Errors and failures since the test started.
+	 * @param intervalErrors Errors and failures in the interval.
+	 * @param activeUsers Number of users running.
+	 * @param intervalLatency Latency of the iterations completed 
+	 *        in the interval (ns).
+	 * @param last <code>true</code> if this is the last interval.
+	 */
+	public IntervalSnapshot(String testName, long elapsedTime, long intervalTime,
+		long iterations, long intervalIterations, long errors, long intervalErrors,
+		int activeUsers, Histogram intervalLatency, boolean last) {
+		
+		this.testName = testName;
+		this.elapsedTime = elapsedTime;
+		this.intervalTime = intervalTime;
+		this.iterations = iterations;
+		this.intervalIterations = intervalIterations;
+		this.errors = errors;
+		this.intervalErrors = intervalErrors;
+		this.activeUsers = activeUsers;
+		this.intervalLatency = intervalLatency;
+		this.last = last;
+	}
+	
+	/**
+	 * Returns the description of the test.
+	 *
+	 * @return Description.
+	 */
+	public String getTestName() {
+		return testName;
+	}
+	
+	/**
+	 * Returns the time since the test started.
+	 *
+	 * @return Elapsed time (ns).
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+	
+	/**
+	 * Returns the length of the interval.
+	 *
+	 * @return Interval time (ns).
+	 */
+	public long getIntervalTime() {
+		return intervalTime;
+	}
+	
+	/**
+	 * Returns the number of iterations completed since 
+	 * the test started.
+	 *
+	 * @return Number of iterations.
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Returns the number of iterations completed in
+	 * the interval.
+	 *
+	 * @return Number of iterations.
+	 */
+	public long getIntervalIterations() {
+		return intervalIterations;
+	}
+	
+	/**
+	 * Returns the throughput during the interval.
+	 *
+	 * @return Iterations per second.
+	 */
+	public double getThroughput() {
+		return (intervalTime <= 0) ? 0.0 : intervalIterations * 1e9 / intervalTime;
+	}
+	
+	/**
+	 * Returns the number of errors and failures since 
+	 * the test started.
+	 *
+	 * @return Number of errors and failures.
+	 */
+	public long getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Returns the number of errors and failures in 
+	 * the interval.
+	 *
+	 * @return Number of errors and failures.
+	 */
+	public long getIntervalErrors() {
+		return intervalErrors;
+	}
+	
+	/**
+	 * Returns the number of users running at the end of
+	 * the interval.
+	 *
+	 * @return Number of active users.
+	 */
+	public int getActiveUsers() {
+		return activeUsers;
+	}
+	
+	/**
+	 * Returns the latency of the iterations completed in 
+	 * the interval.
+	 *
+	 * @return Latency histogram (ns).
+	 */
+	public Histogram getIntervalLatency() {
+		return intervalLatency;
+	}
+	
+	/**
+	 * Determines whether this is the last interval of the test.
+	 *
+	 * @return <code>true</code> if this is the last interval;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isLast() {
+		return last;
+	}
+	
+	/**
+	 * Returns a one-line summary of the interval.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		return testName + " [" + (elapsedTime / 1000000000L) + " s]: " +
+			iterations + " iterations (" + 
+			Math.round(getThroughput() * 10) / 10.0 + "/s), " +
+			errors + " errors (+" + intervalErrors + "), " +
+			activeUsers + " users, p50=" + 
+			Histogram.toMillis(intervalLatency.getValueAtPercentile(50)) + " ms, p90=" + 
+			Histogram.toMillis(intervalLatency.getValueAtPercentile(90)) + " ms, p99=" + 
+			Histogram.toMillis(intervalLatency.getValueAtPercentile(99)) + " ms, max=" +
+			Histogram.toMillis(intervalLatency.getMax()) + " ms";
+	}
+}
@@ -0,0 +1,562 @@
+package com.clarkware.junitperf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The <code>LoadReport</code> records a run of a <code>LoadTest</code>
+ * and writes it as a structured JSON result and as a self-contained
+ * HTML report.
+ * <p>
+ * The report contains the configuration of the load test, the
+ * iteration, error and failure counts, the overall throughput, the
+ * latency percentiles and distribution, the garbage collections
+ * during the run, the statistics of each individual test, the most
+ * frequent failure signatures, and the throughput and latency of 
+ * each interval.
+ * The HTML report draws its charts as inline SVG, so it can be
+ * viewed without any other files.
+ * </p>
+ * <p>
+ * A load test writes a report for each run to the directory set
+ * with <code>LoadTest.setReportDirectory()</code> or, by default,
+ * to the directory named by the <code>junitperf.report.dir</code>
+ * system property.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ */
+
+public class LoadReport implements IntervalListener {
+
+	/*
+	 * Upper bounds of the latency distribution bins (ms).
+	 */
+	private static final double[] BINS = {
+		0.01, 0.02, 0.05, 0.1, 0.2, 0.5, 1, 2, 5, 10, 20, 50,
+		100, 200, 500, 1000, 2000, 5000, 10000, 20000, 50000, 100000
+	};
+
+	private static final double[] PERCENTILES = { 50, 90, 95, 99, 99.9 };
+
+	private final LoadTest test;
+	private final String name;
+	private final long beginTime;
+	private final long beginCollections;
+	private final long beginCollectionTime;
+	private final List intervals;
+
+	private LoadStatistics statistics;
+	private long collections;
+	private long collectionTime;
+
+	/**
+	 * Constructs a <code>LoadReport</code> for a run of the
+	 * specified load test which is about to begin.
+	 *
+	 * @param test Load test.
+	 */
+	public LoadReport(LoadTest test) {
+		this.test = test;
+		this.name = test.toString();
+		this.beginTime = System.currentTimeMillis();
+		this.beginCollections = getCollectionCount();
+		this.beginCollectionTime = getCollectionTime();
+		this.intervals = new ArrayList();
+	}
+
+	/**
+	 * Records the snapshot of an interval.
+	 *
+	 * @param snapshot Snapshot.
+	 */
+	public synchronized void intervalEnded(IntervalSnapshot snapshot) {
+		intervals.add(snapshot);
+	}
+
+	/**
+	 * Completes the report with the statistics of the run.
+	 *
+	 * @param statistics Statistics.
+	 */
+	public synchronized void finish(LoadStatistics statistics) {
+		this.statistics = statistics;
+		this.collections = getCollectionCount() - beginCollections;
+		this.collectionTime = getCollectionTime() - beginCollectionTime;
+	}
+
+	/**
+	 * Writes the JSON and HTML reports to the specified directory.
+	 *
+	 * @param dir Report directory.
+	 * @param baseName File name without extension.
+	 * @throws IOException If the reports cannot be written.
+	 */
+	public void writeTo(File dir, String baseName) throws IOException {
+
+		dir.mkdirs();
+
+		PrintWriter json = open(new File(dir, baseName + ".json"));
+		try {
+			writeJson(json);
+		} finally {
+			json.close();
+		}
+
+		PrintWriter html = open(new File(dir, baseName + ".html"));
+		try {
+			writeHtml(html);
+		} finally {
+			html.close();
+		}
+	}
+
+	/**
+	 * Writes the report in JSON.
+	 *
+	 * @param out Writer.
+	 */
+	public synchronized void writeJson(PrintWriter out) {
+
+		Histogram latency = statistics.getLatency();
+		long elapsed = statistics.getElapsedTime();
+
+		out.println("{");
+		out.println("  \"test\": " + quote(name) + ",");
+		out.println("  \"startTime\": " + quote(formatTime(beginTime)) + ",");
+		out.println("  \"configuration\": {");
+		out.println("    \"users\": " + test.getUsers() + ",");
+		out.println("    \"iterations\": " + test.getIterations() + ",");
+		out.println("    \"timer\": " + quote(describe(test.getTimer())) + ",");
+		out.println("    \"thinkTimer\": " + quote(describe(test.getThinkTimer())) + ",");
+		out.println("    \"pacing\": " + quote(describePacing()) + ",");
+		out.println("    \"simultaneousStart\": " + test.isSimultaneousStart() + ",");
+		out.println("    \"atomic\": " + test.isEnforceTestAtomicity());
+		out.println("  },");
+		out.println("  \"elapsedMillis\": " + elapsed / 1000000L + ",");
+		out.println("  \"iterations\": " + latency.getCount() + ",");
+		out.println("  \"errors\": " + statistics.getErrorCount() + ",");
+		out.println("  \"failures\": " + statistics.getFailureCount() + ",");
+		out.println("  \"throughput\": " + number(getThroughput()) + ",");
+		out.println("  \"latency\": " + histogramJson(latency, "  ") + ",");
+		out.println("  \"thinkTime\": " + histogramJson(statistics.getThinkTime(), "  ") + ",");
+		out.println("  \"scheduleLag\": " + histogramJson(statistics.getScheduleLag(), "  ") + ",");
+		out.println("  \"releaseLag\": " + histogramJson(statistics.getReleaseLag(), "  ") + ",");
+		out.println("  \"skippedIterations\": " + statistics.getSkippedIterations() + ",");
+		out.println("  \"delayError\": " + histogramJson(statistics.getDelayError(), "  ") + ",");
+		if (test.getReleaseSpread() >= 0) {
+			out.println("  \"releaseSpreadMillis\": " + millis(test.getReleaseSpread()) + ",");
+		}
+		out.println("  \"gc\": {");
+		out.println("    \"collections\": " + collections + ",");
+		out.println("    \"timeMillis\": " + collectionTime);
+		out.println("  },");
+		out.println("  \"tests\": [");
+		writeTestsJson(out, statistics.getTestStatistics());
+		out.println("  ],");
+		out.println("  \"scenarios\": [");
+		writeTestsJson(out, statistics.getScenarioStatistics());
+		out.println("  ],");
+		out.println("  \"failureSignatures\": [");
+		List signatures = statistics.getFailureAggregator().getTopSignatures(10);
+		for (int i=0; i < signatures.size(); i++) {
+			FailureSignature f = (FailureSignature)signatures.get(i);
+			out.print("    {\"type\": " + quote(f.getType()) +
+				", \"message\": " + (f.getMessage() == null ? "null" : quote(f.getMessage())) +
+				", \"failure\": " + f.isFailure() +
+				", \"count\": " + f.getCount() +
+				", \"suppressed\": " + f.getSuppressedCount() +
+				", \"location\": " + quote(f.getLocation()) + "}");
+			out.println(i < signatures.size() - 1 ? "," : "");
+		}
+		out.println("  ],");
+		out.println("  \"intervals\": [");
+		for (int i=0; i < intervals.size(); i++) {
+			IntervalSnapshot s = (IntervalSnapshot)intervals.get(i);
+			Histogram l = s.getIntervalLatency();
+			out.print("    {\"elapsedMillis\": " + s.getElapsedTime() / 1000000L +
+				", \"iterations\": " + s.getIntervalIterations() +
+				", \"throughput\": " + number(s.getThroughput()) +
+				", \"errors\": " + s.getIntervalErrors() +
+				", \"activeUsers\": " + s.getActiveUsers() +
+				", \"p50\": " + millis(l.getValueAtPercentile(50)) +
+				", \"p99\": " + millis(l.getValueAtPercentile(99)) + "}");
+			out.println(i < intervals.size() - 1 ? "," : "");
+		}
+		out.println("  ]");
+		out.println("}");
+	}
+
+	/**
+	 * Writes the report in HTML.
+	 *
+	 * @param out Writer.
+	 */
+	public synchronized void writeHtml(PrintWriter out) {
+
+		Histogram latency = statistics.getLatency();
+
+		out.println("<!DOCTYPE html>");
+		out.println("<html><head><meta charset=\"utf-8\">");
+		out.println("<title>JUnitPerf: " + escape(name) + "</title>");
+		out.println("<style>");
+		out.println("body { font-family: sans-serif; margin: 2em; }");
+		out.println("table { border-collapse: collapse; margin-bottom: 1.5em; }");
+		out.println("td, th { border: 1px solid #ccc; padding: 4px 10px; text-align: right; }");
+		out.println("th { background: #eee; } td.name, th.name { text-align: left; }");
+		out.println("svg { border: 1px solid #ccc; margin-bottom: 1.5em; }");
+		out.println("</style></head><body>");
+		out.println("<h1>" + escape(name) + "</h1>");
+		out.println("<p>Started " + escape(formatTime(beginTime)) + ", elapsed " +
+			statistics.getElapsedTime() / 1000000L + " ms</p>");
+
+		out.println("<h2>Summary</h2>");
+		out.println("<table>");
+		row(out, "Users", String.valueOf(test.getUsers()));
+		row(out, "Iterations per user", String.valueOf(test.getIterations()));
+		row(out, "Delay timer", describe(test.getTimer()));
+		row(out, "Think timer", describe(test.getThinkTimer()));
+		row(out, "Pacing", describePacing());
+		if (test.getReleaseSpread() >= 0) {
+			row(out, "Release spread (ms)", millis(test.getReleaseSpread()));
+		}
+		row(out, "Completed iterations", String.valueOf(latency.getCount()));
+		row(out, "Errors", String.valueOf(statistics.getErrorCount()));
+		row(out, "Failures", String.valueOf(statistics.getFailureCount()));
+		row(out, "Throughput (iterations/s)", number(getThroughput()));
+		if (statistics.getScheduleLag().getCount() > 0) {
+			row(out, "Schedule lag p99 (ms)", 
+				millis(statistics.getScheduleLag().getValueAtPercentile(99)));
+			row(out, "Skipped iterations", String.valueOf(statistics.getSkippedIterations()));
+		}
+		if (statistics.getReleaseLag().getCount() > 0) {
+			row(out, "Release lag p99 (ms)", 
+				millis(statistics.getReleaseLag().getValueAtPercentile(99)));
+		}
+		if (statistics.getDelayError().getCount() > 0) {
+			row(out, "Delay error p99 (ms)", 
+				millis(statistics.getDelayError().getValueAtPercentile(99)));
+		}
+		row(out, "Garbage collections", collections + " (" + collectionTime + " ms)");
+		out.println("</table>");
+
+		out.println("<h2>Latency (ms)</h2>");
+		out.println("<table><tr><th>mean</th><th>min</th>");
+		for (int i=0; i < PERCENTILES.length; i++) {
+			out.print("<th>p" + percentileName(PERCENTILES[i]) + "</th>");
+		}
+		out.println("<th>max</th></tr>");
+		out.print("<tr><td>" + millis(latency.getMean()) + "</td><td>" +
+			millis(latency.getMin()) + "</td>");
+		for (int i=0; i < PERCENTILES.length; i++) {
+			out.print("<td>" + millis(latency.getValueAtPercentile(PERCENTILES[i])) + "</td>");
+		}
+		out.println("<td>" + millis(latency.getMax()) + "</td></tr></table>");
+
+		List scenarios = statistics.getScenarioStatistics();
+		if (!scenarios.isEmpty()) {
+			out.println("<h2>Scenarios</h2>");
+			writeTestsHtml(out, "scenario", scenarios);
+		}
+
+		out.println("<h2>Tests</h2>");
+		writeTestsHtml(out, "test", statistics.getTestStatistics());
+
+		List signatures = statistics.getFailureAggregator().getTopSignatures(10);
+		if (!signatures.isEmpty()) {
+			out.println("<h2>Failure signatures</h2>");
+			out.println("<table><tr><th>count</th><th class=\"name\">failure</th>" +
+				"<th class=\"name\">location</th></tr>");
+			for (Iterator i = signatures.iterator(); i.hasNext(); ) {
+				FailureSignature f = (FailureSignature)i.next();
+				out.println("<tr><td>" + f.getCount() + "</td><td class=\"name\">" + 
+					escape(f.getType() + (f.getMessage() == null ? "" : ": " + f.getMessage())) +
+					"</td><td class=\"name\"><pre>" + escape(f.getLocation()) + 
+					"</pre></td></tr>");
+			}
+			out.println("</table>");
+		}
+
+		out.println("<h2>Latency distribution</h2>");
+		writeDistributionChart(out, latency);
+
+		out.println("<h2>Throughput over time</h2>");
+		writeThroughputChart(out);
+
+		out.println("</body></html>");
+	}
+
+	/**
+	 * Returns the overall throughput of the run.
+	 *
+	 * @return Iterations per second.
+	 */
+	public double getThroughput() {
+		long elapsed = statistics.getElapsedTime();
+		return (elapsed <= 0) ? 0.0 : statistics.getIterationCount() * 1e9 / elapsed;
+	}
+
+	private void writeTestsJson(PrintWriter out, List tests) {
+		for (int i=0; i < tests.size(); i++) {
+			TestStatistics t = (TestStatistics)tests.get(i);
+			Histogram l = t.getLatency();
+			out.print("    {\"name\": " + quote(t.getName()) +
+				", \"count\": " + t.getCount() +
+				", \"errors\": " + t.getErrorCount() +
+				", \"failures\": " + t.getFailureCount() +
+				", \"throughput\": " + number(getThroughput(t)) +
+				", \"mean\": " + millis(l.getMean()) +
+				", \"p50\": " + millis(l.getValueAtPercentile(50)) +
+				", \"p90\": " + millis(l.getValueAtPercentile(90)) +
+				", \"p99\": " + millis(l.getValueAtPercentile(99)) +
+				", \"max\": " + millis(l.getMax()) + "}");
+			out.println(i < tests.size() - 1 ? "," : "");
+		}
+	}
+
+	private void writeTestsHtml(PrintWriter out, String kind, List tests) {
+		out.println("<table><tr><th class=\"name\">" + kind + "</th><th>count</th><th>errors</th>" +
+			"<th>failures</th><th>throughput (/s)</th><th>mean (ms)</th><th>p50 (ms)</th>" +
+			"<th>p90 (ms)</th><th>p99 (ms)</th><th>max (ms)</th></tr>");
+		for (Iterator i = tests.iterator(); i.hasNext(); ) {
+			TestStatistics t = (TestStatistics)i.next();
+			Histogram l = t.getLatency();
+			out.println("<tr><td class=\"name\">" + escape(t.getName()) + "</td><td>" +
+				t.getCount() + "</td><td>" + t.getErrorCount() + "</td><td>" +
+				t.getFailureCount() + "</td><td>" + number(getThroughput(t)) + "</td><td>" +
+				millis(l.getMean()) + "</td><td>" + millis(l.getValueAtPercentile(50)) + 
+				"</td><td>" + millis(l.getValueAtPercentile(90)) + "</td><td>" + 
+				millis(l.getValueAtPercentile(99)) + "</td><td>" + millis(l.getMax()) + 
+				"</td></tr>");
+		}
+		out.println("</table>");
+	}
+
+	private double getThroughput(TestStatistics test) {
+		long elapsed = statistics.getElapsedTime();
+		return (elapsed <= 0) ? 0.0 : test.getCount() * 1e9 / elapsed;
+	}
+
+	private void writeDistributionChart(PrintWriter out, Histogram latency) {
+
+		long[] counts = getDistribution(latency);
+		long maxCount = 1;
+		for (int i=0; i < counts.length; i++) {
+			maxCount = Math.max(maxCount, counts[i]);
+		}
+
+		int width = 640;
+		int height = 200;
+		int bar = width / BINS.length;
+
+		out.println("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width +
+			"\" height=\"" + (height + 40) + "\">");
+		for (int i=0; i < BINS.length; i++) {
+			int h = (int)(counts[i] * height / maxCount);
+			out.println("<rect x=\"" + (i * bar + 2) + "\" y=\"" + (height - h) +
+				"\" width=\"" + (bar - 4) + "\" height=\"" + h + "\" fill=\"#4a7ebb\">" +
+				"<title>&lt;= " + number(BINS[i]) + " ms: " + counts[i] + "</title></rect>");
+			if (i % 3 == 0) {
+				out.println("<text x=\"" + (i * bar + 2) + "\" y=\"" + (height + 15) +
+					"\" font-size=\"10\">" + number(BINS[i]) + "</text>");
+			}
+		}
+		out.println("<text x=\"2\" y=\"" + (height + 35) +
+			"\" font-size=\"11\">latency (ms, upper bound)</text>");
+		out.println("</svg>");
+	}
+
+	private void writeThroughputChart(PrintWriter out) {
+
+		if (intervals.isEmpty()) {
+			out.println("<p>No intervals recorded.</p>");
+			return;
+		}
+
+		double maxThroughput = 1;
+		long maxTime = 1;
+		for (Iterator i = intervals.iterator(); i.hasNext(); ) {
+			IntervalSnapshot s = (IntervalSnapshot)i.next();
+			maxThroughput = Math.max(maxThroughput, s.getThroughput());
+			maxTime = Math.max(maxTime, s.getElapsedTime());
+		}
+
+		int width = 640;
+		int height = 200;
+
+		StringBuffer points = new StringBuffer("0," + height);
+		for (Iterator i = intervals.iterator(); i.hasNext(); ) {
+			IntervalSnapshot s = (IntervalSnapshot)i.next();
+			long x = s.getElapsedTime() * width / maxTime;
+			long y = height - Math.round(s.getThroughput() * height / maxThroughput);
+			points.append(' ').append(x).append(',').append(y);
+		}
+
+		out.println("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width +
+			"\" height=\"" + (height + 40) + "\">");
+		out.println("<polyline fill=\"none\" stroke=\"#4a7ebb\" stroke-width=\"2\" points=\"" +
+			points + "\"/>");
+		out.println("<text x=\"2\" y=\"12\" font-size=\"10\">" + number(maxThroughput) + "/s</text>");
+		out.println("<text x=\"2\" y=\"" + (height + 15) + "\" font-size=\"10\">0 s</text>");
+		out.println("<text x=\"" + (width - 60) + "\" y=\"" + (height + 15) +
+			"\" font-size=\"10\">" + maxTime / 1000000000L + " s</text>");
+		out.println("<text x=\"2\" y=\"" + (height + 35) +
+			"\" font-size=\"11\">iterations per second</text>");
+		out.println("</svg>");
+	}
+
+	private static long[] getDistribution(Histogram histogram) {
+
+		long[] counts = new long[BINS.length];
+		long below = 0;
+
+		for (int i=0; i < BINS.length; i++) {
+			long atOrBelow = histogram.getCountAtOrBelow(Math.round(BINS[i] * 1e6));
+			counts[i] = atOrBelow - below;
+			below = atOrBelow;
+		}
+		counts[BINS.length - 1] += histogram.getCount() - below;
+
+		return counts;
+	}
+
+	private static String histogramJson(Histogram histogram, String indent) {
+
+		StringBuffer json = new StringBuffer("{");
+		json.append("\"count\": ").append(histogram.getCount());
+		json.append(", \"mean\": ").append(millis(histogram.getMean()));
+		json.append(", \"min\": ").append(millis(histogram.getMin()));
+		for (int i=0; i < PERCENTILES.length; i++) {
+			json.append(", \"p").append(percentileName(PERCENTILES[i])).append("\": ");
+			json.append(millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+		}
+		json.append(", \"max\": ").append(millis(histogram.getMax()));
+		json.append(",\n").append(indent).append("  \"distribution\": [");
+
+		long[] counts = getDistribution(histogram);
+		boolean first = true;
+		for (int i=0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				json.append(first ? "" : ", ");
+				json.append("{\"le\": ").append(number(BINS[i]));
+				json.append(", \"count\": ").append(counts[i]).append('}');
+				first = false;
+			}
+		}
+		json.append("]}");
+
+		return json.toString();
+	}
+
+	private static String percentileName(double percentile) {
+		return (percentile == Math.floor(percentile)) ?
+			String.valueOf((long)percentile) : String.valueOf(percentile).replace('.', '_');
+	}
+
+	private static void row(PrintWriter out, String name, String value) {
+		out.println("<tr><th class=\"name\">" + escape(name) + "</th><td>" +
+			escape(value) + "</td></tr>");
+	}
+
+	private static String describe(Timer timer) {
+		return (timer == null) ? "none" : timer.getClass().getName();
+	}
+
+	private String describePacing() {
+		if (test.getPacingRate() <= 0) {
+			return "none";
+		}
+		return number(test.getPacingRate()) + "/s per user, " + 
+			((test.getPacingPolicy() == Pacer.SKIP) ? "skip" : "catch up");
+	}
+
+	private static String millis(double nanos) {
+		return number(nanos / 1e6);
+	}
+
+	private static String number(double value) {
+		return String.valueOf(Math.round(value * 1000) / 1000.0);
+	}
+
+	private static String formatTime(long time) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(new Date(time));
+	}
+
+	static String quote(String value) {
+		StringBuffer quoted = new StringBuffer("\"");
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c == '\n') {
+				quoted.append("\\n");
+			} else if (c == '\r') {
+				quoted.append("\\r");
+			} else if (c == '\t') {
+				quoted.append("\\t");
+			} else if (c < 0x20) {
+				String hex = Integer.toHexString(c);
+				quoted.append("\\u0000".substring(0, 6 - hex.length())).append(hex);
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	static String escape(String value) {
+		StringBuffer escaped = new StringBuffer();
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '<') {
+				escaped.append("&lt;");
+			} else if (c == '>') {
+				escaped.append("&gt;");
+			} else if (c == '&') {
+				escaped.append("&amp;");
+			} else if (c == '"') {
+				escaped.append("&quot;");
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static PrintWriter open(File file) throws IOException {
+		return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	}
+
+	private static long getCollectionCount() {
+		long count = 0;
+		for (Iterator i = ManagementFactory.getGarbageCollectorMXBeans().iterator(); i.hasNext(); ) {
+			count += Math.max(0, ((GarbageCollectorMXBean)i.next()).getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getCollectionTime() {
+		long time = 0;
+		for (Iterator i = ManagementFactory.getGarbageCollectorMXBeans().iterator(); i.hasNext(); ) {
+			time += Math.max(0, ((GarbageCollectorMXBean)i.next()).getCollectionTime());
+		}
+		return time;
+	}
+}
@@ -0,0 +1,591 @@
+package com.clarkware.junitperf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestListener;
+
+/**
+ * The <code>LoadStatistics</code> class collects the measurements
+ * of a <code>LoadTest</code> run.
+ * <p>
+ * The latency of each iteration of a user is recorded in 
+ * nanoseconds, excluding any think time between iterations, 
+ * which is recorded separately.  When iterations are started on a 
+ * schedule, the lag of each actual start behind its scheduled start
+ * is recorded as well, along with the number of scheduled
+ * iterations that were skipped.  The error of each delay, that is
+ * how late a user woke up from a think time or start delay, is 
+ * recorded to show the accuracy of the load generator itself.
+ * </p>
+ * <p>
+ * As a <code>TestListener</code>, the statistics also count the 
+ * errors and failures added to the <code>TestResult</code> of 
+ * the load test, and break the measurements down by individual 
+ * test, as identified by <code>TestCase.getName()</code>, from the 
+ * start and end of each test.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ * @see com.clarkware.junitperf.Histogram
+ */
+
+public class LoadStatistics implements TestListener {
+
+	private final Histogram latency;
+	private final Histogram thinkTime;
+	private final Histogram scheduleLag;
+	private final Histogram releaseLag;
+	private final Histogram delayError;
+	private final AtomicLong errors;
+	private final AtomicLong failures;
+	private final AtomicLong skipped;
+	private final AtomicInteger activeUsers;
+	private final long beginTime;
+	private final ConcurrentHashMap tests;
+	private final ConcurrentHashMap scenarios;
+	private final ThreadLocal started;
+	private final FailureAggregator failureAggregator;
+	private volatile boolean isAggregatingFailures;
+
+	/**
+	 * Constructs an empty <code>LoadStatistics</code>.
+	 */
+	public LoadStatistics() {
+		this(new FailureAggregator());
+	}
+	
+	/**
+	 * Constructs an empty <code>LoadStatistics</code>
+	 * with the specified failure aggregator.
+	 *
+	 * @param failureAggregator Failure aggregator.
+	 */
+	public LoadStatistics(FailureAggregator failureAggregator) {
+		latency = new Histogram();
+		thinkTime = new Histogram();
+		scheduleLag = new Histogram();
+		releaseLag = new Histogram();
+		delayError = new Histogram();
+		errors = new AtomicLong();
+		failures = new AtomicLong();
+		skipped = new AtomicLong();
+		activeUsers = new AtomicInteger();
+		beginTime = System.nanoTime();
+		tests = new ConcurrentHashMap();
+		scenarios = new ConcurrentHashMap();
+		started = new ThreadLocal();
+		this.failureAggregator = failureAggregator;
+	}
+	
+	/**
+	 * Records the latency of a completed iteration.
+	 *
+	 * @param nanos Latency (ns).
+	 */
+	public void recordIteration(long nanos) {
+		latency.record(nanos);
+	}
+	
+	/**
+	 * Records the think time between two iterations.
+	 *
+	 * @param nanos Think time (ns).
+	 */
+	public void recordThinkTime(long nanos) {
+		thinkTime.record(nanos);
+	}
+	
+	/**
+	 * Records the lag of an iteration start behind its 
+	 * scheduled start.
+	 *
+	 * @param nanos Lag (ns).
+	 */
+	public void recordScheduleLag(long nanos) {
+		scheduleLag.record(nanos);
+	}
+	
+	/**
+	 * Records the lag of a user behind the release of the
+	 * start gate.
+	 *
+	 * @param nanos Lag (ns).
+	 */
+	public void recordReleaseLag(long nanos) {
+		releaseLag.record(nanos);
+	}
+	
+	/**
+	 * Records how late a delay ended.
+	 *
+	 * @param nanos Delay error (ns).
+	 */
+	public void recordDelayError(long nanos) {
+		delayError.record(nanos);
+	}
+	
+	/**
+	 * Records scheduled iterations that were skipped because
+	 * the user fell behind its schedule.
+	 *
+	 * @param count Number of skipped iterations.
+	 */
+	public void recordSkippedIterations(long count) {
+		skipped.addAndGet(count);
+	}
+	
+	/**
+	 * Records that a user has started.
+	 */
+	public void userStarted() {
+		activeUsers.incrementAndGet();
+	}
+	
+	/**
+	 * Records that a user has finished.
+	 */
+	public void userFinished() {
+		activeUsers.decrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of users currently running.
+	 *
+	 * @return Number of active users.
+	 */
+	public int getActiveUsers() {
+		return activeUsers.get();
+	}
+	
+	/**
+	 * Returns the number of errors.
+	 *
+	 * @return Number of errors.
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+	
+	/**
+	 * Returns the number of failures.
+	 *
+	 * @return Number of failures.
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+	
+	/**
+	 * Returns the number of skipped iterations.
+	 *
+	 * @return Number of skipped iterations.
+	 */
+	public long getSkippedIterations() {
+		return skipped.get();
+	}
+	
+	/**
+	 * Returns the time elapsed since these statistics
+	 * were created.
+	 *
+	 * @return Elapsed time (ns).
+	 */
+	public long getElapsedTime() {
+		return System.nanoTime() - beginTime;
+	}
+	
+	/**
+	 * Returns the number of completed iterations.
+	 *
+	 * @return Number of iterations.
+	 */
+	public long getIterationCount() {
+		return latency.getCount();
+	}
+	
+	/**
+	 * Returns the iteration latency distribution (ns).
+	 *
+	 * @return Latency histogram.
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Returns the think time distribution (ns).
+	 *
+	 * @return Think time histogram.
+	 */
+	public Histogram getThinkTime() {
+		return thinkTime;
+	}
+	
+	/**
+	 * Returns the schedule lag distribution (ns).
+	 *
+	 * @return Schedule lag histogram.
+	 */
+	public Histogram getScheduleLag() {
+		return scheduleLag;
+	}
+	
+	/**
+	 * Returns the start gate release lag distribution (ns).
+	 *
+	 * @return Release lag histogram.
+	 */
+	public Histogram getReleaseLag() {
+		return releaseLag;
+	}
+	
+	/**
+	 * Returns the delay error distribution (ns).
+	 *
+	 * @return Delay error histogram.
+	 */
+	public Histogram getDelayError() {
+		return delayError;
+	}
+	
+	/**
+	 * Returns the aggregator of the failures and errors
+	 * of the load test.
+	 *
+	 * @return Failure aggregator.
+	 */
+	public FailureAggregator getFailureAggregator() {
+		return failureAggregator;
+	}
+	
+	/**
+	 * Returns the statistics of the individual test
+	 * with the specified name.
+	 *
+	 * @param name Test name.
+	 * @return Statistics, or <code>null</code> if the 
+	 *         test has not run.
+	 */
+	public TestStatistics getTestStatistics(String name) {
+		return (TestStatistics)tests.get(name);
+	}
+	
+	/**
+	 * Returns the statistics of each individual test, 
+	 * ordered by name.
+	 *
+	 * @return List of <code>TestStatistics</code>.
+	 */
+	public List getTestStatistics() {
+		return sortByName(tests);
+	}
+	
+	/**
+	 * Returns the statistics of the scenario with the 
+	 * specified name.
+	 *
+	 * @param name Scenario name.
+	 * @return Statistics, or <code>null</code> if the 
+	 *         scenario has not run.
+	 * @see com.clarkware.junitperf.ScenarioMix
+	 */
+	public TestStatistics getScenarioStatistics(String name) {
+		return (TestStatistics)scenarios.get(name);
+	}
+	
+	/**
+	 * Returns the statistics of each scenario, ordered by name.
+	 *
+	 * @return List of <code>TestStatistics</code>.
+	 * @see com.clarkware.junitperf.ScenarioMix
+	 */
+	public List getScenarioStatistics() {
+		return sortByName(scenarios);
+	}
+	
+	private static List sortByName(ConcurrentHashMap map) {
+		List result = new ArrayList(map.values());
+		Collections.sort(result, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return ((TestStatistics)o1).getName().compareTo(((TestStatistics)o2).getName());
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Returns the statistics of the individual tests with
+	 * the highest maximum latency, slowest first.
+	 *
+	 * @param count Maximum number of tests.
+	 * @return List of <code>TestStatistics</code>.
+	 */
+	public List getSlowestTests(int count) {
+		List result = new ArrayList(tests.values());
+		Collections.sort(result, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long max1 = ((TestStatistics)o1).getLatency().getMax();
+				long max2 = ((TestStatistics)o2).getLatency().getMax();
+				return (max1 > max2) ? -1 : ((max1 < max2) ? 1 : 0);
+			}
+		});
+		return result.subList(0, Math.min(count, result.size()));
+	}
+	
+	/**
+	 * Adds the measurements of the specified statistics,
+	 * for example from another process, to these statistics.
+	 *
+	 * @param other Statistics.
+	 */
+	public void add(LoadStatistics other) {
+		latency.add(other.latency);
+		thinkTime.add(other.thinkTime);
+		scheduleLag.add(other.scheduleLag);
+		releaseLag.add(other.releaseLag);
+		delayError.add(other.delayError);
+		errors.addAndGet(other.getErrorCount());
+		failures.addAndGet(other.getFailureCount());
+		skipped.addAndGet(other.getSkippedIterations());
+		for (Iterator i = other.tests.values().iterator(); i.hasNext(); ) {
+			TestStatistics test = (TestStatistics)i.next();
+			getOrCreate(tests, test.getName()).add(test);
+		}
+		for (Iterator i = other.scenarios.values().iterator(); i.hasNext(); ) {
+			TestStatistics scenario = (TestStatistics)i.next();
+			getOrCreate(scenarios, scenario.getName()).add(scenario);
+		}
+	}
+	
+	/**
+	 * Writes these statistics to the specified output.
+	 *
+	 * @param out Output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		latency.writeTo(out);
+		thinkTime.writeTo(out);
+		scheduleLag.writeTo(out);
+		releaseLag.writeTo(out);
+		delayError.writeTo(out);
+		out.writeLong(getErrorCount());
+		out.writeLong(getFailureCount());
+		out.writeLong(getSkippedIterations());
+		
+		writeTo(out, getTestStatistics());
+		writeTo(out, getScenarioStatistics());
+	}
+	
+	private static void writeTo(DataOutput out, List list) throws IOException {
+		out.writeInt(list.size());
+		for (int i=0; i < list.size(); i++) {
+			TestStatistics test = (TestStatistics)list.get(i);
+			out.writeUTF(test.getName());
+			test.getLatency().writeTo(out);
+			out.writeLong(test.getErrorCount());
+			out.writeLong(test.getFailureCount());
+		}
+	}
+	
+	/**
+	 * Reads statistics written by <code>writeTo()</code> 
+	 * from the specified input and adds them to these
+	 * statistics.
+	 *
+	 * @param in Input.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void readFrom(DataInput in) throws IOException {
+		latency.add(Histogram.readFrom(in));
+		thinkTime.add(Histogram.readFrom(in));
+		scheduleLag.add(Histogram.readFrom(in));
+		releaseLag.add(Histogram.readFrom(in));
+		delayError.add(Histogram.readFrom(in));
+		errors.addAndGet(in.readLong());
+		failures.addAndGet(in.readLong());
+		skipped.addAndGet(in.readLong());
+		
+		readFrom(in, tests);
+		readFrom(in, scenarios);
+	}
+	
+	private static void readFrom(DataInput in, ConcurrentHashMap map) throws IOException {
+		int count = in.readInt();
+		for (int i=0; i < count; i++) {
+			TestStatistics test = getOrCreate(map, in.readUTF());
+			test.add(Histogram.readFrom(in), in.readLong(), in.readLong());
+		}
+	}
+	
+	/**
+	 * Counts an error.
+	 *
+	 * @param test Test.
+	 * @param t Error.
+	 */
+	public void addError(Test test, Throwable t) {
+		errors.incrementAndGet();
+		getOrCreate(tests, nameOf(test)).recordError();
+		if (isAggregatingFailures) {
+			failureAggregator.record(test, t);
+		}
+	}
+
+	/**
+	 * Counts a failure.
+	 *
+	 * @param test Test.
+	 * @param e Failure.
+	 */
+	public void addFailure(Test test, AssertionFailedError e) {
+		failures.incrementAndGet();
+		getOrCreate(tests, nameOf(test)).recordFailure();
+		if (isAggregatingFailures) {
+			failureAggregator.record(test, e);
+		}
+	}
+
+	/*
+	 * Sets whether the failures and errors counted by these
+	 * statistics are also grouped by the failure aggregator,
+	 * when it is not recorded by the reporting result itself.
+	 */
+	void setAggregatingFailures(boolean isAggregatingFailures) {
+		this.isAggregatingFailures = isAggregatingFailures;
+	}
+	
+	/**
+	 * Notes the start of an individual test.
+	 *
+	 * @param test Test.
+	 */
+	public void startTest(Test test) {
+		started.set(new Started(test, System.nanoTime()));
+	}
+
+	/**
+	 * Records the latency of an individual test.
+	 *
+	 * @param test Test.
+	 */
+	public void endTest(Test test) {
+		Started start = (Started)started.get();
+		if (start != null && start.test == test) {
+			started.set(null);
+			recordTest(test, System.nanoTime() - start.time);
+		}
+	}
+	
+	/**
+	 * Records the latency of an individual test that did not 
+	 * start and end on the same thread.
+	 *
+	 * @param test Test.
+	 * @param nanos Latency (ns).
+	 */
+	public void recordTest(Test test, long nanos) {
+		recordTest(nameOf(test), nanos);
+	}
+	
+	/**
+	 * Records the latency of the individual test or request
+	 * with the specified name.
+	 *
+	 * @param name Test name.
+	 * @param nanos Latency (ns).
+	 */
+	public void recordTest(String name, long nanos) {
+		getOrCreate(tests, name).getLatency().record(nanos);
+	}
+	
+	/**
+	 * Records a run of the scenario with the specified name,
+	 * along with the errors and failures of the run.
+	 *
+	 * @param name Scenario name.
+	 * @param nanos Latency (ns).
+	 * @param errors Number of errors.
+	 * @param failures Number of failures.
+	 * @see com.clarkware.junitperf.ScenarioMix
+	 */
+	public void recordScenario(String name, long nanos, long errors, long failures) {
+		TestStatistics scenario = getOrCreate(scenarios, name);
+		scenario.getLatency().record(nanos);
+		if (errors > 0 || failures > 0) {
+			scenario.recordErrors(errors, failures);
+		}
+	}
+	
+	private static TestStatistics getOrCreate(ConcurrentHashMap map, String name) {
+		TestStatistics test = (TestStatistics)map.get(name);
+		if (test == null) {
+			TestStatistics created = new TestStatistics(name);
+			test = (TestStatistics)map.putIfAbsent(name, created);
+			if (test == null) {
+				test = created;
+			}
+		}
+		return test;
+	}
+	
+	private static String nameOf(Test test) {
+		if (test instanceof TestCase) {
+			return ((TestCase)test).getName();
+		}
+		return String.valueOf(test);
+	}
+	
+	private static final class Started {
+		
+		final Test test;
+		final long time;
+		
+		Started(Test test, long time) {
+			this.test = test;
+			this.time = time;
+		}
+	}
+	
+	/**
+	 * Returns a summary of the statistics.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		String summary = "Latency: " + latency + "; Think time: " + thinkTime +
+			"; Errors: " + getErrorCount() + "; Failures: " + getFailureCount();
+		if (scheduleLag.getCount() > 0) {
+			summary += "; Schedule lag: " + scheduleLag;
+		}
+		if (releaseLag.getCount() > 0) {
+			summary += "; Release lag: " + releaseLag;
+		}
+		if (delayError.getCount() > 0) {
+			summary += "; Delay error: " + delayError;
+		}
+		if (getSkippedIterations() > 0) {
+			summary += "; Skipped: " + getSkippedIterations();
+		}
+		if (!scenarios.isEmpty()) {
+			summary += "; Scenarios: " + getScenarioStatistics();
+		}
+		return summary;
+	}
+}
@@ -1,8 +1,19 @@
 package com.clarkware.junitperf;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import junit.framework.AssertionFailedError;
 import junit.framework.Test;
 import junit.framework.TestResult;
-import junit.extensions.RepeatedTest;
+import junit.extensions.TestDecorator;
 
 /**
  * The <code>LoadTest</code> is a test decorator that runs
@@ -35,7 +46,11 @@ import junit.extensions.RepeatedTest;
  * <code>ConstantTimer</code> has a constant delay, with 
  * a zero value indicating that all users will be started 
  * simultaneously. A <code>RandomTimer</code> has a random 
- * delay with a uniformly distributed variation.
+ * delay with a uniformly distributed variation.  The 
+ * <code>ExponentialTimer</code>, <code>GaussianTimer</code>,
+ * <code>LogNormalTimer</code>, and <code>EmpiricalTimer</code> 
+ * draw delays from other distributions, optionally with a fixed
+ * seed for reproducible runs.
  * </p>
  * <p>
  * For example, to create a load test of 10 concurrent users
@@ -53,8 +68,8 @@ import junit.extensions.RepeatedTest;
  * specified number of iterations, a <code>LoadTest</code> can be 
  * constructed to decorate a <code>RepeatedTest</code>. 
  * Alternatively, a <code>LoadTest</code> convenience constructor 
- * specifying the number of iterations is provided which creates a 
- * <code>RepeatedTest</code>. 
+ * specifying the number of iterations is provided which repeats 
+ * the test like a <code>RepeatedTest</code>. 
  * </p>
  * <p>
  * For example, to create a load test of 10 concurrent users
@@ -85,6 +100,97 @@ import junit.extensions.RepeatedTest;
  * </blockquote>
  * </p>
  * <p>
+ * When the number of iterations is specified, each user can pause
+ * for a think time between its iterations, as prescribed by a 
+ * <code>Timer</code>.  The latency of each iteration, which excludes
+ * the think time, and the think time itself are recorded in the 
+ * <code>LoadStatistics</code> of the load test.  For example, to 
+ * have each user think for 500 ms on average between iterations, use:
+ * <blockquote>
+ * <pre>
+ * loadTest.setThinkTimer(new RandomTimer(0, 1000));
+ * </pre>
+ * </blockquote>
+ * </p>
+ * <p>
+ * Alternatively, each user can be paced to start its iterations
+ * at a target rate, regardless of how long each iteration takes.
+ * The lag of each start behind its schedule is recorded as well.
+ * For example, to have each user perform 5 iterations per second, 
+ * use:
+ * <blockquote>
+ * <pre>
+ * loadTest.setPacing(5);
+ * </pre>
+ * </blockquote>
+ * Delays are timed by a <code>PreciseSleeper</code> with a 
+ * nanosecond resolution.
+ * </p>
+ * <p>
+ * The progress of a long-running load test can be reported while 
+ * it runs by registering an <code>IntervalListener</code>, which is 
+ * notified of the completed iterations, throughput, errors, latency 
+ * percentiles, and active users of each interval.  For example, to 
+ * print the progress to the console every second, use:
+ * <blockquote>
+ * <pre>
+ * loadTest.addIntervalListener(ConsoleReporter.getDefault());
+ * </pre>
+ * </blockquote>
+ * While it runs, a load test is also registered as a 
+ * <code>LoadTestMonitor</code> MBean, through which it can be 
+ * watched and stopped from a JMX console.
+ * </p>
+ * <p>
+ * To have the users of a load test hit a critical call at the
+ * same instant, a test method can block them at a named 
+ * <code>Rendezvous</code> registered with the load test until
+ * a quorum of them has arrived.  For example:
+ * <blockquote>
+ * <pre>
+ * loadTest.addRendezvous(new Rendezvous("checkout", 5000));
+ * </pre>
+ * </blockquote>
+ * </p>
+ * <p>
+ * Alternatively, a <code>LoadTest</code> can run for a duration, 
+ * with each user repeating the test until the duration has elapsed.
+ * For example, to have 10 users repeat the test for 5 minutes, use:
+ * <blockquote>
+ * <pre>
+ * LoadTest loadTest = new LoadTest(new ExampleTest("testSomething"), 10);
+ * loadTest.setDuration(5 * 60 * 1000);
+ * </pre>
+ * </blockquote>
+ * </p>
+ * <p>
+ * Even without a delay between them, users are started one at a 
+ * time.  To test a spike of simultaneous users instead, all users 
+ * can be parked until they have started, and then released through
+ * a <code>StartGate</code> at the same instant.  The spread of 
+ * their release is measured and printed, and the lag of each user
+ * behind the release is recorded in the statistics.  For example:
+ * <blockquote>
+ * <pre>
+ * LoadTest loadTest = new LoadTest(new ExampleTest("testSomething"), 500);
+ * loadTest.setSimultaneousStart(true);
+ * </pre>
+ * </blockquote>
+ * </p>
+ * <p>
+ * A load test can be aborted early when it violates an 
+ * <code>SlaPolicy</code>, which is evaluated over a sliding window 
+ * of recent intervals.  An aborted load test stops starting users,
+ * interrupts the running users, and signals a failure describing 
+ * the violation.
+ * </p>
+ * <p>
+ * A JSON and an HTML <code>LoadReport</code> of each run are written
+ * to the directory set with <code>setReportDirectory()</code> or,
+ * by default, to the directory named by the 
+ * <code>junitperf.report.dir</code> system property.
+ * </p>
+ * <p>
  * By default, a <code>LoadTest</code> does not enforce test 
  * atomicity (as defined in transaction processing) if its decorated 
  * test spawns threads, either directly or indirectly.  In other words, 
@@ -108,12 +214,34 @@ import junit.extensions.RepeatedTest;
 
 public class LoadTest implements Test {
 
+	private static final ThreadLocal current = new InheritableThreadLocal();
+
 	private final int users;
+	private final int iterations;
 	private final Timer timer;
+	private final Test decoratedTest;
 	private final ThreadedTest test;
 	private final ThreadedTestGroup group;
 	private final ThreadBarrier barrier;
 	private boolean enforceTestAtomicity;
+	private Timer thinkTimer;
+	private double pacingRate;
+	private int pacingPolicy;
+	private PreciseSleeper sleeper;
+	private boolean isSimultaneousStart;
+	private volatile StartGate gate;
+	private volatile LoadStatistics statistics;
+	private volatile boolean stopped;
+	private final List intervalListeners;
+	private long interval;
+	private File reportDirectory;
+	private int resultBatchSize;
+	private int failureSampleSize;
+	private SlaPolicy slaPolicy;
+	private long duration;
+	private volatile long deadline;
+	private volatile String abortReason;
+	private final Map rendezvous;
 
 	/**
 	 * Constructs a <code>LoadTest</code> to decorate 
@@ -153,22 +281,11 @@ public class LoadTest implements Test {
 	 * @param timer Delay timer.
 	 */
 	public LoadTest(Test test, int users, int iterations, Timer timer) {
-		this(new RepeatedTest(test, iterations), users, timer);
-	}
-	
-	/**
-	 * Constructs a <code>LoadTest</code> to decorate 
-	 * the specified test using the specified number 
-	 * of concurrent users and delay timer.
-	 *
-	 * @param test Test to decorate.
-	 * @param users Number of concurrent users.
-	 * @param timer Delay timer.
-	 */
-	public LoadTest(Test test, int users, Timer timer) {
         
 		 if (users < 1) {
             throw new IllegalArgumentException("Number of users must be > 0");
+        } else if (iterations < 0) {
+            throw new IllegalArgumentException("Number of iterations must be >= 0");
         } else if (timer == null) {
             throw new IllegalArgumentException("Delay timer is null");
         } else if (test == null) {
@@ -176,11 +293,36 @@ public class LoadTest implements Test {
         }
 		 
 		this.users = users;
+		this.iterations = iterations;
 		this.timer = timer;
+		this.decoratedTest = test;
 		setEnforceTestAtomicity(false);
+		this.statistics = new LoadStatistics();
+		this.intervalListeners = new CopyOnWriteArrayList();
+		this.rendezvous = new LinkedHashMap();
+		this.interval = 1000;
+		String reportDir = System.getProperty("junitperf.report.dir");
+		this.reportDirectory = (reportDir == null) ? null : new File(reportDir);
+		this.resultBatchSize = 0;
+		this.failureSampleSize = -1;
+		this.pacingPolicy = Pacer.CATCH_UP;
+		this.sleeper = PreciseSleeper.getDefault();
 		this.barrier = new ThreadBarrier(users);
 		this.group = new ThreadedTestGroup(this);
-		this.test = new ThreadedTest(test, group, barrier);
+		this.test = new ThreadedTest(new UserTest(test), group, barrier);
+	}
+	
+	/**
+	 * Constructs a <code>LoadTest</code> to decorate 
+	 * the specified test using the specified number 
+	 * of concurrent users and delay timer.
+	 *
+	 * @param test Test to decorate.
+	 * @param users Number of concurrent users.
+	 * @param timer Delay timer.
+	 */
+	public LoadTest(Test test, int users, Timer timer) {
+		this(test, users, 1, timer);
 	}
 	
 	/**
@@ -201,6 +343,398 @@ public class LoadTest implements Test {
 		enforceTestAtomicity = isAtomic;
 	}
 	
+	/**
+	 * Sets the timer prescribing the think time of each user 
+	 * between two of its iterations.  The think time is not 
+	 * included in the recorded iteration latency.
+	 *
+	 * @param thinkTimer Think timer, or <code>null</code> for 
+	 *        no think time (default).
+	 */
+	public void setThinkTimer(Timer thinkTimer) {
+		this.thinkTimer = thinkTimer;
+	}
+	
+	/**
+	 * Paces each user to start its iterations at the specified
+	 * rate, catching up on iterations missed while behind.
+	 *
+	 * @param rate Iterations per second per user, or 0 for
+	 *        no pacing (default).
+	 */
+	public void setPacing(double rate) {
+		setPacing(rate, Pacer.CATCH_UP);
+	}
+	
+	/**
+	 * Paces each user to start its iterations at the specified
+	 * rate.  The lag of each start behind its schedule is 
+	 * recorded in the statistics, as is the number of iterations
+	 * skipped with the <code>Pacer.SKIP</code> policy.  Any think 
+	 * time is spent before waiting for the scheduled start.
+	 *
+	 * @param rate Iterations per second per user, or 0 for
+	 *        no pacing (default).
+	 * @param policy <code>Pacer.CATCH_UP</code> or 
+	 *        <code>Pacer.SKIP</code>.
+	 */
+	public void setPacing(double rate, int policy) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("Pacing rate must be >= 0");
+		} else if (policy != Pacer.CATCH_UP && policy != Pacer.SKIP) {
+			throw new IllegalArgumentException("Unknown pacing policy: " + policy);
+		}
+		this.pacingRate = rate;
+		this.pacingPolicy = policy;
+	}
+	
+	/**
+	 * Sets the sleeper timing the start delays, think times,
+	 * and pacing of the users.  The error of each delay is 
+	 * recorded in the statistics.
+	 *
+	 * @param sleeper Sleeper; defaults to 
+	 *        <code>PreciseSleeper.getDefault()</code>.
+	 */
+	public void setSleeper(PreciseSleeper sleeper) {
+		if (sleeper == null) {
+			throw new IllegalArgumentException("Sleeper is null");
+		}
+		this.sleeper = sleeper;
+	}
+	
+	/**
+	 * Indicates whether all users should start simultaneously.
+	 * When set, the delay timer is ignored, and each user parks 
+	 * until all users have started and are released together.  The
+	 * lag of each user behind the release is recorded as its 
+	 * schedule lag.
+	 *
+	 * @param isSimultaneous <code>true</code> to release the users
+	 *        together; <code>false</code> otherwise (default).
+	 */
+	public void setSimultaneousStart(boolean isSimultaneous) {
+		isSimultaneousStart = isSimultaneous;
+	}
+	
+	/**
+	 * Indicates whether all users start simultaneously.
+	 *
+	 * @return <code>true</code> if users are released together;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSimultaneousStart() {
+		return isSimultaneousStart;
+	}
+	
+	/**
+	 * Returns the time between the first and the last user 
+	 * released by the current or most recent run.
+	 *
+	 * @return Spread (ns), or -1 if the users were not
+	 *         started simultaneously.
+	 */
+	public long getReleaseSpread() {
+		StartGate current = gate;
+		return (current == null) ? -1 : current.getSpread();
+	}
+	
+	/**
+	 * Registers a listener to be notified of the progress
+	 * of this load test at the end of each interval.
+	 *
+	 * @param listener Interval listener.
+	 */
+	public void addIntervalListener(IntervalListener listener) {
+		intervalListeners.add(listener);
+	}
+	
+	/**
+	 * Unregisters an interval listener.
+	 *
+	 * @param listener Interval listener.
+	 */
+	public void removeIntervalListener(IntervalListener listener) {
+		intervalListeners.remove(listener);
+	}
+	
+	/**
+	 * Sets the reporting interval of the interval listeners.
+	 *
+	 * @param interval Interval (ms); defaults to 1000.
+	 */
+	public void setInterval(long interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Interval must be > 0");
+		}
+		this.interval = interval;
+	}
+	
+	/**
+	 * Sets the directory to which a JSON and an HTML report of
+	 * each run are written.
+	 *
+	 * @param reportDirectory Report directory, or <code>null</code>
+	 *        for no reports.  Defaults to the value of the 
+	 *        <code>junitperf.report.dir</code> system property.
+	 */
+	public void setReportDirectory(File reportDirectory) {
+		this.reportDirectory = reportDirectory;
+	}
+	
+	/**
+	 * Sets the number of test events each user buffers in a
+	 * thread-confined <code>BufferedTestResult</code> before 
+	 * replaying them to the shared <code>TestResult</code>.
+	 * Buffering avoids contention on the shared result at high
+	 * iteration rates; events are also replayed at least once 
+	 * per second and when the user completes.
+	 * <p>
+	 * Listeners of the shared result then receive the events of a
+	 * test only when its batch is replayed, up to a second late, and 
+	 * a stop of the shared result is only noticed by a user when it
+	 * replays its next batch.
+	 * </p>
+	 *
+	 * @param resultBatchSize Number of events per batch, such as
+	 *        256, or 0 (default) to have users record directly in
+	 *        the shared result.
+	 */
+	public void setResultBatchSize(int resultBatchSize) {
+		if (resultBatchSize < 0) {
+			throw new IllegalArgumentException("Result batch size must be >= 0");
+		}
+		this.resultBatchSize = resultBatchSize;
+	}
+	
+	/**
+	 * Sets the number of failures or errors with the same signature
+	 * (exception type, message, and top stack frames) that are 
+	 * reported in full to the <code>TestResult</code>.  Further 
+	 * instances are only counted by the <code>FailureAggregator</code>
+	 * of the load test statistics, which bounds the memory held by
+	 * a load test failing thousands of times in the same way.
+	 * Without result batching, the events of each user are still
+	 * passed to the <code>TestResult</code> as they occur.  By 
+	 * default, every failure and error is reported.
+	 *
+	 * @param failureSampleSize Maximum instances per signature.
+	 */
+	public void setFailureSampleSize(int failureSampleSize) {
+		if (failureSampleSize < 0) {
+			throw new IllegalArgumentException("Failure sample size must be >= 0");
+		}
+		this.failureSampleSize = failureSampleSize;
+	}
+	
+	/**
+	 * Registers a rendezvous at which test methods can block
+	 * the users of this load test by its name.
+	 *
+	 * @param rendezvous Rendezvous.
+	 */
+	public void addRendezvous(Rendezvous rendezvous) {
+		this.rendezvous.put(rendezvous.getName(), rendezvous);
+	}
+	
+	/**
+	 * Returns the rendezvous with the specified name.
+	 *
+	 * @param name Name of the rendezvous.
+	 * @return Rendezvous, or <code>null</code> if none.
+	 */
+	public Rendezvous getRendezvous(String name) {
+		return (Rendezvous)rendezvous.get(name);
+	}
+	
+	/**
+	 * Sets the duration of the load test.  When a duration is set,
+	 * each user repeats the test until the duration has elapsed since 
+	 * the load test started, regardless of the number of iterations.
+	 *
+	 * @param duration Duration (ms), or 0 to run the number of 
+	 *        iterations (default).
+	 */
+	public void setDuration(long duration) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("Duration must be >= 0");
+		}
+		this.duration = duration;
+	}
+	
+	/**
+	 * Returns the duration of the load test.
+	 *
+	 * @return Duration (ms), or 0 if none.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * Sets the service level policy which aborts the load test
+	 * as soon as it is violated over its sliding window.  The
+	 * policy is evaluated at the end of each interval once the
+	 * load test has run for the length of the window.
+	 *
+	 * @param slaPolicy Policy, or <code>null</code> for none.
+	 */
+	public void setSlaPolicy(SlaPolicy slaPolicy) {
+		this.slaPolicy = slaPolicy;
+	}
+	
+	/**
+	 * Aborts the running load test.  Users that have not yet 
+	 * started are cancelled, the running users are interrupted,
+	 * and a failure with the specified reason is signalled.
+	 *
+	 * @param reason Reason.
+	 */
+	public void abort(String reason) {
+		abortReason = reason;
+		stopped = true;
+		cancelRendezvous();
+		group.interrupt();
+	}
+	
+	/**
+	 * Returns the reason the current or most recent run
+	 * was aborted.
+	 *
+	 * @return Reason, or <code>null</code> if not aborted.
+	 */
+	public String getAbortReason() {
+		return abortReason;
+	}
+	
+	/**
+	 * Stops the running load test.  Users that have not yet 
+	 * started are cancelled, and the running users stop after 
+	 * their current iteration.
+	 */
+	public void stop() {
+		stopped = true;
+		cancelRendezvous();
+	}
+	
+	/**
+	 * Determines whether the current or most recent run 
+	 * was stopped.
+	 *
+	 * @return <code>true</code> if stopped; 
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Returns the number of concurrent users.
+	 *
+	 * @return Number of users.
+	 */
+	public int getUsers() {
+		return users;
+	}
+	
+	/**
+	 * Returns the number of iterations per user.
+	 *
+	 * @return Number of iterations.
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Returns the delay timer.
+	 *
+	 * @return Delay timer.
+	 */
+	public Timer getTimer() {
+		return timer;
+	}
+	
+	/**
+	 * Returns the think timer.
+	 *
+	 * @return Think timer, or <code>null</code> if none.
+	 */
+	public Timer getThinkTimer() {
+		return thinkTimer;
+	}
+	
+	/**
+	 * Returns the pacing rate of each user.
+	 *
+	 * @return Iterations per second, or 0 if not paced.
+	 */
+	public double getPacingRate() {
+		return pacingRate;
+	}
+	
+	/**
+	 * Returns the pacing policy.
+	 *
+	 * @return <code>Pacer.CATCH_UP</code> or <code>Pacer.SKIP</code>.
+	 */
+	public int getPacingPolicy() {
+		return pacingPolicy;
+	}
+	
+	/**
+	 * Indicates whether test atomicity is enforced.
+	 *
+	 * @return <code>true</code> if test atomicity is enforced;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isEnforceTestAtomicity() {
+		return enforceTestAtomicity;
+	}
+	
+	/**
+	 * Returns a copy of this load test with the same 
+	 * configuration but the specified number of users.
+	 *
+	 * @param users Number of concurrent users.
+	 * @return Load test.
+	 */
+	LoadTest withUsers(int users) {
+		LoadTest copy = new LoadTest(decoratedTest, users, iterations, timer);
+		copy.setEnforceTestAtomicity(enforceTestAtomicity);
+		copy.setThinkTimer(thinkTimer);
+		copy.setPacing(pacingRate, pacingPolicy);
+		copy.setSleeper(sleeper);
+		copy.setSimultaneousStart(isSimultaneousStart);
+		copy.intervalListeners.addAll(intervalListeners);
+		copy.setInterval(interval);
+		copy.setReportDirectory(reportDirectory);
+		copy.setResultBatchSize(resultBatchSize);
+		copy.failureSampleSize = failureSampleSize;
+		copy.setSlaPolicy(slaPolicy);
+		copy.setDuration(duration);
+		copy.rendezvous.putAll(rendezvous);
+		return copy;
+	}
+	
+	/**
+	 * Returns the load test the current thread runs a user of.
+	 *
+	 * @return Load test, or <code>null</code> if none.
+	 */
+	static LoadTest getCurrent() {
+		return (LoadTest)current.get();
+	}
+	
+	/**
+	 * Returns the statistics of the current or most recent run.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+	
 	/**
 	 * Returns the number of tests in this load test.
 	 *
@@ -217,25 +751,171 @@ public class LoadTest implements Test {
 	 */
 	public void run(TestResult result) {
 	
+		LoadStatistics stats = new LoadStatistics(
+			createFailureAggregator(failureSampleSize));
+		statistics = stats;
+		stopped = false;
+		abortReason = null;
 		group.setTestResult(result);
+		if (getEffectiveBatchSize() == 0) {
+			stats.setAggregatingFailures(true);
+			result.addListener(stats);
+			group.setFailureAggregator(null);
+		} else {
+			group.setFailureAggregator(stats.getFailureAggregator());
+		}
+		
+		LoadTestMonitor monitor = new LoadTestMonitor(this, stats);
+		MonitorRegistry.register(monitor, "LoadTest", toString());
+		
+		List listeners = new ArrayList(intervalListeners);
+		LoadReport report = null;
+		if (reportDirectory != null) {
+			report = new LoadReport(this);
+			listeners.add(report);
+		}
+		if (slaPolicy != null) {
+			listeners.add(new SlaListener(slaPolicy));
+		}
+		
+		IntervalSampler sampler = null;
+		if (!listeners.isEmpty()) {
+			sampler = new IntervalSampler(toString(), stats, interval, listeners);
+			sampler.start();
+		}
 
+		StartGate startGate = null;
+		if (isSimultaneousStart) {
+			startGate = new StartGate(users, sleeper);
+		}
+		gate = startGate;
+		for (Iterator i = rendezvous.values().iterator(); i.hasNext();) {
+			((Rendezvous)i.next()).start(users, sleeper);
+		}
+		deadline = System.nanoTime() + duration * 1000000L;
+		
 		for (int i=0; i < users; i++) {
 
-			if (result.shouldStop()) {
+			if (result.shouldStop() || stopped) {
 				barrier.cancelThreads(users - i);
+				if (startGate != null) {
+					startGate.cancel();
+				}
+				cancelRendezvous();
 				break;
 			}
 
 			test.run(result);
 
-            sleep(getDelay());
+			if (startGate == null) {
+				delay(timer, stats);
+			}
+		}
+		
+		if (startGate != null) {
+			releaseUsers(startGate);
 		}
 		
 		waitForTestCompletion();
 
+		if (sampler != null) {
+			sampler.stop();
+		}
+		result.removeListener(stats);
+		MonitorRegistry.unregister(monitor);
+		
+		if (report != null) {
+			writeReport(report, stats, monitor.getId());
+		}
+		
+		if (startGate != null && !startGate.isCancelled()) {
+			printReleaseSpread(startGate);
+		}
+		printSuppressedFailures(stats.getFailureAggregator());
+		
+		if (abortReason != null) {
+			result.addFailure(this, 
+				new AssertionFailedError("Load test aborted: " + abortReason));
+		}
+		
 		cleanup();
 	}
 	
+	private void cancelRendezvous() {
+		for (Iterator i = rendezvous.values().iterator(); i.hasNext();) {
+			((Rendezvous)i.next()).cancel();
+		}
+	}
+	
+	private void releaseUsers(StartGate startGate) {
+		
+		try {
+			startGate.awaitReady();
+		} catch (InterruptedException e) {
+			startGate.cancel();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		
+		long releaseTime = startGate.getDefaultReleaseTime();
+		deadline = releaseTime + duration * 1000000L;
+		startGate.release(releaseTime);
+	}
+	
+	protected void printReleaseSpread(StartGate startGate) {
+		ConsoleReporter.getDefault().print(toString() + ": released " + 
+			startGate.getParties() + " users within " + 
+			Histogram.toMillis(startGate.getSpread()) + " ms");
+	}
+	
+	/*
+	 * Returns the number of events each user buffers, which is 1
+	 * when failures are sampled without batching so that the 
+	 * failures are filtered but the events are not delayed.
+	 */
+	private int getEffectiveBatchSize() {
+		if (resultBatchSize == 0 && failureSampleSize >= 0) {
+			return 1;
+		}
+		return resultBatchSize;
+	}
+	
+	/*
+	 * Creates an aggregator sampling the specified number of failures
+	 * per signature, or reporting all failures if the size is negative.
+	 */
+	static FailureAggregator createFailureAggregator(int failureSampleSize) {
+		FailureAggregator aggregator = new FailureAggregator(
+			(failureSampleSize < 0) ? 10 : failureSampleSize, 100);
+		aggregator.setReportingAll(failureSampleSize < 0);
+		return aggregator;
+	}
+	
+	protected void printSuppressedFailures(FailureAggregator aggregator) {
+		long suppressed = aggregator.getSuppressedCount();
+		if (suppressed > 0 && !aggregator.isReportingAll()) {
+			ConsoleReporter.getDefault().print(toString() + ": " + 
+				aggregator.getCount() + " failures and errors, " + suppressed + 
+				" not reported in full. Top signatures: " + aggregator);
+		}
+	}
+	
+	protected void writeReport(LoadReport report, LoadStatistics stats, int runId) {
+		
+		report.finish(stats);
+		
+		String name = decoratedTest.toString().replaceAll("[^A-Za-z0-9_.-]+", "_");
+		if (name.length() > 80) {
+			name = name.substring(0, 80);
+		}
+		
+		try {
+			report.writeTo(reportDirectory, "LoadTest-" + name + "-" + runId);
+		} catch (IOException e) {
+			System.err.println("Load test report not written: " + e);
+		}
+	}
+	
 	protected void waitForTestCompletion() {
 		//
 		// TODO: May require a strategy pattern
@@ -249,21 +929,56 @@ public class LoadTest implements Test {
 	}
 
 	protected void waitForThreadedTestThreadsToComplete() {
+		boolean interrupted = false;
 		while (!barrier.isReached()) {
 			sleep(50);
+			interrupted |= Thread.interrupted();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
 	}
 	
 	protected void waitForAllThreadsToComplete() {
+		boolean interrupted = false;
 		while (group.activeCount() > 0) {
 			sleep(50);
+			interrupted |= Thread.interrupted();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
 	}
 	
 	protected void sleep(long time)  {
-		try { 
-			Thread.sleep(time); 
-		} catch(Exception ignored) { } 
+		sleeper.sleep(time * 1000000L);
+	}
+	
+	/*
+	 * Delays the current thread as prescribed by the specified timer
+	 * and records the delay error.  Delays in milliseconds go through
+	 * sleep(), so that subclasses can still control them.
+	 */
+	private void delay(Timer timer, LoadStatistics stats) {
+		
+		long error = -1;
+		if (timer instanceof PreciseTimer) {
+			long nanos = ((PreciseTimer)timer).getDelayNanos();
+			if (nanos > 0) {
+				error = sleeper.sleep(nanos);
+			}
+		} else {
+			long millis = (timer == this.timer) ? getDelay() : timer.getDelay();
+			if (millis > 0) {
+				long begin = System.nanoTime();
+				sleep(millis);
+				error = System.nanoTime() - begin - millis * 1000000L;
+			}
+		}
+		
+		if (error >= 0) {
+			stats.recordDelayError(error);
+		}
 	}
 	
 	protected void cleanup() {
@@ -283,4 +998,161 @@ public class LoadTest implements Test {
 	protected long getDelay() {
 		return timer.getDelay();
 	}
+	
+	/*
+	 * The <code>SlaListener</code> evaluates an SLA policy over
+	 * the intervals within its window and aborts the load test
+	 * when it is violated.
+	 */
+	private final class SlaListener implements IntervalListener {
+		
+		private final SlaPolicy policy;
+		private final LinkedList window;
+		
+		SlaListener(SlaPolicy policy) {
+			this.policy = policy;
+			this.window = new LinkedList();
+		}
+		
+		public void intervalEnded(IntervalSnapshot snapshot) {
+			
+			if (snapshot.isLast() || abortReason != null) {
+				return;
+			}
+			
+			window.addLast(snapshot);
+			
+			long windowTime = policy.getWindow() * 1000000L;
+			long time = 0;
+			for (int i=0; i < window.size(); i++) {
+				time += ((IntervalSnapshot)window.get(i)).getIntervalTime();
+			}
+			while (time - ((IntervalSnapshot)window.getFirst()).getIntervalTime() >= windowTime) {
+				time -= ((IntervalSnapshot)window.removeFirst()).getIntervalTime();
+			}
+			
+			if (time < windowTime) {
+				return;
+			}
+			
+			long iterations = 0;
+			long errors = 0;
+			Histogram latency = new Histogram();
+			for (int i=0; i < window.size(); i++) {
+				IntervalSnapshot s = (IntervalSnapshot)window.get(i);
+				iterations += s.getIntervalIterations();
+				errors += s.getIntervalErrors();
+				latency.add(s.getIntervalLatency());
+			}
+			
+			String violation = policy.check(iterations, errors, latency, time);
+			if (violation != null) {
+				abort(violation + " over the last " + time / 1000000L + " ms");
+			}
+		}
+	}
+	
+	/*
+	 * The <code>UserTest</code> runs the iterations of a single
+	 * user, pausing for the think time between iterations and
+	 * recording the latency of each iteration.
+	 */
+	private final class UserTest extends TestDecorator {
+		
+		UserTest(Test test) {
+			super(test);
+		}
+		
+		public int countTestCases() {
+			return super.countTestCases() * iterations;
+		}
+		
+		public void run(TestResult result) {
+			
+			LoadStatistics stats = statistics;
+			stats.userStarted();
+			
+			Object previous = current.get();
+			current.set(LoadTest.this);
+			
+			BufferedTestResult buffer = null;
+			int batchSize = getEffectiveBatchSize();
+			if (batchSize > 0) {
+				buffer = new BufferedTestResult(result, batchSize, 1000);
+				buffer.setFailureAggregator(stats.getFailureAggregator());
+				buffer.addListener(stats);
+				result = buffer;
+			}
+			
+			try {
+				StartGate startGate = gate;
+				if (startGate != null) {
+					long lag = startGate.await();
+					if (lag >= 0) {
+						stats.recordReleaseLag(lag);
+					}
+				}
+				runIterations(result, stats);
+			} finally {
+				if (buffer != null) {
+					buffer.flush();
+				}
+				stats.userFinished();
+				for (Iterator i = rendezvous.values().iterator(); i.hasNext();) {
+					((Rendezvous)i.next()).userFinished();
+				}
+				current.set(previous);
+			}
+		}
+		
+		private void runIterations(TestResult result, LoadStatistics stats) {
+			
+			Pacer pacer = null;
+			if (pacingRate > 0) {
+				pacer = new Pacer(pacingRate, pacingPolicy, Integer.MAX_VALUE, sleeper);
+			}
+			
+			for (int i=0; duration > 0 || i < iterations; i++) {
+				
+				if (result.shouldStop() || stopped) {
+					break;
+				}
+				
+				if (duration > 0 && System.nanoTime() - deadline >= 0) {
+					break;
+				}
+				
+				if (i > 0 && thinkTimer != null) {
+					long thinkBegin = System.nanoTime();
+					delay(thinkTimer, stats);
+					stats.recordThinkTime(System.nanoTime() - thinkBegin);
+				}
+				
+				if (pacer != null) {
+					long skipped = pacer.getSkipped();
+					long lag = pacer.await();
+					if (stopped || (duration > 0 && System.nanoTime() - deadline >= 0)) {
+						break;
+					}
+					stats.recordScheduleLag(lag);
+					stats.recordSkippedIterations(pacer.getSkipped() - skipped);
+					if (pacer.getSleepError() >= 0) {
+						stats.recordDelayError(pacer.getSleepError());
+					}
+				}
+				
+				long begin = System.nanoTime();
+				basicRun(result);
+				stats.recordIteration(System.nanoTime() - begin);
+			}
+		}
+		
+		public String toString() {
+			if (iterations == 1) {
+				return super.toString();
+			} else {
+				return super.toString() + "(repeated)";
+			}
+		}
+	}
 }
@@ -0,0 +1,159 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>LoadTestMonitor</code> exposes the live statistics 
+ * of a running <code>LoadTest</code> and allows it to be stopped.
+ * <p>
+ * While a load test runs, its monitor is registered in the 
+ * <code>MonitorRegistry</code>, which also registers it as an 
+ * MBean in the platform MBean server.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.MonitorRegistry
+ */
+
+public class LoadTestMonitor implements LoadTestMonitorMBean {
+
+	private static final AtomicInteger ids = new AtomicInteger();
+
+	private static final long WINDOW = 1000000000L;
+	
+	private final LoadTest test;
+	private final LoadStatistics statistics;
+	private final String name;
+	private final int id;
+	
+	private Histogram windowStart;
+	private long windowStartTime;
+	private Histogram recent;
+	private long recentTime;
+
+	/**
+	 * Constructs a <code>LoadTestMonitor</code>.
+	 *
+	 * @param test Load test.
+	 * @param statistics Statistics of the current run.
+	 */
+	public LoadTestMonitor(LoadTest test, LoadStatistics statistics) {
+		this.test = test;
+		this.statistics = statistics;
+		this.name = test.toString();
+		this.id = ids.incrementAndGet();
+		this.windowStart = new Histogram();
+		this.windowStartTime = statistics.getElapsedTime();
+		this.recent = new Histogram();
+		this.recentTime = 0;
+	}
+	
+	/**
+	 * Returns the monitored load test.
+	 *
+	 * @return Load test.
+	 */
+	public LoadTest getTest() {
+		return test;
+	}
+	
+	/**
+	 * Returns the statistics of the monitored run.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Returns the identifier of the monitored run, which is
+	 * unique within this JVM.
+	 *
+	 * @return Run identifier.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getUsers() {
+		return test.getUsers();
+	}
+	
+	public int getActiveUsers() {
+		return statistics.getActiveUsers();
+	}
+	
+	public long getIterations() {
+		return statistics.getIterationCount();
+	}
+	
+	public long getErrorCount() {
+		return statistics.getErrorCount();
+	}
+	
+	public long getFailureCount() {
+		return statistics.getFailureCount();
+	}
+	
+	public long getElapsedTime() {
+		return statistics.getElapsedTime() / 1000000L;
+	}
+	
+	public synchronized double getThroughput() {
+		updateWindow();
+		return (recentTime <= 0) ? 0.0 : recent.getCount() * 1e9 / recentTime;
+	}
+	
+	public double getLatency50() {
+		return getRecentLatency().getValueAtPercentile(50) / 1e6;
+	}
+	
+	public double getLatency90() {
+		return getRecentLatency().getValueAtPercentile(90) / 1e6;
+	}
+	
+	public double getLatency99() {
+		return getRecentLatency().getValueAtPercentile(99) / 1e6;
+	}
+	
+	public double getLatencyMax() {
+		return getRecentLatency().getMax() / 1e6;
+	}
+	
+	public boolean isStopped() {
+		return test.isStopped();
+	}
+	
+	public void stop() {
+		test.stop();
+	}
+	
+	private synchronized Histogram getRecentLatency() {
+		updateWindow();
+		return recent;
+	}
+	
+	/*
+	 * Rolls the window over once it is complete, so the
+	 * recent values cover the last completed window.
+	 */
+	private void updateWindow() {
+		
+		long now = statistics.getElapsedTime();
+		
+		if (now - windowStartTime >= WINDOW) {
+			Histogram latency = statistics.getLatency().copy();
+			recent = latency.since(windowStart);
+			recentTime = now - windowStartTime;
+			windowStart = latency;
+			windowStartTime = now;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>LoadTestMonitorMBean</code> interface defines the
+ * management interface of a running <code>LoadTest</code>.
+ * <p>
+ * Latency percentiles and throughput are computed over the most 
+ * recent completed window of about one second.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTestMonitor
+ */
+
+public interface LoadTestMonitorMBean {
+
+	/**
+	 * Returns the test description.
+	 */
+	public String getName();
+	
+	/**
+	 * Returns the number of concurrent users.
+	 */
+	public int getUsers();
+	
+	/**
+	 * Returns the number of users currently running.
+	 */
+	public int getActiveUsers();
+	
+	/**
+	 * Returns the number of completed iterations.
+	 */
+	public long getIterations();
+	
+	/**
+	 * Returns the number of errors.
+	 */
+	public long getErrorCount();
+	
+	/**
+	 * Returns the number of failures.
+	 */
+	public long getFailureCount();
+	
+	/**
+	 * Returns the elapsed time of the run (ms).
+	 */
+	public long getElapsedTime();
+	
+	/**
+	 * Returns the recent throughput (iterations per second).
+	 */
+	public double getThroughput();
+	
+	/**
+	 * Returns the recent median latency (ms).
+	 */
+	public double getLatency50();
+	
+	/**
+	 * Returns the recent 90th percentile latency (ms).
+	 */
+	public double getLatency90();
+	
+	/**
+	 * Returns the recent 99th percentile latency (ms).
+	 */
+	public double getLatency99();
+	
+	/**
+	 * Returns the recent maximum latency (ms).
+	 */
+	public double getLatencyMax();
+	
+	/**
+	 * Determines whether the run was stopped.
+	 */
+	public boolean isStopped();
+	
+	/**
+	 * Stops the load test after the current iterations.
+	 */
+	public void stop();
+}
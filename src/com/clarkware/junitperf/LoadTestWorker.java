@@ -0,0 +1,175 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Enumeration;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestFailure;
+import junit.framework.TestResult;
+
+/**
+ * The <code>LoadTestWorker</code> runs a slice of the users 
+ * of a <code>LoadTest</code> in a JVM forked by a 
+ * <code>DistributedLoadTest</code>.
+ * <p>
+ * The worker connects to its coordinator, creates the load 
+ * test returned by the static <code>suite()</code> method of 
+ * the suite class, and reports that it is ready.  It starts 
+ * its users when the coordinator signals the start, reports
+ * a heartbeat every second while they run, and then sends back
+ * its run count, failures, errors, and statistics.
+ * </p>
+ * <p>
+ * Usage:
+ * <blockquote>
+ * <pre>
+ * java com.clarkware.junitperf.LoadTestWorker host port worker users suiteClass
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.DistributedLoadTest
+ */
+
+public class LoadTestWorker {
+
+	static final int START = 1;
+	static final int HEARTBEAT = 2;
+	static final int RESULT = 3;
+	
+	static final long HEARTBEAT_INTERVAL = 1000;
+	
+	public static void main(String[] args) throws Exception {
+		
+		if (args.length != 5) {
+			System.err.println("Usage: LoadTestWorker host port worker users suiteClass");
+			System.exit(2);
+		}
+		
+		String host = args[0];
+		int port = Integer.parseInt(args[1]);
+		int worker = Integer.parseInt(args[2]);
+		int users = Integer.parseInt(args[3]);
+		String suiteClass = args[4];
+		
+		Socket socket = new Socket(host, port);
+		try {
+			
+			DataInputStream in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream()));
+			
+			LoadTest loadTest = ((LoadTest)ForkedJvm.loadSuite(suiteClass)).withUsers(users);
+			
+			out.writeInt(worker);
+			out.flush();
+			
+			if (in.readInt() != START) {
+				throw new IOException("Unexpected message from coordinator");
+			}
+			
+			Thread heartbeat = startHeartbeat(out);
+			TestResult result = new TestResult();
+			try {
+				loadTest.run(result);
+			} finally {
+				heartbeat.interrupt();
+				heartbeat.join();
+			}
+			
+			out.writeInt(RESULT);
+			writeResult(out, result, loadTest.getStatistics());
+			out.flush();
+			
+		} finally {
+			socket.close();
+		}
+		
+		System.exit(0);
+	}
+	
+	/*
+	 * Starts a thread reporting a heartbeat to the coordinator 
+	 * until it is interrupted, so that the coordinator can tell
+	 * a running worker from a hung one.
+	 */
+	private static Thread startHeartbeat(final DataOutputStream out) {
+		Thread thread = new Thread("JUnitPerf worker heartbeat") {
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(HEARTBEAT_INTERVAL);
+						synchronized (out) {
+							out.writeInt(HEARTBEAT);
+							out.flush();
+						}
+					}
+				} catch (InterruptedException ignored) {
+				} catch (IOException ignored) { }
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	static void writeResult(DataOutputStream out, TestResult result,
+		LoadStatistics statistics) throws IOException {
+		
+		out.writeInt(result.runCount());
+		
+		out.writeInt(result.failureCount());
+		for (Enumeration e = result.failures(); e.hasMoreElements(); ) {
+			TestFailure failure = (TestFailure)e.nextElement();
+			out.writeUTF(ForkedJvm.truncate(String.valueOf(failure.failedTest())));
+			out.writeUTF(ForkedJvm.truncate(failure.thrownException().getMessage()));
+		}
+		
+		out.writeInt(result.errorCount());
+		for (Enumeration e = result.errors(); e.hasMoreElements(); ) {
+			TestFailure error = (TestFailure)e.nextElement();
+			Throwable t = error.thrownException();
+			out.writeUTF(ForkedJvm.truncate(String.valueOf(error.failedTest())));
+			out.writeUTF(t.getClass().getName());
+			out.writeUTF(ForkedJvm.truncate(t.getMessage()));
+			out.writeUTF(ForkedJvm.truncate(ForkedJvm.toString(t)));
+		}
+		
+		statistics.writeTo(out);
+	}
+	
+	static void readResult(DataInputStream in, TestResult result, 
+		LoadStatistics statistics, String prefix) throws IOException {
+		
+		int runCount = in.readInt();
+		RemoteTest test = new RemoteTest(prefix);
+		for (int i=0; i < runCount; i++) {
+			result.startTest(test);
+			result.endTest(test);
+		}
+		
+		int failureCount = in.readInt();
+		for (int i=0; i < failureCount; i++) {
+			RemoteTest failedTest = new RemoteTest(prefix + in.readUTF());
+			result.addFailure(failedTest, new AssertionFailedError(in.readUTF()));
+		}
+		
+		int errorCount = in.readInt();
+		for (int i=0; i < errorCount; i++) {
+			RemoteTest failedTest = new RemoteTest(prefix + in.readUTF());
+			result.addError(failedTest, 
+				new RemoteTestException(in.readUTF(), in.readUTF(), in.readUTF()));
+		}
+		
+		statistics.readFrom(in);
+	}
+}
@@ -0,0 +1,115 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>LogNormalTimer</code> is a <code>Timer</code>
+ * with log-normally distributed delays.
+ * <p>
+ * Log-normal delays are always positive and have a long tail,
+ * which is typical of human think times.  The distribution is 
+ * specified by its median and by the standard deviation of the 
+ * logarithm of the delay, which controls the length of the tail.
+ * The tail is truncated at a maximum delay, 100 times the median 
+ * by default, so that a rare sample cannot stall a user for hours.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ * 
+ * @see com.clarkware.junitperf.Timer
+ */
+
+public class LogNormalTimer implements PreciseTimer {
+
+	private final RandomSource random;
+	private final double mu;
+	private final double sigma;
+	private final double maxDelay;
+
+	/**
+	 * Constructs a <code>LogNormalTimer</code> with the
+	 * specified median delay and shape.
+	 *
+	 * @param medianDelay Median delay (ms).
+	 * @param sigma Standard deviation of the logarithm
+	 *        of the delay.
+	 */
+	public LogNormalTimer(double medianDelay, double sigma) {
+		this(medianDelay, sigma, new RandomSource());
+	}
+
+	/**
+	 * Constructs a <code>LogNormalTimer</code> with the
+	 * specified median delay, shape, and seed.
+	 *
+	 * @param medianDelay Median delay (ms).
+	 * @param sigma Standard deviation of the logarithm
+	 *        of the delay.
+	 * @param seed Random seed.
+	 */
+	public LogNormalTimer(double medianDelay, double sigma, long seed) {
+		this(medianDelay, sigma, medianDelay * 100, new RandomSource(seed));
+	}
+
+	/**
+	 * Constructs a <code>LogNormalTimer</code> with the
+	 * specified median delay, shape, maximum delay, and seed.
+	 *
+	 * @param medianDelay Median delay (ms).
+	 * @param sigma Standard deviation of the logarithm
+	 *        of the delay.
+	 * @param maxDelay Maximum delay (ms).
+	 * @param seed Random seed.
+	 */
+	public LogNormalTimer(double medianDelay, double sigma, double maxDelay, long seed) {
+		this(medianDelay, sigma, maxDelay, new RandomSource(seed));
+	}
+	
+	private LogNormalTimer(double medianDelay, double sigma, RandomSource random) {
+		this(medianDelay, sigma, medianDelay * 100, random);
+	}
+	
+	private LogNormalTimer(double medianDelay, double sigma, double maxDelay, 
+		RandomSource random) {
+		
+		if (medianDelay <= 0) {
+			throw new IllegalArgumentException("Median delay must be > 0");
+		} else if (sigma < 0) {
+			throw new IllegalArgumentException("Sigma must be >= 0");
+		} else if (maxDelay < medianDelay) {
+			throw new IllegalArgumentException("Maximum delay must be >= median delay");
+		} else if (!(maxDelay * 1e6 < Long.MAX_VALUE)) {
+			throw new IllegalArgumentException("Maximum delay is too large: " + maxDelay);
+		}
+		
+		this.mu = Math.log(medianDelay);
+		this.sigma = sigma;
+		this.maxDelay = maxDelay;
+		this.random = random;
+	}
+
+	/**
+	 * Returns the timer delay.
+	 *
+	 * @return Delay (ms).
+	 */
+	public long getDelay() {
+		return Math.round(nextDelay());
+	}
+	
+	/**
+	 * Returns the timer delay with a sub-millisecond
+	 * resolution.
+	 *
+	 * @return Delay (ns).
+	 */
+	public long getDelayNanos() {
+		return Math.round(nextDelay() * 1e6);
+	}
+	
+	/*
+	 * Returns the next delay (ms), truncated at the maximum.
+	 */
+	private double nextDelay() {
+		return Math.min(maxDelay, Math.exp(mu + sigma * random.nextGaussian()));
+	}
+}
@@ -0,0 +1,347 @@
+package com.clarkware.junitperf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>MappedFileDataFeeder</code> is a <code>DataFeeder</code>
+ * that streams line-oriented test data records, such as CSV or 
+ * JSON Lines, from a memory-mapped file.
+ * <p>
+ * The file is mapped rather than read, so construction is 
+ * immediate and the heap usage does not depend on the size of
+ * the data set.  Each record is returned as a read-only 
+ * <code>ByteBuffer</code> slice of the mapped file, without 
+ * its line terminator, and no record bytes are copied until the 
+ * test decodes them with <code>toString(ByteBuffer)</code> or 
+ * <code>split(ByteBuffer, char)</code>.  Blank lines are skipped.
+ * </p>
+ * <p>
+ * The file can be split into partitions on line boundaries, with 
+ * one partition assigned to each user thread on its first call to 
+ * <code>next()</code>, in the same way as a 
+ * <code>PartitionedDataFeeder</code>.  With a single partition, all 
+ * users share one atomic cursor, in the same way as a 
+ * <code>SharedDataFeeder</code>.
+ * </p>
+ * <p>
+ * For example, to replay a CSV file with a header line so that
+ * each of 10 users reads its own part of the file once, use:
+ * <blockquote>
+ * <pre>
+ * DataFeeder feeder = 
+ *     new MappedFileDataFeeder(new File("requests.csv"), 10, true, false);
+ * ...
+ * ByteBuffer record = (ByteBuffer)feeder.next();
+ * ByteBuffer[] fields = MappedFileDataFeeder.split(record, ',');
+ * String url = MappedFileDataFeeder.toString(fields[0]);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.DataFeeder
+ */
+
+public class MappedFileDataFeeder implements DataFeeder {
+
+	private static final int MAX_REGION_SIZE = 1 << 30;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final boolean circular;
+	private final long[] regionOffsets;
+	private final ByteBuffer[] regions;
+	private final Partition[] partitions;
+	private final AtomicInteger nextPartition;
+	
+	private final ThreadLocal localPartition = new ThreadLocal() {
+		protected Object initialValue() {
+			int index = nextPartition.getAndIncrement();
+			return partitions[index % partitions.length];
+		}
+	};
+
+	/**
+	 * Constructs a <code>MappedFileDataFeeder</code> with a 
+	 * single partition shared by all users.
+	 *
+	 * @param file Test data file.
+	 * @param skipHeader <code>true</code> to skip the first line.
+	 * @param circular <code>true</code> to start over when the
+	 *        data is exhausted; <code>false</code> to return 
+	 *        <code>null</code> instead.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public MappedFileDataFeeder(File file, boolean skipHeader, boolean circular) 
+		throws IOException {
+		this(file, 1, skipHeader, circular);
+	}
+	
+	/**
+	 * Constructs a <code>MappedFileDataFeeder</code> with the
+	 * specified number of partitions.
+	 *
+	 * @param file Test data file.
+	 * @param partitions Number of partitions, typically the
+	 *        number of concurrent users.
+	 * @param skipHeader <code>true</code> to skip the first line.
+	 * @param circular <code>true</code> to start over when a
+	 *        partition is exhausted; <code>false</code> to return 
+	 *        <code>null</code> instead.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	public MappedFileDataFeeder(File file, int partitions, 
+		boolean skipHeader, boolean circular) throws IOException {
+		this(file, partitions, skipHeader, circular, MAX_REGION_SIZE);
+	}
+	
+	MappedFileDataFeeder(File file, int partitions, boolean skipHeader, 
+		boolean circular, int maxRegionSize) throws IOException {
+		
+		if (partitions < 1) {
+			throw new IllegalArgumentException("Number of partitions must be > 0");
+		}
+		
+		this.circular = circular;
+		this.nextPartition = new AtomicInteger();
+		
+		List offsets = new ArrayList();
+		List buffers = new ArrayList();
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			mapRegions(raf.getChannel(), maxRegionSize, offsets, buffers);
+		} finally {
+			raf.close();
+		}
+		
+		this.regions = (ByteBuffer[])buffers.toArray(new ByteBuffer[buffers.size()]);
+		this.regionOffsets = new long[offsets.size()];
+		for (int i=0; i < regionOffsets.length; i++) {
+			regionOffsets[i] = ((Long)offsets.get(i)).longValue();
+		}
+		
+		long begin = skipHeader ? nextLineStart(1) : 0;
+		long end = getLength();
+		
+		this.partitions = new Partition[partitions];
+		long partitionBegin = begin;
+		for (int i=0; i < partitions; i++) {
+			long partitionEnd = (i == partitions - 1) ? end :
+				nextLineStart(begin + (end - begin) * (i + 1) / partitions);
+			this.partitions[i] = new Partition(partitionBegin, partitionEnd);
+			partitionBegin = partitionEnd;
+		}
+	}
+
+	/**
+	 * Returns the next record of the calling thread's partition.
+	 *
+	 * @return Read-only <code>ByteBuffer</code> slice containing 
+	 *         the record, or <code>null</code> if the partition 
+	 *         has been exhausted.
+	 */
+	public Object next() {
+		return ((Partition)localPartition.get()).next();
+	}
+	
+	/**
+	 * Returns the number of partitions.
+	 *
+	 * @return Number of partitions.
+	 */
+	public int getPartitionCount() {
+		return partitions.length;
+	}
+	
+	/**
+	 * Decodes the specified record as UTF-8 text.
+	 *
+	 * @param record Record or field.
+	 * @return Text.
+	 */
+	public static String toString(ByteBuffer record) {
+		return UTF8.decode(record.duplicate()).toString();
+	}
+	
+	/**
+	 * Splits the specified record into fields at each occurrence
+	 * of the separator without copying the record bytes.  Quoting
+	 * is not supported.
+	 *
+	 * @param record Record.
+	 * @param separator Field separator, such as <code>','</code>.
+	 * @return Read-only field slices.
+	 */
+	public static ByteBuffer[] split(ByteBuffer record, char separator) {
+		
+		List fields = new ArrayList();
+		
+		int begin = record.position();
+		for (int i=begin; i < record.limit(); i++) {
+			if (record.get(i) == separator) {
+				fields.add(slice(record, begin, i));
+				begin = i + 1;
+			}
+		}
+		fields.add(slice(record, begin, record.limit()));
+		
+		return (ByteBuffer[])fields.toArray(new ByteBuffer[fields.size()]);
+	}
+	
+	private static ByteBuffer slice(ByteBuffer buffer, int begin, int end) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(end);
+		slice.position(begin);
+		return slice.slice().asReadOnlyBuffer();
+	}
+	
+	/*
+	 * Maps the file in regions that end on line boundaries so
+	 * that no record spans two regions.
+	 */
+	private static void mapRegions(FileChannel channel, int maxRegionSize,
+		List offsets, List buffers) throws IOException {
+		
+		long size = channel.size();
+		long offset = 0;
+		
+		while (offset < size) {
+			
+			int length = (int)Math.min(maxRegionSize, size - offset);
+			ByteBuffer region = 
+				channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			
+			if (offset + length < size) {
+				int end = length - 1;
+				while (end >= 0 && region.get(end) != '\n') {
+					end--;
+				}
+				if (end < 0) {
+					throw new IOException("Record at offset " + offset + 
+						" exceeds " + maxRegionSize + " bytes");
+				}
+				length = end + 1;
+				region.limit(length);
+			}
+			
+			offsets.add(Long.valueOf(offset));
+			buffers.add(region.slice());
+			offset += length;
+		}
+	}
+	
+	private long getLength() {
+		int last = regions.length - 1;
+		return (last < 0) ? 0 : regionOffsets[last] + regions[last].limit();
+	}
+	
+	private int regionIndex(long offset) {
+		
+		int low = 0;
+		int high = regionOffsets.length - 1;
+		
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (regionOffsets[middle] <= offset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		
+		return low;
+	}
+	
+	/*
+	 * Returns the offset of the first line starting at 
+	 * or after the specified offset.
+	 */
+	private long nextLineStart(long offset) {
+		
+		if (offset <= 0) {
+			return 0;
+		}
+		
+		long length = getLength();
+		for (long i=offset - 1; i < length; i++) {
+			int region = regionIndex(i);
+			if (regions[region].get((int)(i - regionOffsets[region])) == '\n') {
+				return i + 1;
+			}
+		}
+		
+		return length;
+	}
+	
+	/*
+	 * A contiguous range of lines claimed through an atomic 
+	 * cursor.  The cursor is only contended when threads share 
+	 * a partition.
+	 */
+	private final class Partition {
+		
+		private final long begin;
+		private final long end;
+		private final AtomicLong cursor;
+		
+		Partition(long begin, long end) {
+			this.begin = begin;
+			this.end = end;
+			this.cursor = new AtomicLong(begin);
+		}
+		
+		ByteBuffer next() {
+			
+			if (begin >= end) {
+				return null;
+			}
+			
+			boolean wrapped = false;
+			
+			while (true) {
+				
+				long position = cursor.get();
+				
+				if (position >= end) {
+					if (!circular || wrapped) {
+						return null;
+					}
+					cursor.compareAndSet(position, begin);
+					wrapped = true;
+					continue;
+				}
+				
+				int index = regionIndex(position);
+				ByteBuffer region = regions[index];
+				int lineBegin = (int)(position - regionOffsets[index]);
+				int lineEnd = lineBegin;
+				while (lineEnd < region.limit() && region.get(lineEnd) != '\n') {
+					lineEnd++;
+				}
+				
+				long next = regionOffsets[index] + Math.min(lineEnd + 1, region.limit());
+				if (!cursor.compareAndSet(position, next)) {
+					continue;
+				}
+				
+				if (lineEnd > lineBegin && region.get(lineEnd - 1) == '\r') {
+					lineEnd--;
+				}
+				if (lineEnd > lineBegin) {
+					return slice(region, lineBegin, lineEnd);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package com.clarkware.junitperf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The <code>MetricsServer</code> is an embedded HTTP server that
+ * serves the metrics of the running load tests in the Prometheus 
+ * text exposition format at <code>/metrics</code>.
+ * <p>
+ * For each <code>LoadTest</code> registered in the 
+ * <code>MonitorRegistry</code>, the iteration, error and failure 
+ * counters, the user gauges, and the cumulative latency histogram 
+ * are exported, labelled with the test description and a run 
+ * identifier.  The metrics are read from the lock-free statistics 
+ * of the load tests, so scraping does not block the users.
+ * </p>
+ * <p>
+ * For example, to serve the metrics on port 9400, use:
+ * <blockquote>
+ * <pre>
+ * MetricsServer server = new MetricsServer(9400);
+ * server.start();
+ * </pre>
+ * </blockquote>
+ * or set the <code>junitperf.metrics.port</code> system property,
+ * which starts a server when the first test is run.
+ * </p>
+ * <p>
+ * By default, the server listens on the loopback address only.
+ * To let a Prometheus server on another host scrape the metrics, 
+ * construct it with the address to listen on, or set the
+ * <code>junitperf.metrics.address</code> system property, such as
+ * to <code>0.0.0.0</code> for all local addresses.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.MonitorRegistry
+ */
+
+public class MetricsServer {
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	/*
+	 * Upper bounds of the latency histogram buckets (s).
+	 */
+	private static final String[] BUCKETS = {
+		"0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", 
+		"0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+	};
+	
+	private static MetricsServer configuredServer;
+	private static boolean isConfigured;
+	
+	private final InetSocketAddress address;
+	private HttpServer server;
+
+	/**
+	 * Constructs a <code>MetricsServer</code> listening
+	 * on the specified port of the loopback address.
+	 *
+	 * @param port Port, or 0 for any free port.
+	 */
+	public MetricsServer(int port) {
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+	
+	/**
+	 * Constructs a <code>MetricsServer</code> listening
+	 * on the specified port of the specified local address.
+	 *
+	 * @param address Local address.
+	 * @param port Port, or 0 for any free port.
+	 */
+	public MetricsServer(InetAddress address, int port) {
+		this(new InetSocketAddress(address, port));
+	}
+	
+	/**
+	 * Constructs a <code>MetricsServer</code> listening
+	 * on the specified address.
+	 *
+	 * @param address Socket address.
+	 */
+	public MetricsServer(InetSocketAddress address) {
+		this.address = address;
+	}
+	
+	/**
+	 * Starts the server.
+	 *
+	 * @throws IOException If the server cannot be bound.
+	 */
+	public synchronized void start() throws IOException {
+		
+		if (server != null) {
+			return;
+		}
+		
+		server = HttpServer.create(address, 0);
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = render(MonitorRegistry.getLoadTestMonitors()).getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+	}
+	
+	/**
+	 * Stops the server.
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+	
+	/**
+	 * Returns the port of the running server.
+	 *
+	 * @return Port.
+	 */
+	public synchronized int getPort() {
+		return getAddress().getPort();
+	}
+	
+	/**
+	 * Returns the socket address of the running server.
+	 *
+	 * @return Socket address.
+	 */
+	public synchronized InetSocketAddress getAddress() {
+		return (server == null) ? address : server.getAddress();
+	}
+	
+	/**
+	 * Starts the server configured by the 
+	 * <code>junitperf.metrics.port</code> and
+	 * <code>junitperf.metrics.address</code> system properties,
+	 * if any and if not already started.  The server is only 
+	 * started once, so a configuration that fails to start is 
+	 * reported once rather than on every load test.
+	 */
+	static synchronized void startConfigured() {
+		
+		if (isConfigured) {
+			return;
+		}
+		
+		String port = System.getProperty("junitperf.metrics.port");
+		if (port == null) {
+			return;
+		}
+		
+		isConfigured = true;
+		
+		String address = System.getProperty("junitperf.metrics.address");
+		
+		try {
+			configuredServer = (address == null) ?
+				new MetricsServer(Integer.parseInt(port)) :
+				new MetricsServer(InetAddress.getByName(address), Integer.parseInt(port));
+			configuredServer.start();
+		} catch (Exception e) {
+			System.err.println("Metrics server not started on port " + port + ": " + e);
+		}
+	}
+	
+	/**
+	 * Renders the metrics of the specified load test monitors.
+	 *
+	 * @param monitors List of <code>LoadTestMonitor</code> instances.
+	 * @return Metrics in the Prometheus text format.
+	 */
+	static String render(List monitors) {
+		
+		StringBuffer counters = new StringBuffer();
+		StringBuffer errors = new StringBuffer();
+		StringBuffer failures = new StringBuffer();
+		StringBuffer users = new StringBuffer();
+		StringBuffer activeUsers = new StringBuffer();
+		StringBuffer latencies = new StringBuffer();
+		
+		for (Iterator i = monitors.iterator(); i.hasNext(); ) {
+			
+			LoadTestMonitor monitor = (LoadTestMonitor)i.next();
+			LoadStatistics statistics = monitor.getStatistics();
+			Histogram latency = statistics.getLatency().copy();
+			String labels = "test=\"" + escape(monitor.getName()) + 
+				"\",run=\"" + monitor.getId() + "\"";
+			
+			sample(counters, "junitperf_iterations_total", labels, latency.getCount());
+			sample(errors, "junitperf_errors_total", labels, statistics.getErrorCount());
+			sample(failures, "junitperf_failures_total", labels, statistics.getFailureCount());
+			sample(users, "junitperf_users", labels, monitor.getUsers());
+			sample(activeUsers, "junitperf_active_users", labels, statistics.getActiveUsers());
+			
+			for (int b=0; b < BUCKETS.length; b++) {
+				long bound = Math.round(Double.parseDouble(BUCKETS[b]) * 1e9);
+				sample(latencies, "junitperf_latency_seconds_bucket", 
+					labels + ",le=\"" + BUCKETS[b] + "\"", latency.getCountAtOrBelow(bound));
+			}
+			sample(latencies, "junitperf_latency_seconds_bucket", 
+				labels + ",le=\"+Inf\"", latency.getCount());
+			sample(latencies, "junitperf_latency_seconds_sum", 
+				labels, latency.getTotal() / 1e9);
+			sample(latencies, "junitperf_latency_seconds_count", 
+				labels, latency.getCount());
+		}
+		
+		StringBuffer text = new StringBuffer();
+		family(text, "junitperf_iterations_total", "counter", 
+			"Completed load test iterations.", counters);
+		family(text, "junitperf_errors_total", "counter", 
+			"Load test errors.", errors);
+		family(text, "junitperf_failures_total", "counter", 
+			"Load test failures.", failures);
+		family(text, "junitperf_users", "gauge", 
+			"Configured concurrent users.", users);
+		family(text, "junitperf_active_users", "gauge", 
+			"Currently running users.", activeUsers);
+		family(text, "junitperf_latency_seconds", "histogram", 
+			"Load test iteration latency.", latencies);
+		
+		return text.toString();
+	}
+	
+	private static void family(StringBuffer text, String name, String type, 
+		String help, StringBuffer samples) {
+		
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		text.append(samples);
+	}
+	
+	private static void sample(StringBuffer text, String name, String labels, long value) {
+		text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+	
+	private static void sample(StringBuffer text, String name, String labels, double value) {
+		text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+	
+	private static String escape(String value) {
+		StringBuffer escaped = new StringBuffer();
+		for (int i=0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				escaped.append('\\').append(c);
+			} else if (c == '\n') {
+				escaped.append("\\n");
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
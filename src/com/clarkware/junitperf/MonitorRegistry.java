@@ -0,0 +1,132 @@
+package com.clarkware.junitperf;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The <code>MonitorRegistry</code> keeps track of the monitors
+ * of the running tests and registers each of them as an MBean in 
+ * the platform MBean server, in the <code>com.clarkware.junitperf</code> 
+ * domain, so runs can be watched and stopped from a JMX console.
+ * <p>
+ * Registration with the MBean server can be disabled by setting 
+ * the <code>junitperf.jmx</code> system property to <code>false</code>.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTestMonitor
+ * @see com.clarkware.junitperf.TimedTestMonitor
+ */
+
+public final class MonitorRegistry {
+
+	public static final String DOMAIN = "com.clarkware.junitperf";
+	
+	private static final boolean jmxEnabled = 
+		!"false".equals(System.getProperty("junitperf.jmx"));
+	
+	private static final AtomicInteger ids = new AtomicInteger();
+	
+	private static final Map monitors = new IdentityHashMap();
+
+	private MonitorRegistry() {
+	}
+	
+	/**
+	 * Registers the monitor of a running test.
+	 *
+	 * @param monitor Monitor.
+	 * @param type MBean type, such as <code>LoadTest</code>.
+	 * @param name Test description.
+	 */
+	public static void register(Object monitor, String type, String name) {
+		
+		MetricsServer.startConfigured();
+		
+		ObjectName objectName = null;
+		
+		if (jmxEnabled) {
+			try {
+				objectName = new ObjectName(DOMAIN + ":type=" + type + 
+					",id=" + ids.incrementAndGet() + ",name=" + ObjectName.quote(name));
+				getServer().registerMBean(monitor, objectName);
+			} catch (JMException e) {
+				objectName = null;
+			}
+		}
+		
+		synchronized (monitors) {
+			monitors.put(monitor, objectName);
+		}
+	}
+	
+	/**
+	 * Unregisters the monitor of a completed test.
+	 *
+	 * @param monitor Monitor.
+	 */
+	public static void unregister(Object monitor) {
+		
+		ObjectName objectName;
+		
+		synchronized (monitors) {
+			objectName = (ObjectName)monitors.remove(monitor);
+		}
+		
+		if (objectName != null) {
+			try {
+				getServer().unregisterMBean(objectName);
+			} catch (JMException ignored) { }
+		}
+	}
+	
+	/**
+	 * Returns the object name of a registered monitor.
+	 *
+	 * @param monitor Monitor.
+	 * @return Object name, or <code>null</code> if the monitor
+	 *         is not registered with the MBean server.
+	 */
+	public static ObjectName getObjectName(Object monitor) {
+		synchronized (monitors) {
+			return (ObjectName)monitors.get(monitor);
+		}
+	}
+	
+	/**
+	 * Returns the monitors of the running load tests.
+	 *
+	 * @return List of <code>LoadTestMonitor</code> instances.
+	 */
+	public static List getLoadTestMonitors() {
+		
+		List result = new ArrayList();
+		
+		synchronized (monitors) {
+			for (Iterator i = monitors.keySet().iterator(); i.hasNext(); ) {
+				Object monitor = i.next();
+				if (monitor instanceof LoadTestMonitor) {
+					result.add(monitor);
+				}
+			}
+		}
+		
+		return Collections.unmodifiableList(result);
+	}
+	
+	private static MBeanServer getServer() {
+		return ManagementFactory.getPlatformMBeanServer();
+	}
+}
@@ -0,0 +1,168 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>Pacer</code> class schedules the iterations of a 
+ * single user at a target rate, like a token bucket that 
+ * accrues one token per scheduled iteration.
+ * <p>
+ * Before each iteration, the user calls <code>await()</code>,
+ * which delays the thread with a <code>PreciseSleeper</code>
+ * until the next scheduled start and
+ * returns the lag of the actual start behind the schedule.  When
+ * the user falls behind because iterations take longer than the 
+ * rate allows, the policy decides how it recovers:
+ * <ul>
+ * <li><code>CATCH_UP</code> runs the missed iterations back to back, 
+ *     up to the burst size, so the average rate is maintained.</li>
+ * <li><code>SKIP</code> drops the missed iterations and continues 
+ *     from the most recent scheduled start, so the rate is never 
+ *     exceeded.  The dropped iterations are counted.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * A <code>Pacer</code> is not thread-safe; each user has its own.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest#setPacing(double, int)
+ */
+
+public class Pacer {
+
+	/**
+	 * Policy running missed iterations back to back.
+	 */
+	public static final int CATCH_UP = 1;
+	
+	/**
+	 * Policy skipping missed iterations.
+	 */
+	public static final int SKIP = 2;
+	
+	private final long period;
+	private final int policy;
+	private final long maxBacklog;
+	private final PreciseSleeper sleeper;
+	private long next;
+	private long skipped;
+	private long sleepError;
+	private boolean isStarted;
+
+	/**
+	 * Constructs a <code>Pacer</code> with an unlimited 
+	 * burst size.
+	 *
+	 * @param rate Target rate (iterations per second).
+	 * @param policy <code>CATCH_UP</code> or <code>SKIP</code>.
+	 */
+	public Pacer(double rate, int policy) {
+		this(rate, policy, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructs a <code>Pacer</code>.
+	 *
+	 * @param rate Target rate (iterations per second).
+	 * @param policy <code>CATCH_UP</code> or <code>SKIP</code>.
+	 * @param burst Maximum number of missed iterations to
+	 *        catch up on.
+	 */
+	public Pacer(double rate, int policy, int burst) {
+		this(rate, policy, burst, PreciseSleeper.getDefault());
+	}
+	
+	/**
+	 * Constructs a <code>Pacer</code> with the specified
+	 * sleeper.
+	 *
+	 * @param rate Target rate (iterations per second).
+	 * @param policy <code>CATCH_UP</code> or <code>SKIP</code>.
+	 * @param burst Maximum number of missed iterations to
+	 *        catch up on.
+	 * @param sleeper Sleeper.
+	 */
+	public Pacer(double rate, int policy, int burst, PreciseSleeper sleeper) {
+		
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("Rate must be > 0");
+		} else if (policy != CATCH_UP && policy != SKIP) {
+			throw new IllegalArgumentException("Unknown pacing policy: " + policy);
+		} else if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be > 0");
+		}
+		
+		this.period = Math.max(1, (long)(1000000000.0 / rate));
+		this.policy = policy;
+		this.maxBacklog = (burst > Long.MAX_VALUE / period) ? 
+			Long.MAX_VALUE : burst * period;
+		this.sleeper = sleeper;
+		this.sleepError = -1;
+	}
+	
+	/**
+	 * Waits for the scheduled start of the next iteration.  
+	 * The first iteration is scheduled immediately.
+	 *
+	 * @return Lag of the actual start behind the scheduled 
+	 *         start (ns).
+	 */
+	public long await() {
+		
+		long now = System.nanoTime();
+		
+		if (!isStarted) {
+			isStarted = true;
+			next = now;
+		}
+		
+		long scheduled = next;
+		long behind = now - scheduled;
+		sleepError = -1;
+		
+		if (behind < 0) {
+			sleepError = sleeper.sleepUntil(scheduled);
+			now = scheduled + sleepError;
+		} else if (policy == SKIP) {
+			long missed = behind / period;
+			skipped += missed;
+			scheduled += missed * period;
+		} else if (behind > maxBacklog) {
+			scheduled = now - maxBacklog;
+		}
+		
+		next = scheduled + period;
+		
+		return Math.max(0, now - scheduled);
+	}
+	
+	/**
+	 * Returns the number of iterations skipped.
+	 *
+	 * @return Number of skipped iterations.
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+	
+	/**
+	 * Returns how late the most recent <code>await()</code>
+	 * ended its delay.
+	 *
+	 * @return Delay error (ns), or a negative value if it 
+	 *         did not delay or was interrupted.
+	 */
+	public long getSleepError() {
+		return sleepError;
+	}
+	
+	/**
+	 * Returns the interval between two scheduled starts.
+	 *
+	 * @return Period (ns).
+	 */
+	public long getPeriod() {
+		return period;
+	}
+}
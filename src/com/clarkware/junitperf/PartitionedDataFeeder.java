@@ -0,0 +1,147 @@
+package com.clarkware.junitperf;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>PartitionedDataFeeder</code> is a <code>DataFeeder</code>
+ * that splits a data set into contiguous partitions and assigns 
+ * one partition to each user thread.
+ * <p>
+ * A thread is assigned its partition on its first call to 
+ * <code>next()</code> and keeps it for the rest of its life, so 
+ * users of a <code>LoadTest</code> never compete for the same 
+ * records.  When there are more threads than partitions, the 
+ * partitions are shared round-robin.  A circular feeder starts 
+ * over at the beginning of a partition when it is exhausted, 
+ * whereas a non-circular feeder returns <code>null</code>.
+ * </p>
+ * <p>
+ * For example, to give each of 10 users its own slice of
+ * the test data, use:
+ * <blockquote>
+ * <pre>
+ * DataFeeder feeder = new PartitionedDataFeeder(records, 10, true);
+ * Test loadTest = new LoadTest(new ExampleTest("testSomething"), 10, 100);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.DataFeeder
+ */
+
+public class PartitionedDataFeeder implements DataFeeder {
+
+	private final Object[] records;
+	private final boolean circular;
+	private final Partition[] partitions;
+	private final AtomicInteger nextPartition;
+	
+	private final ThreadLocal localPartition = new ThreadLocal() {
+		protected Object initialValue() {
+			int index = nextPartition.getAndIncrement();
+			return partitions[index % partitions.length];
+		}
+	};
+
+	/**
+	 * Constructs a <code>PartitionedDataFeeder</code> over the
+	 * specified records.
+	 *
+	 * @param records Test data records.
+	 * @param partitions Number of partitions, typically the
+	 *        number of concurrent users.
+	 * @param circular <code>true</code> to start over when a
+	 *        partition is exhausted; <code>false</code> to return 
+	 *        <code>null</code> instead.
+	 */
+	public PartitionedDataFeeder(List records, int partitions, boolean circular) {
+		this(records.toArray(), partitions, circular);
+	}
+	
+	/**
+	 * Constructs a <code>PartitionedDataFeeder</code> over the
+	 * specified records.
+	 *
+	 * @param records Test data records.
+	 * @param partitions Number of partitions, typically the
+	 *        number of concurrent users.
+	 * @param circular <code>true</code> to start over when a
+	 *        partition is exhausted; <code>false</code> to return 
+	 *        <code>null</code> instead.
+	 */
+	public PartitionedDataFeeder(Object[] records, int partitions, boolean circular) {
+		
+		if (partitions < 1) {
+			throw new IllegalArgumentException("Number of partitions must be > 0");
+		} else if (records.length < partitions) {
+			throw new IllegalArgumentException("Fewer test data records " +
+				"than partitions");
+		}
+		
+		this.records = records.clone();
+		this.circular = circular;
+		this.nextPartition = new AtomicInteger();
+		this.partitions = new Partition[partitions];
+		
+		for (int i=0; i < partitions; i++) {
+			int begin = (int)((long)records.length * i / partitions);
+			int end = (int)((long)records.length * (i + 1) / partitions);
+			this.partitions[i] = new Partition(begin, end);
+		}
+	}
+
+	/**
+	 * Returns the next test data record of the calling 
+	 * thread's partition.
+	 *
+	 * @return Record, or <code>null</code> if the partition 
+	 *         has been exhausted.
+	 */
+	public Object next() {
+		return ((Partition)localPartition.get()).next();
+	}
+	
+	/**
+	 * Returns the number of partitions.
+	 *
+	 * @return Number of partitions.
+	 */
+	public int getPartitionCount() {
+		return partitions.length;
+	}
+	
+	/*
+	 * A contiguous range of records.  The cursor is only 
+	 * contended when threads outnumber partitions.
+	 */
+	private final class Partition {
+		
+		private final int begin;
+		private final int size;
+		private final AtomicInteger cursor;
+		
+		Partition(int begin, int end) {
+			this.begin = begin;
+			this.size = end - begin;
+			this.cursor = new AtomicInteger();
+		}
+		
+		Object next() {
+			
+			int position = cursor.getAndIncrement();
+			
+			if (circular) {
+				return records[begin + ((position & Integer.MAX_VALUE) % size)];
+			} else if (position >= 0 && position < size) {
+				return records[begin + position];
+			}
+			
+			cursor.set(size);
+			return null;
+		}
+	}
+}
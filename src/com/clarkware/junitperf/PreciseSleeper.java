@@ -0,0 +1,123 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The <code>PreciseSleeper</code> class delays the current thread
+ * with a nanosecond resolution.
+ * <p>
+ * <code>Thread.sleep()</code> has a millisecond resolution and 
+ * typically overshoots by the timer slack of the operating system.
+ * Instead, the sleeper parks the thread until the spin threshold
+ * before the wake-up time, and then spins for the remainder.  A 
+ * larger spin threshold is more accurate but burns more CPU, 
+ * which competes with the code under test; a threshold of 0 
+ * only parks.
+ * </p>
+ * <p>
+ * Each delay returns its error, that is how late the thread woke up,
+ * so that the accuracy of the load generator itself can be recorded.
+ * A delay ends early, leaving the interrupt status set, if the 
+ * thread is interrupted.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ */
+
+public class PreciseSleeper {
+
+	/**
+	 * Default spin threshold (ns).
+	 */
+	public static final long DEFAULT_SPIN = 100000L;
+	
+	private static final PreciseSleeper defaultSleeper = new PreciseSleeper(
+		Long.getLong("junitperf.spin.nanos", DEFAULT_SPIN).longValue());
+	
+	private final long spin;
+
+	/**
+	 * Constructs a <code>PreciseSleeper</code> with the
+	 * specified spin threshold.
+	 *
+	 * @param spin Spin threshold (ns).
+	 */
+	public PreciseSleeper(long spin) {
+		if (spin < 0) {
+			throw new IllegalArgumentException("Spin threshold must be >= 0");
+		}
+		this.spin = spin;
+	}
+	
+	/**
+	 * Returns the default sleeper, whose spin threshold is the 
+	 * value of the <code>junitperf.spin.nanos</code> system property
+	 * or, by default, <code>DEFAULT_SPIN</code>.
+	 *
+	 * @return Sleeper.
+	 */
+	public static PreciseSleeper getDefault() {
+		return defaultSleeper;
+	}
+	
+	/**
+	 * Returns the spin threshold.
+	 *
+	 * @return Spin threshold (ns).
+	 */
+	public long getSpin() {
+		return spin;
+	}
+	
+	/**
+	 * Delays the current thread for the specified time.
+	 *
+	 * @param nanos Delay (ns).
+	 * @return Error (ns), negative if interrupted.
+	 */
+	public long sleep(long nanos) {
+		if (nanos <= 0) {
+			return 0;
+		}
+		return sleepUntil(System.nanoTime() + nanos);
+	}
+	
+	/**
+	 * Delays the current thread until the specified time.
+	 *
+	 * @param time Wake-up time, as returned by 
+	 *        <code>System.nanoTime()</code>.
+	 * @return Error (ns), negative if interrupted.
+	 */
+	public long sleepUntil(long time) {
+		
+		long remaining = time - System.nanoTime();
+		
+		while (remaining > spin) {
+			if (Thread.currentThread().isInterrupted()) {
+				return -remaining;
+			}
+			LockSupport.parkNanos(remaining - spin);
+			remaining = time - System.nanoTime();
+		}
+		
+		while (remaining > 0) {
+			if (Thread.currentThread().isInterrupted()) {
+				return -remaining;
+			}
+			remaining = time - System.nanoTime();
+		}
+		
+		return -remaining;
+	}
+	
+	/**
+	 * Returns a description of the sleeper.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "PreciseSleeper (spin " + spin + " ns)";
+	}
+}
@@ -0,0 +1,21 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>PreciseTimer</code> interface is implemented by
+ * timers whose delays have a sub-millisecond resolution.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.PreciseSleeper
+ */
+
+public interface PreciseTimer extends Timer {
+
+	/**
+	 * Returns the timer delay.
+	 *
+	 * @return Delay (in nanoseconds).
+	 */
+	public long getDelayNanos();
+}
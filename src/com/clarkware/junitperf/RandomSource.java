@@ -0,0 +1,95 @@
+package com.clarkware.junitperf;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The <code>RandomSource</code> class provides random numbers to 
+ * many threads without a shared point of contention.
+ * <p>
+ * An unseeded source draws from the calling thread's 
+ * <code>ThreadLocalRandom</code>.  A seeded source splits a 
+ * generator for each thread from a root generator, once per 
+ * thread, so that a run is reproducible for the same seed and 
+ * the same order in which threads first draw a number.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.Timer
+ */
+
+public class RandomSource {
+
+	private final SplittableRandom root;
+	
+	private final ThreadLocal localRandom = new ThreadLocal() {
+		protected Object initialValue() {
+			synchronized (root) {
+				return root.split();
+			}
+		}
+	};
+	
+	/**
+	 * Constructs an unseeded <code>RandomSource</code>.
+	 */
+	public RandomSource() {
+		this.root = null;
+	}
+	
+	/**
+	 * Constructs a <code>RandomSource</code> with the
+	 * specified seed.
+	 *
+	 * @param seed Seed.
+	 */
+	public RandomSource(long seed) {
+		this.root = new SplittableRandom(seed);
+	}
+	
+	/**
+	 * Returns a uniformly distributed value between 
+	 * 0 (inclusive) and 1 (exclusive).
+	 *
+	 * @return Value.
+	 */
+	public double nextDouble() {
+		if (root == null) {
+			return ThreadLocalRandom.current().nextDouble();
+		}
+		return ((SplittableRandom)localRandom.get()).nextDouble();
+	}
+	
+	/**
+	 * Returns a normally distributed value with a mean 
+	 * of 0 and a standard deviation of 1.
+	 *
+	 * @return Value.
+	 */
+	public double nextGaussian() {
+		
+		double u;
+		double v;
+		double s;
+		
+		do {
+			u = 2.0 * nextDouble() - 1.0;
+			v = 2.0 * nextDouble() - 1.0;
+			s = u * u + v * v;
+		} while (s >= 1.0 || s == 0.0);
+		
+		return u * Math.sqrt(-2.0 * Math.log(s) / s);
+	}
+	
+	/**
+	 * Returns an exponentially distributed value with 
+	 * a mean of 1.
+	 *
+	 * @return Value.
+	 */
+	public double nextExponential() {
+		return -Math.log(1.0 - nextDouble());
+	}
+}
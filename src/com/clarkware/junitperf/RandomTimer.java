@@ -1,7 +1,5 @@
 package com.clarkware.junitperf;
 
-import java.util.Random;
-
 /**
  * The <code>RandomTimer</code> is a <code>Timer</code>
  * with a random delay and a uniformly distributed variation.
@@ -12,9 +10,9 @@ import java.util.Random;
  * @see com.clarkware.junitperf.Timer
  */
 
-public class RandomTimer implements Timer {
+public class RandomTimer implements PreciseTimer {
 
-    private final Random random;
+    private final RandomSource random;
     private final long delay;
     private final double variation;
 
@@ -26,9 +24,25 @@ public class RandomTimer implements Timer {
 	 * @param variation Variation (ms).
 	 */
     public RandomTimer(long delay, double variation) {
+		this(delay, variation, new RandomSource());
+    }
+
+	/**
+	 * Constructs a <code>RandomTimer</code> with the
+	 * specified minimum delay, variation, and seed.
+	 *
+	 * @param delay Minimum delay (ms).
+	 * @param variation Variation (ms).
+	 * @param seed Random seed.
+	 */
+    public RandomTimer(long delay, double variation, long seed) {
+		this(delay, variation, new RandomSource(seed));
+    }
+    
+    private RandomTimer(long delay, double variation, RandomSource random) {
 		this.delay = delay;	
 		this.variation = variation;
-        this.random = new Random();
+        this.random = random;
     }
 
 	/**
@@ -39,4 +53,14 @@ public class RandomTimer implements Timer {
     public long getDelay() {
         return (long) Math.abs((random.nextDouble() * variation) + delay);
     }
+    
+	/**
+	 * Returns the timer delay with a sub-millisecond
+	 * resolution.
+	 *
+	 * @return Delay (ns).
+	 */
+    public long getDelayNanos() {
+        return (long) Math.abs(((random.nextDouble() * variation) + delay) * 1e6);
+    }
 }
@@ -0,0 +1,67 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>RemoteTest</code> is a placeholder for a test 
+ * that was run in another JVM.  It is used to report the 
+ * results of the remote test to a local <code>TestResult</code>.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ */
+
+public class RemoteTest implements Test {
+
+	private final String name;
+	private final int testCount;
+
+	/**
+	 * Constructs a <code>RemoteTest</code> with the
+	 * specified description.
+	 *
+	 * @param name Description of the remote test.
+	 */
+	public RemoteTest(String name) {
+		this(name, 1);
+	}
+	
+	/**
+	 * Constructs a <code>RemoteTest</code> with the
+	 * specified description and number of tests.
+	 *
+	 * @param name Description of the remote test.
+	 * @param testCount Number of tests of the remote test.
+	 */
+	public RemoteTest(String name, int testCount) {
+		this.name = name;
+		this.testCount = testCount;
+	}
+	
+	/**
+	 * Returns the number of tests of the remote test.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		return testCount;
+	}
+
+	/**
+	 * Does nothing, as the test was run remotely.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,53 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>RemoteTestException</code> reports an error
+ * thrown by a test that was run in another JVM.
+ * <p>
+ * The original exception is not transferred, only its class
+ * name, message, and stack trace as text.
+ * </p>
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ */
+
+public class RemoteTestException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final String remoteClassName;
+	private final String remoteStackTrace;
+
+	/**
+	 * Constructs a <code>RemoteTestException</code>.
+	 *
+	 * @param remoteClassName Class name of the remote exception.
+	 * @param message Message of the remote exception.
+	 * @param remoteStackTrace Stack trace of the remote exception.
+	 */
+	public RemoteTestException(String remoteClassName, String message, 
+		String remoteStackTrace) {
+		super(remoteClassName + ": " + message);
+		this.remoteClassName = remoteClassName;
+		this.remoteStackTrace = remoteStackTrace;
+	}
+	
+	/**
+	 * Returns the class name of the remote exception.
+	 *
+	 * @return Class name.
+	 */
+	public String getRemoteClassName() {
+		return remoteClassName;
+	}
+
+	/**
+	 * Returns the stack trace of the remote exception.
+	 *
+	 * @return Stack trace.
+	 */
+	public String getRemoteStackTrace() {
+		return remoteStackTrace;
+	}
+}
@@ -0,0 +1,346 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>Rendezvous</code> class blocks the users of a load test
+ * at a named point inside their iterations until a quorum of users
+ * has arrived, and then releases them at the same instant.  This
+ * concentrates the load on a critical call, such as one contending
+ * for a lock, instead of spreading it over the iterations.
+ * <p>
+ * The quorum is either a number of users or, by default, a
+ * percentage of the active users of the load test, that is the
+ * users that have not finished yet.  A quorum larger than the
+ * number of active users is reduced accordingly as users finish,
+ * so the last users are never held back waiting for users that
+ * will not arrive.  If the quorum is not reached within the timeout,
+ * the waiting users are released without it.  Stopping or aborting
+ * the load test releases the waiting users as well.
+ * </p>
+ * <p>
+ * Once the quorum is reached, the released users do not run as soon
+ * as they are notified, which happens one user after another, but
+ * sleep with a <code>PreciseSleeper</code> until a common release
+ * time.
+ * </p>
+ * <p>
+ * For example, to release the users of a load test at the
+ * "checkout" rendezvous as soon as half of them have arrived,
+ * or after 5 seconds at the latest, use:
+ * <blockquote>
+ * <pre>
+ * Rendezvous checkout = new Rendezvous("checkout", 5000);
+ * checkout.setQuorumPercent(50);
+ * loadTest.addRendezvous(checkout);
+ * </pre>
+ * </blockquote>
+ * and, in the test method:
+ * <blockquote>
+ * <pre>
+ * Rendezvous.await("checkout");
+ * cart.checkout();
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest#addRendezvous(Rendezvous)
+ */
+
+public class Rendezvous {
+
+	private final String name;
+	private final long timeout;
+	private int quorum;
+	private double quorumPercent;
+	private PreciseSleeper sleeper;
+	private int users;
+	private boolean isCancelled;
+	private Generation generation;
+	private long releases;
+	private long timeouts;
+	private final AtomicLong maxLag;
+
+	/**
+	 * Constructs a <code>Rendezvous</code> with the specified
+	 * name and timeout, whose quorum is all active users.
+	 *
+	 * @param name Name.
+	 * @param timeout Maximum time to wait for the quorum (ms).
+	 */
+	public Rendezvous(String name, long timeout) {
+
+		if (timeout < 1) {
+			throw new IllegalArgumentException("Timeout must be > 0");
+		}
+
+		this.name = name;
+		this.timeout = timeout;
+		this.quorumPercent = 100;
+		this.sleeper = PreciseSleeper.getDefault();
+		this.users = -1;
+		this.generation = new Generation();
+		this.maxLag = new AtomicLong();
+	}
+
+	/**
+	 * Blocks the current user at the named rendezvous of the load
+	 * test it belongs to.  Outside of a load test, the current
+	 * thread is the only user, so it returns immediately.
+	 *
+	 * @param name Name of the rendezvous.
+	 * @return <code>true</code> if released with the quorum;
+	 *         <code>false</code> otherwise.
+	 * @throws IllegalArgumentException If the load test has no
+	 *         rendezvous with the specified name.
+	 */
+	public static boolean await(String name) {
+
+		LoadTest loadTest = LoadTest.getCurrent();
+		if (loadTest == null) {
+			return true;
+		}
+
+		Rendezvous rendezvous = loadTest.getRendezvous(name);
+		if (rendezvous == null) {
+			throw new IllegalArgumentException(
+				"No rendezvous named " + name + " in " + loadTest);
+		}
+
+		return rendezvous.await();
+	}
+
+	/**
+	 * Sets the quorum to the specified number of users.
+	 *
+	 * @param quorum Number of users.
+	 */
+	public synchronized void setQuorum(int quorum) {
+
+		if (quorum < 1) {
+			throw new IllegalArgumentException("Quorum must be > 0");
+		}
+
+		this.quorum = quorum;
+		this.quorumPercent = 0;
+	}
+
+	/**
+	 * Sets the quorum to the specified percentage
+	 * of the active users.
+	 *
+	 * @param quorumPercent Percentage of the active users,
+	 *        such as 50.
+	 */
+	public synchronized void setQuorumPercent(double quorumPercent) {
+
+		if (quorumPercent <= 0 || quorumPercent > 100) {
+			throw new IllegalArgumentException("Quorum percentage must be in (0, 100]");
+		}
+
+		this.quorum = 0;
+		this.quorumPercent = quorumPercent;
+	}
+
+	/**
+	 * Blocks the current user until the quorum has arrived,
+	 * the timeout expires, or the rendezvous is cancelled.
+	 * If the rendezvous is not started, the current thread
+	 * is the only user, so it returns immediately.
+	 *
+	 * @return <code>true</code> if released with the quorum;
+	 *         <code>false</code> if timed out, cancelled, or
+	 *         interrupted.
+	 */
+	public boolean await() {
+
+		Generation current;
+		PreciseSleeper releaseSleeper;
+
+		synchronized (this) {
+
+			if (users < 0) {
+				return true;
+			}
+			if (isCancelled) {
+				return false;
+			}
+
+			current = generation;
+			current.arrived++;
+			releaseSleeper = sleeper;
+
+			long deadline = System.nanoTime() + timeout * 1000000L;
+
+			try {
+				while (!current.isDone) {
+					if (current.arrived >= getEffectiveQuorum()) {
+						release(current);
+						break;
+					}
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						timeouts++;
+						end(current);
+						break;
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+			} catch (InterruptedException e) {
+				if (!current.isDone) {
+					current.arrived--;
+				}
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		if (!current.isReleased ||
+			releaseSleeper.sleepUntil(current.releaseTime) < 0) {
+			return false;
+		}
+
+		long lag = System.nanoTime() - current.releaseTime;
+		long max;
+		while (lag > (max = maxLag.get()) && !maxLag.compareAndSet(max, lag)) {
+		}
+
+		return true;
+	}
+
+	/*
+	 * Releases the users of the specified generation at a time
+	 * leaving enough time to notify them all: 50 us per user.
+	 */
+	private void release(Generation current) {
+		current.isReleased = true;
+		current.releaseTime = System.nanoTime() + 50000L * current.arrived;
+		releases++;
+		end(current);
+	}
+
+	private void end(Generation current) {
+		current.isDone = true;
+		if (current == generation) {
+			generation = new Generation();
+		}
+		notifyAll();
+	}
+
+	private int getEffectiveQuorum() {
+		int required = quorum;
+		if (quorumPercent > 0) {
+			required = (int)Math.ceil(users * quorumPercent / 100);
+		}
+		return Math.max(1, Math.min(required, users));
+	}
+
+	/**
+	 * Starts the rendezvous for a run of a load test
+	 * with the specified number of users.
+	 *
+	 * @param users Number of users.
+	 * @param sleeper Sleeper timing the releases.
+	 */
+	synchronized void start(int users, PreciseSleeper sleeper) {
+		this.users = users;
+		this.sleeper = sleeper;
+		this.isCancelled = false;
+		this.generation = new Generation();
+		this.releases = 0;
+		this.timeouts = 0;
+		this.maxLag.set(0);
+	}
+
+	/**
+	 * Records that a user has finished, which may
+	 * reduce the quorum of the waiting users.
+	 */
+	synchronized void userFinished() {
+		if (users > 0) {
+			users--;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Releases the waiting users without the quorum, as
+	 * well as any users arriving until it is restarted.
+	 */
+	public synchronized void cancel() {
+		isCancelled = true;
+		end(generation);
+	}
+
+	/**
+	 * Returns the name.
+	 *
+	 * @return Name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the timeout.
+	 *
+	 * @return Timeout (ms).
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns the number of times the quorum was reached
+	 * in the current or most recent run.
+	 *
+	 * @return Number of releases.
+	 */
+	public synchronized long getReleaseCount() {
+		return releases;
+	}
+
+	/**
+	 * Returns the number of times the timeout expired
+	 * in the current or most recent run.
+	 *
+	 * @return Number of timeouts.
+	 */
+	public synchronized long getTimeoutCount() {
+		return timeouts;
+	}
+
+	/**
+	 * Returns the maximum lag of a released user behind its
+	 * release time in the current or most recent run, which
+	 * bounds the spread between the users released together.
+	 *
+	 * @return Maximum lag (ns).
+	 */
+	public long getMaxLag() {
+		return maxLag.get();
+	}
+
+	public synchronized String toString() {
+		String quorumText = (quorumPercent > 0) ?
+			quorumPercent + "%" : String.valueOf(quorum);
+		return "Rendezvous " + name + " (quorum " + quorumText + ", timeout " +
+			timeout + " ms): " + releases + " releases, " + timeouts +
+			" timeouts, max lag " + Histogram.toMillis(maxLag.get()) + " ms";
+	}
+
+	/*
+	 * The <code>Generation</code> holds the users waiting
+	 * together until they are released or time out.
+	 */
+	private static final class Generation {
+		int arrived;
+		boolean isDone;
+		boolean isReleased;
+		long releaseTime;
+	}
+}
@@ -0,0 +1,195 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>ScalabilityModel</code> is the Universal Scalability 
+ * Law fitted to the throughput measured at several numbers of 
+ * concurrent users:
+ * <blockquote>
+ * <pre>
+ * X(N) = lambda N / (1 + sigma (N - 1) + kappa N (N - 1))
+ * </pre>
+ * </blockquote>
+ * where <code>lambda</code> is the throughput of a single user,
+ * <code>sigma</code> is the contention coefficient (the serialized 
+ * fraction of Amdahl's law), and <code>kappa</code> is the coherency
+ * coefficient (the cost of keeping shared data consistent).
+ * <p>
+ * The coefficients are fitted by least squares to the linearized
+ * form <code>N / C(N) - 1 = sigma (N - 1) + kappa N (N - 1)</code>
+ * of the relative capacity <code>C(N) = X(N) / X(1)</code>, and
+ * constrained to be non-negative.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.ScalabilitySweep
+ */
+
+public class ScalabilityModel {
+
+	private final double lambda;
+	private final double sigma;
+	private final double kappa;
+
+	/**
+	 * Constructs a <code>ScalabilityModel</code>.
+	 *
+	 * @param lambda Throughput of a single user.
+	 * @param sigma Contention coefficient.
+	 * @param kappa Coherency coefficient.
+	 */
+	public ScalabilityModel(double lambda, double sigma, double kappa) {
+		this.lambda = lambda;
+		this.sigma = sigma;
+		this.kappa = kappa;
+	}
+	
+	/**
+	 * Fits the model to the specified measurements, which must
+	 * include the throughput of a single user.
+	 *
+	 * @param users Numbers of concurrent users.
+	 * @param throughput Throughput at each number of users.
+	 * @return Model.
+	 */
+	public static ScalabilityModel fit(int[] users, double[] throughput) {
+		
+		double lambda = -1;
+		for (int i=0; i < users.length; i++) {
+			if (users[i] == 1) {
+				lambda = throughput[i];
+			}
+		}
+		
+		if (lambda <= 0) {
+			throw new IllegalArgumentException("Throughput of a single user is required");
+		}
+		
+		//
+		// Least squares without intercept on the regressors
+		// a = N - 1 and b = N (N - 1).
+		//
+		double saa = 0, sab = 0, sbb = 0, say = 0, sby = 0;
+		
+		for (int i=0; i < users.length; i++) {
+			
+			if (users[i] <= 1 || throughput[i] <= 0) {
+				continue;
+			}
+			
+			double n = users[i];
+			double a = n - 1;
+			double b = n * (n - 1);
+			double y = n / (throughput[i] / lambda) - 1;
+			
+			saa += a * a;
+			sab += a * b;
+			sbb += b * b;
+			say += a * y;
+			sby += b * y;
+		}
+		
+		double sigma = 0;
+		double kappa = 0;
+		double det = saa * sbb - sab * sab;
+		
+		if (Math.abs(det) > 1e-12 * saa * sbb) {
+			sigma = (say * sbb - sby * sab) / det;
+			kappa = (sby * saa - say * sab) / det;
+		}
+		
+		if (sigma < 0 || kappa < 0 || det == 0) {
+			//
+			// Refit with one coefficient held at zero.
+			//
+			double sigmaOnly = (saa > 0) ? Math.max(0, say / saa) : 0;
+			double kappaOnly = (sbb > 0) ? Math.max(0, sby / sbb) : 0;
+			
+			if (error(saa, sab, sbb, say, sby, sigmaOnly, 0) <= 
+				error(saa, sab, sbb, say, sby, 0, kappaOnly)) {
+				sigma = sigmaOnly;
+				kappa = 0;
+			} else {
+				sigma = 0;
+				kappa = kappaOnly;
+			}
+		}
+		
+		return new ScalabilityModel(lambda, sigma, kappa);
+	}
+	
+	/*
+	 * Returns the residual sum of squares, less the constant
+	 * sum of y squared, of the fit with the specified coefficients.
+	 */
+	private static double error(double saa, double sab, double sbb, 
+		double say, double sby, double sigma, double kappa) {
+		
+		return sigma * sigma * saa + 2 * sigma * kappa * sab + kappa * kappa * sbb 
+			- 2 * sigma * say - 2 * kappa * sby;
+	}
+	
+	/**
+	 * Returns the throughput of a single user.
+	 *
+	 * @return Throughput.
+	 */
+	public double getLambda() {
+		return lambda;
+	}
+	
+	/**
+	 * Returns the contention coefficient.
+	 *
+	 * @return Sigma.
+	 */
+	public double getContention() {
+		return sigma;
+	}
+	
+	/**
+	 * Returns the coherency coefficient.
+	 *
+	 * @return Kappa.
+	 */
+	public double getCoherency() {
+		return kappa;
+	}
+	
+	/**
+	 * Returns the throughput predicted for the specified
+	 * number of users.
+	 *
+	 * @param users Number of concurrent users.
+	 * @return Throughput.
+	 */
+	public double getThroughput(double users) {
+		return lambda * users / (1 + sigma * (users - 1) + kappa * users * (users - 1));
+	}
+	
+	/**
+	 * Returns the number of users at which the predicted
+	 * throughput peaks.
+	 *
+	 * @return Number of users, or infinity if the throughput
+	 *         does not peak.
+	 */
+	public double getPeakUsers() {
+		return (kappa <= 0) ? Double.POSITIVE_INFINITY : Math.sqrt((1 - sigma) / kappa);
+	}
+	
+	/**
+	 * Returns a description of the model.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "USL: lambda=" + round(lambda) + "/s, sigma=" + round(sigma) + 
+			", kappa=" + round(kappa) + ", peak at " + round(getPeakUsers()) + " users";
+	}
+	
+	private static double round(double value) {
+		return Math.round(value * 10000) / 10000.0;
+	}
+}
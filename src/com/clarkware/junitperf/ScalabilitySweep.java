@@ -0,0 +1,249 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>ScalabilitySweep</code> is a test that measures how a
+ * test scales with the number of concurrent users.
+ * <p>
+ * The sweep runs a template <code>LoadTest</code> for a fixed 
+ * duration at 1, 2, 4, ... users up to the maximum number of users,
+ * measures the steady-state throughput at each level, and fits the
+ * Universal Scalability Law to the measurements.  Optionally, it 
+ * signals a failure if the efficiency at the maximum number of users,
+ * that is the throughput relative to linear scaling, falls below a 
+ * threshold.  This catches contention regressions that do not show 
+ * in the elapsed time of a single user.  The first few failures and
+ * errors of each level are reported on the test result.
+ * </p>
+ * <p>
+ * For example, to require that 16 users of <code>ExampleTest</code>
+ * achieve at least 75% of 16 times the throughput of a single user, 
+ * with each level running for 10 seconds, use:
+ * <blockquote>
+ * <pre>
+ * LoadTest loadTest = new LoadTest(new ExampleTest("testSomething"), 1);
+ * ScalabilitySweep sweep = new ScalabilitySweep(loadTest, 16, 10000);
+ * sweep.setMinEfficiency(0.75);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.ScalabilityModel
+ */
+
+public class ScalabilitySweep implements Test {
+
+	private final LoadTest template;
+	private final int maxUsers;
+	private final long stepDuration;
+	private long warmUp;
+	private double minEfficiency;
+	private boolean isQuiet;
+	private final List levels;
+	private volatile ScalabilityModel model;
+
+	/**
+	 * Constructs a <code>ScalabilitySweep</code>.
+	 *
+	 * @param template Load test whose configuration is used
+	 *        at each level.  The levels run plain 
+	 *        <code>LoadTest</code> copies, so the overrides of
+	 *        a subclass are not preserved.
+	 * @param maxUsers Maximum number of users.
+	 * @param stepDuration Duration of each level (ms).
+	 */
+	public ScalabilitySweep(LoadTest template, int maxUsers, long stepDuration) {
+		
+		if (maxUsers < 2) {
+			throw new IllegalArgumentException("Maximum users must be > 1");
+		} else if (stepDuration < 1) {
+			throw new IllegalArgumentException("Step duration must be > 0");
+		}
+		
+		this.template = template;
+		this.maxUsers = maxUsers;
+		this.stepDuration = stepDuration;
+		this.warmUp = stepDuration / 5;
+		this.minEfficiency = -1;
+		this.levels = Collections.synchronizedList(new ArrayList());
+	}
+	
+	/**
+	 * Sets the warm-up period of each level, which is excluded
+	 * from its measurements.
+	 *
+	 * @param warmUp Warm-up (ms); defaults to a fifth of the
+	 *        step duration.
+	 */
+	public void setWarmUp(long warmUp) {
+		if (warmUp < 0 || warmUp >= stepDuration) {
+			throw new IllegalArgumentException("Warm-up must be >= 0 and < step duration");
+		}
+		this.warmUp = warmUp;
+	}
+	
+	/**
+	 * Sets the minimum efficiency at the maximum number of users.
+	 *
+	 * @param minEfficiency Minimum efficiency, such as 0.75.
+	 */
+	public void setMinEfficiency(double minEfficiency) {
+		this.minEfficiency = minEfficiency;
+	}
+	
+	/**
+	 * Disables the output of each level.
+	 */
+	public void setQuiet() {
+		isQuiet = true;
+	}
+	
+	/**
+	 * Returns the numbers of users of the levels.
+	 *
+	 * @return Numbers of users.
+	 */
+	public int[] getUserLevels() {
+		
+		List list = new ArrayList();
+		for (int users = 1; users < maxUsers; users *= 2) {
+			list.add(Integer.valueOf(users));
+		}
+		list.add(Integer.valueOf(maxUsers));
+		
+		int[] result = new int[list.size()];
+		for (int i=0; i < result.length; i++) {
+			result[i] = ((Integer)list.get(i)).intValue();
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the levels of the current or most recent sweep.
+	 *
+	 * @return List of <code>CapacityStep</code> instances.
+	 */
+	public List getLevels() {
+		synchronized (levels) {
+			return new ArrayList(levels);
+		}
+	}
+	
+	/**
+	 * Returns the model fitted by the most recent sweep.
+	 *
+	 * @return Model, or <code>null</code> if none.
+	 */
+	public ScalabilityModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * Returns the efficiency at the maximum number of users
+	 * of the most recent sweep.
+	 *
+	 * @return Efficiency, or 0 if unknown.
+	 */
+	public double getEfficiency() {
+		
+		List list = getLevels();
+		if (list.size() < 2) {
+			return 0;
+		}
+		
+		CapacityStep first = (CapacityStep)list.get(0);
+		CapacityStep last = (CapacityStep)list.get(list.size() - 1);
+		
+		if (first.getThroughput() <= 0) {
+			return 0;
+		}
+		
+		return last.getThroughput() / (first.getThroughput() * last.getUsers());
+	}
+	
+	/**
+	 * Returns the number of tests in one level.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		return template.countTestCases();
+	}
+	
+	/**
+	 * Runs the sweep.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+		
+		levels.clear();
+		model = null;
+		
+		int[] userLevels = getUserLevels();
+		
+		for (int i=0; i < userLevels.length; i++) {
+			
+			if (result.shouldStop()) {
+				return;
+			}
+			
+			CapacityStep level = CapacityStep.measure(template, userLevels[i], 
+				stepDuration, warmUp, null, result);
+			levels.add(level);
+			print(level.toString());
+		}
+		
+		List list = getLevels();
+		int[] users = new int[list.size()];
+		double[] throughput = new double[list.size()];
+		for (int i=0; i < users.length; i++) {
+			users[i] = ((CapacityStep)list.get(i)).getUsers();
+			throughput[i] = ((CapacityStep)list.get(i)).getThroughput();
+		}
+		
+		if (throughput[0] <= 0) {
+			result.addFailure(this, new AssertionFailedError(
+				"No iterations completed by a single user"));
+			return;
+		}
+		
+		model = ScalabilityModel.fit(users, throughput);
+		double efficiency = getEfficiency();
+		
+		print(model + ", efficiency at " + maxUsers + " users: " + 
+			Math.round(efficiency * 1000) / 10.0 + "%");
+		
+		if (minEfficiency >= 0 && efficiency < minEfficiency) {
+			result.addFailure(this, new AssertionFailedError(
+				"Efficiency at " + maxUsers + " users " + 
+				Math.round(efficiency * 1000) / 1000.0 + " < " + minEfficiency + 
+				". " + model));
+		}
+	}
+	
+	private void print(String line) {
+		if (!isQuiet) {
+			ConsoleReporter.getDefault().print(toString() + ": " + line);
+		}
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "ScalabilitySweep: " + template.toString();
+	}
+}
@@ -0,0 +1,309 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>ScenarioMix</code> is a test that runs one of several
+ * named scenarios each time it is run, chosen at random according
+ * to the weights of the scenarios.
+ * <p>
+ * Decorating a mix as a <code>LoadTest</code> runs all scenarios
+ * with the same users, in the proportions of the production traffic,
+ * so that they contend with each other as they would in production.
+ * For example, to run 70% reads, 25% searches, and 5% writes, use:
+ * <blockquote>
+ * <pre>
+ * ScenarioMix mix = new ScenarioMix();
+ * mix.addScenario("read", new ExampleTest("testRead"), 70);
+ * mix.addScenario("search", new ExampleTest("testSearch"), 25);
+ * mix.addScenario("write", new ExampleTest("testWrite"), 5);
+ * Test loadTest = new LoadTest(mix, 10, 100);
+ * </pre>
+ * </blockquote>
+ * </p>
+ * <p>
+ * A scenario is chosen in constant time with Walker's alias method,
+ * from a single number drawn from a <code>RandomSource</code>, so
+ * choosing does not contend between users.  The latency, errors, and
+ * failures of each run of a scenario are recorded as scenario
+ * statistics in the <code>LoadStatistics</code> of the load test
+ * running the mix, alongside the statistics of the whole load test
+ * and of its individual tests.  Outside of a load test, they are
+ * recorded in the statistics of the mix itself.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadStatistics#getScenarioStatistics()
+ */
+
+public class ScenarioMix implements Test {
+
+	private final RandomSource random;
+	private final List scenarios;
+	private volatile AliasTable table;
+	private final LoadStatistics statistics;
+
+	/**
+	 * Constructs an empty <code>ScenarioMix</code>.
+	 */
+	public ScenarioMix() {
+		this(new RandomSource());
+	}
+
+	/**
+	 * Constructs an empty <code>ScenarioMix</code> choosing
+	 * scenarios with the specified random source.
+	 *
+	 * @param random Random source.
+	 */
+	public ScenarioMix(RandomSource random) {
+		this.random = random;
+		this.scenarios = new ArrayList();
+		this.statistics = new LoadStatistics();
+	}
+
+	/**
+	 * Adds a scenario with the specified weight.  The probability
+	 * of the scenario is its weight divided by the total weight
+	 * of all scenarios.
+	 *
+	 * @param name Scenario name.
+	 * @param test Test running the scenario.
+	 * @param weight Weight.
+	 */
+	public synchronized void addScenario(String name, Test test, double weight) {
+
+		if (weight <= 0) {
+			throw new IllegalArgumentException("Weight must be > 0");
+		}
+
+		scenarios.add(new Scenario(name, test, weight));
+		table = new AliasTable((Scenario[])scenarios.toArray(new Scenario[0]));
+	}
+
+	/**
+	 * Returns the probability of the scenario with the
+	 * specified name.
+	 *
+	 * @param name Scenario name.
+	 * @return Probability, or 0 if there is no such scenario.
+	 */
+	public synchronized double getProbability(String name) {
+		double total = 0;
+		double weight = 0;
+		for (int i=0; i < scenarios.size(); i++) {
+			Scenario scenario = (Scenario)scenarios.get(i);
+			total += scenario.weight;
+			if (scenario.name.equals(name)) {
+				weight += scenario.weight;
+			}
+		}
+		return (total == 0) ? 0 : weight / total;
+	}
+
+	/**
+	 * Returns the statistics in which the scenarios are
+	 * recorded when the mix does not run in a load test.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns the expected number of tests in a run of the
+	 * mix, rounded to the nearest integer.
+	 *
+	 * @return Number of tests.
+	 */
+	public synchronized int countTestCases() {
+		double total = 0;
+		double count = 0;
+		for (int i=0; i < scenarios.size(); i++) {
+			Scenario scenario = (Scenario)scenarios.get(i);
+			total += scenario.weight;
+			count += scenario.weight * scenario.test.countTestCases();
+		}
+		return (total == 0) ? 0 : (int)Math.round(count / total);
+	}
+
+	/**
+	 * Runs a scenario chosen at random.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(TestResult result) {
+
+		AliasTable current = table;
+		if (current == null) {
+			return;
+		}
+
+		Scenario scenario = current.choose(random.nextDouble());
+		ScenarioResult scenarioResult = new ScenarioResult(result);
+
+		long begin = System.nanoTime();
+		scenario.test.run(scenarioResult);
+		long nanos = System.nanoTime() - begin;
+
+		getStatisticsForRun().recordScenario(scenario.name, nanos,
+			scenarioResult.errors, scenarioResult.failures);
+	}
+
+	private LoadStatistics getStatisticsForRun() {
+		LoadTest loadTest = LoadTest.getCurrent();
+		if (loadTest != null) {
+			LoadStatistics stats = loadTest.getStatistics();
+			if (stats != null) {
+				return stats;
+			}
+		}
+		return statistics;
+	}
+
+	public synchronized String toString() {
+		StringBuffer buffer = new StringBuffer("ScenarioMix: ");
+		for (int i=0; i < scenarios.size(); i++) {
+			Scenario scenario = (Scenario)scenarios.get(i);
+			if (i > 0) {
+				buffer.append(", ");
+			}
+			buffer.append(scenario.name).append(" (").append(scenario.test).append(")");
+		}
+		return buffer.toString();
+	}
+
+	private static final class Scenario {
+
+		final String name;
+		final Test test;
+		final double weight;
+
+		Scenario(String name, Test test, double weight) {
+			this.name = name;
+			this.test = test;
+			this.weight = weight;
+		}
+	}
+
+	/*
+	 * The <code>AliasTable</code> divides the unit interval into
+	 * one column per scenario, each split between the scenario and
+	 * an alias, so that a scenario is chosen from a single uniform
+	 * number with one comparison.
+	 */
+	private static final class AliasTable {
+
+		private final Scenario[] scenarios;
+		private final double[] probability;
+		private final int[] alias;
+
+		AliasTable(Scenario[] scenarios) {
+
+			int n = scenarios.length;
+			this.scenarios = scenarios;
+			this.probability = new double[n];
+			this.alias = new int[n];
+
+			double total = 0;
+			for (int i=0; i < n; i++) {
+				total += scenarios[i].weight;
+			}
+
+			double[] scaled = new double[n];
+			int[] small = new int[n];
+			int[] large = new int[n];
+			int smallCount = 0;
+			int largeCount = 0;
+			for (int i=0; i < n; i++) {
+				scaled[i] = scenarios[i].weight * n / total;
+				if (scaled[i] < 1) {
+					small[smallCount++] = i;
+				} else {
+					large[largeCount++] = i;
+				}
+			}
+
+			while (smallCount > 0 && largeCount > 0) {
+				int s = small[--smallCount];
+				int l = large[--largeCount];
+				probability[s] = scaled[s];
+				alias[s] = l;
+				scaled[l] = (scaled[l] + scaled[s]) - 1;
+				if (scaled[l] < 1) {
+					small[smallCount++] = l;
+				} else {
+					large[largeCount++] = l;
+				}
+			}
+
+			//
+			// Whatever remains is 1, up to rounding errors.
+			//
+			while (largeCount > 0) {
+				probability[large[--largeCount]] = 1;
+			}
+			while (smallCount > 0) {
+				probability[small[--smallCount]] = 1;
+			}
+		}
+
+		Scenario choose(double uniform) {
+			double u = uniform * scenarios.length;
+			int column = Math.min((int)u, scenarios.length - 1);
+			int chosen = (u - column < probability[column]) ? column : alias[column];
+			return scenarios[chosen];
+		}
+	}
+
+	/*
+	 * The <code>ScenarioResult</code> passes the events of a run of
+	 * a scenario on to the result of the mix and counts its errors
+	 * and failures, which cannot be told apart from those of other
+	 * threads in a shared result.
+	 */
+	private static final class ScenarioResult extends TestResult {
+
+		private final TestResult target;
+		long errors;
+		long failures;
+
+		ScenarioResult(TestResult target) {
+			this.target = target;
+		}
+
+		public void startTest(Test test) {
+			target.startTest(test);
+		}
+
+		public void endTest(Test test) {
+			target.endTest(test);
+		}
+
+		public void addError(Test test, Throwable t) {
+			errors++;
+			target.addError(test, t);
+		}
+
+		public void addFailure(Test test, AssertionFailedError e) {
+			failures++;
+			target.addFailure(test, e);
+		}
+
+		public boolean shouldStop() {
+			return target.shouldStop();
+		}
+
+		public void stop() {
+			target.stop();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.clarkware.junitperf;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>SharedDataFeeder</code> is a <code>DataFeeder</code>
+ * that hands out the records of a single data set to all users
+ * through a shared atomic cursor.
+ * <p>
+ * Each record is handed out to exactly one caller per pass over 
+ * the data.  A circular feeder starts over at the first record 
+ * when the data is exhausted, whereas a non-circular feeder 
+ * returns <code>null</code> to signal that users should stop.
+ * </p>
+ * <p>
+ * For example, to hand out each record of a list once to 
+ * the users of a load test, use:
+ * <blockquote>
+ * <pre>
+ * DataFeeder feeder = new SharedDataFeeder(records, false);
+ * ...
+ * public void testSomething() {
+ *     Object record = feeder.next();
+ *     if (record == null) {
+ *         return;
+ *     }
+ *     ...
+ * }
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.DataFeeder
+ */
+
+public class SharedDataFeeder implements DataFeeder {
+
+	private final Object[] records;
+	private final boolean circular;
+	private final AtomicLong cursor;
+
+	/**
+	 * Constructs a <code>SharedDataFeeder</code> over the
+	 * specified records.
+	 *
+	 * @param records Test data records.
+	 * @param circular <code>true</code> to start over when the
+	 *        data is exhausted; <code>false</code> to return 
+	 *        <code>null</code> once every record was handed out.
+	 */
+	public SharedDataFeeder(List records, boolean circular) {
+		this(records.toArray(), circular);
+	}
+	
+	/**
+	 * Constructs a <code>SharedDataFeeder</code> over the
+	 * specified records.
+	 *
+	 * @param records Test data records.
+	 * @param circular <code>true</code> to start over when the
+	 *        data is exhausted; <code>false</code> to return 
+	 *        <code>null</code> once every record was handed out.
+	 */
+	public SharedDataFeeder(Object[] records, boolean circular) {
+		
+		if (records.length == 0) {
+			throw new IllegalArgumentException("No test data records");
+		}
+		
+		this.records = records.clone();
+		this.circular = circular;
+		this.cursor = new AtomicLong();
+	}
+
+	/**
+	 * Returns the next test data record.
+	 *
+	 * @return Record, or <code>null</code> if the data 
+	 *         has been exhausted.
+	 */
+	public Object next() {
+		
+		long position = cursor.getAndIncrement();
+		
+		if (circular) {
+			return records[(int)(position % records.length)];
+		} else if (position < records.length) {
+			return records[(int)position];
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the number of records.
+	 *
+	 * @return Number of records.
+	 */
+	public int size() {
+		return records.length;
+	}
+}
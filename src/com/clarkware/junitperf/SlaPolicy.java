@@ -0,0 +1,174 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>SlaPolicy</code> class defines the service level a load 
+ * test must meet: a maximum error rate, a maximum latency at a 
+ * percentile, and a minimum throughput.  Each limit is optional.
+ * <p>
+ * A <code>LoadTest</code> evaluates its policy continuously over a 
+ * sliding window of recent intervals and aborts as soon as the 
+ * policy is violated, instead of running to completion.
+ * </p>
+ * <p>
+ * For example, to abort a load test when, over the last 30 seconds,
+ * more than 1% of the iterations fail, the 99th percentile latency 
+ * exceeds 500 ms, or the throughput falls below 100 iterations per
+ * second, use:
+ * <blockquote>
+ * <pre>
+ * SlaPolicy sla = new SlaPolicy(30000);
+ * sla.setMaxErrorRate(0.01);
+ * sla.setMaxLatency(99, 500);
+ * sla.setMinThroughput(100);
+ * loadTest.setSlaPolicy(sla);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ */
+
+public class SlaPolicy {
+
+	private final long window;
+	private double maxErrorRate;
+	private double percentile;
+	private long maxLatency;
+	private double minThroughput;
+
+	/**
+	 * Constructs an <code>SlaPolicy</code> without limits
+	 * evaluated over the specified window.
+	 *
+	 * @param window Sliding window (ms).
+	 */
+	public SlaPolicy(long window) {
+		
+		if (window < 1) {
+			throw new IllegalArgumentException("Window must be > 0");
+		}
+		
+		this.window = window;
+		this.maxErrorRate = -1;
+		this.percentile = 99;
+		this.maxLatency = -1;
+		this.minThroughput = -1;
+	}
+	
+	/**
+	 * Sets the maximum ratio of errors and failures
+	 * to completed iterations.
+	 *
+	 * @param maxErrorRate Maximum error rate, such as 0.01.
+	 */
+	public void setMaxErrorRate(double maxErrorRate) {
+		this.maxErrorRate = maxErrorRate;
+	}
+	
+	/**
+	 * Sets the maximum latency at the specified percentile.
+	 *
+	 * @param percentile Percentile, such as 99.
+	 * @param maxLatency Maximum latency (ms).
+	 */
+	public void setMaxLatency(double percentile, long maxLatency) {
+		
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be in (0, 100]");
+		}
+		
+		this.percentile = percentile;
+		this.maxLatency = maxLatency;
+	}
+	
+	/**
+	 * Sets the minimum throughput.
+	 *
+	 * @param minThroughput Minimum iterations per second.
+	 */
+	public void setMinThroughput(double minThroughput) {
+		this.minThroughput = minThroughput;
+	}
+	
+	/**
+	 * Returns the sliding window.
+	 *
+	 * @return Window (ms).
+	 */
+	public long getWindow() {
+		return window;
+	}
+	
+	/**
+	 * Checks the specified measurements against this policy.
+	 *
+	 * @param iterations Completed iterations.
+	 * @param errors Errors and failures.
+	 * @param latency Latency histogram of the iterations (ns).
+	 * @param time Measured time (ns).
+	 * @return Description of the violation, or <code>null</code>
+	 *         if the policy is met.
+	 */
+	public String check(long iterations, long errors, Histogram latency, long time) {
+		
+		if (maxErrorRate >= 0 && errors > 0) {
+			double errorRate = (iterations == 0) ? 
+				Double.POSITIVE_INFINITY : (double)errors / iterations;
+			if (errorRate > maxErrorRate) {
+				return "error rate " + round(errorRate) + " > " + maxErrorRate + 
+					" (" + errors + " errors in " + iterations + " iterations)";
+			}
+		}
+		
+		if (maxLatency >= 0 && latency.getCount() > 0) {
+			long value = latency.getValueAtPercentile(percentile);
+			if (value > maxLatency * 1000000L) {
+				return "p" + percentileName() + " latency " + Histogram.toMillis(value) + 
+					" ms > " + maxLatency + " ms";
+			}
+		}
+		
+		if (minThroughput >= 0 && time > 0) {
+			double throughput = iterations * 1e9 / time;
+			if (throughput < minThroughput) {
+				return "throughput " + round(throughput) + "/s < " + minThroughput + "/s";
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns a description of the limits of this policy.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		StringBuffer description = new StringBuffer("SlaPolicy (" + window + " ms window)");
+		if (maxErrorRate >= 0) {
+			description.append(": error rate <= ").append(maxErrorRate);
+		}
+		if (maxLatency >= 0) {
+			description.append(maxErrorRate >= 0 ? ", " : ": ");
+			description.append("p").append(percentileName()).append(" <= ");
+			description.append(maxLatency).append(" ms");
+		}
+		if (minThroughput >= 0) {
+			description.append(maxErrorRate >= 0 || maxLatency >= 0 ? ", " : ": ");
+			description.append("throughput >= ").append(minThroughput).append("/s");
+		}
+		return description.toString();
+	}
+	
+	private String percentileName() {
+		return (percentile == Math.floor(percentile)) ? 
+			String.valueOf((long)percentile) : String.valueOf(percentile);
+	}
+	
+	private static double round(double value) {
+		return Math.round(value * 1000) / 1000.0;
+	}
+}
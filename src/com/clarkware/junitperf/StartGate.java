@@ -0,0 +1,159 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>StartGate</code> class releases a number of parked 
+ * threads at the same instant.
+ * <p>
+ * Each thread calls <code>await()</code>, which parks it until the 
+ * gate is released.  Once all threads are parked, the releasing 
+ * thread sets a release time slightly in the future and opens the 
+ * gate.  Rather than running as soon as they are unparked, which 
+ * happens one thread after another, the threads then sleep with a 
+ * <code>PreciseSleeper</code> until the release time, so they start
+ * together.  The spread between the first and the last thread to 
+ * start is measured.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest#setSimultaneousStart(boolean)
+ */
+
+public class StartGate {
+
+	private final int parties;
+	private final PreciseSleeper sleeper;
+	private final CountDownLatch ready;
+	private final CountDownLatch open;
+	private final AtomicLong first;
+	private final AtomicLong last;
+	private volatile long releaseTime;
+	private volatile boolean isCancelled;
+
+	/**
+	 * Constructs a <code>StartGate</code> for the specified
+	 * number of threads.
+	 *
+	 * @param parties Number of threads.
+	 * @param sleeper Sleeper timing the release.
+	 */
+	public StartGate(int parties, PreciseSleeper sleeper) {
+		this.parties = parties;
+		this.sleeper = sleeper;
+		this.ready = new CountDownLatch(parties);
+		this.open = new CountDownLatch(1);
+		this.first = new AtomicLong(Long.MAX_VALUE);
+		this.last = new AtomicLong(Long.MIN_VALUE);
+	}
+	
+	/**
+	 * Parks the current thread until it is released.
+	 *
+	 * @return Lag of the start of the thread behind the 
+	 *         release time (ns), or -1 if the gate was 
+	 *         cancelled or the thread interrupted.
+	 */
+	public long await() {
+		
+		ready.countDown();
+		
+		try {
+			open.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+		
+		if (isCancelled || sleeper.sleepUntil(releaseTime) < 0) {
+			return -1;
+		}
+		
+		long now = System.nanoTime();
+		
+		long current;
+		while (now < (current = first.get()) && !first.compareAndSet(current, now)) {
+		}
+		while (now > (current = last.get()) && !last.compareAndSet(current, now)) {
+		}
+		
+		return now - releaseTime;
+	}
+	
+	/**
+	 * Waits until all threads are parked or the gate
+	 * is cancelled.
+	 *
+	 * @throws InterruptedException If interrupted.
+	 */
+	public void awaitReady() throws InterruptedException {
+		ready.await();
+	}
+	
+	/**
+	 * Releases the parked threads at the specified time, which
+	 * should leave enough time to unpark them all.
+	 *
+	 * @param time Release time, as returned by 
+	 *        <code>System.nanoTime()</code>.
+	 */
+	public void release(long time) {
+		releaseTime = time;
+		open.countDown();
+	}
+	
+	/**
+	 * Returns a release time leaving enough time to unpark
+	 * the threads: 10 ms plus 50 us per thread from now.
+	 *
+	 * @return Release time (ns).
+	 */
+	public long getDefaultReleaseTime() {
+		return System.nanoTime() + 10000000L + 50000L * parties;
+	}
+	
+	/**
+	 * Releases the parked threads without starting them,
+	 * as well as any threads parking later.
+	 */
+	public void cancel() {
+		isCancelled = true;
+		open.countDown();
+		while (ready.getCount() > 0) {
+			ready.countDown();
+		}
+	}
+	
+	/**
+	 * Indicates whether the gate was cancelled.
+	 *
+	 * @return <code>true</code> if cancelled;
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+	
+	/**
+	 * Returns the time between the first and the last
+	 * thread to start.
+	 *
+	 * @return Spread (ns), or 0 if no thread started.
+	 */
+	public long getSpread() {
+		long begin = first.get();
+		return (begin == Long.MAX_VALUE) ? 0 : last.get() - begin;
+	}
+	
+	/**
+	 * Returns the number of threads the gate waits for.
+	 *
+	 * @return Number of threads.
+	 */
+	public int getParties() {
+		return parties;
+	}
+}
@@ -1,5 +1,10 @@
 package com.clarkware.junitperf;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestResult;
@@ -40,6 +45,13 @@ import junit.framework.TestSuite;
  * local cache implementation should be changed to use, for example, 
  * a HashMap to track thread-local information.
  * </p>
+ * <p>
+ * Counting the tests of a <code>TestFactory</code> does not 
+ * instantiate any tests.  The test methods are discovered 
+ * reflectively and the count is cached, so runners can size 
+ * their suites cheaply.  <code>TestSuite</code> instances are 
+ * only created on the threads that run them.
+ * </p>
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
  * @author Ervin Varga
@@ -50,8 +62,8 @@ import junit.framework.TestSuite;
 public class TestFactory implements Test {
     
 	protected final Class testClass;
-	private TestSuite suite; 
 	private final TestCache testCache;
+	private volatile int testCount;
     
 	/**
 	 * Constructs a <code>TestFactory</code> instance.
@@ -67,6 +79,7 @@ public class TestFactory implements Test {
 
 		this.testClass = testClass;
 		this.testCache = new TestCache();
+		this.testCount = -1;
 	}
 
 	/**
@@ -85,11 +98,18 @@ public class TestFactory implements Test {
     
 	/**
 	 * Returns the number of tests in this test.
+	 * <p>
+	 * The count is computed without instantiating any tests
+	 * and is cached after the first invocation.
 	 *
 	 * @return Number of tests.
 	 */
 	public int countTestCases() {
-		return getTestSuite().countTestCases();
+		if (testCount < 0) {
+			testCount = countTests();
+		}
+		
+		return testCount;
 	}
 
 	/**
@@ -98,24 +118,77 @@ public class TestFactory implements Test {
 	 * @return Description.
 	 */
 	public String toString() {
-		return "TestFactory: " + getTestSuite().toString();
+		return "TestFactory: " + testClass.getName();
 	}
 	
 	protected Test getTest() {
 		return testCache.getTest();
 	}
 	
+	/**
+	 * Returns the <code>TestSuite</code> local to the 
+	 * calling thread.
+	 *
+	 * @return Thread-local <code>TestSuite</code>.
+	 */
 	protected TestSuite getTestSuite() {
-		if (suite == null) {
-			suite = makeTestSuite();
-		}
-		
-		return suite;
+		return (TestSuite)getTest();
 	}
 	
 	protected TestSuite makeTestSuite() {
 		return new TestSuite(testClass);
 	}
+	
+	/**
+	 * Counts the tests that <code>makeTestSuite()</code> would
+	 * create, including the warnings added by 
+	 * <code>TestSuite</code>, without instantiating them.
+	 *
+	 * @return Number of tests.
+	 */
+	protected int countTests() {
+
+		if (!hasTestConstructor(testClass) ||
+			!Modifier.isPublic(testClass.getModifiers())) {
+			return 1;
+		}
+
+		int count = 0;
+		Set names = new HashSet();
+		
+		Class superClass = testClass;
+		while (Test.class.isAssignableFrom(superClass)) {
+			Method[] methods = superClass.getDeclaredMethods();
+			for (int i=0; i < methods.length; i++) {
+				Method method = methods[i];
+				if (names.contains(method.getName()) || !isTestMethod(method)) {
+					continue;
+				}
+				if (Modifier.isPublic(method.getModifiers())) {
+					names.add(method.getName());
+				}
+				count++;
+			}
+			superClass = superClass.getSuperclass();
+		}
+		
+		return (count == 0) ? 1 : count;
+	}
+	
+	private boolean hasTestConstructor(Class theClass) {
+		try {
+			TestSuite.getTestConstructor(theClass);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+	
+	private boolean isTestMethod(Method m) {
+		return m.getParameterTypes().length == 0 && 
+			m.getName().startsWith("test") &&
+			m.getReturnType().equals(Void.TYPE);
+	}
 
 	/*
 	 * The <code>TestCache</code> class provides thread-local
@@ -75,6 +75,16 @@ public class TestMethodFactory extends TestFactory {
 		return suite;
 	}
 	
+	/**
+	 * Returns the number of tests created by this factory, 
+	 * which is always a single test method or warning.
+	 *
+	 * @return Number of tests.
+	 */
+	protected int countTests() {
+		return 1;
+	}
+	
 	private void 
 	addTestMethod(TestSuite suite, Constructor constructor, String methodName) {
 
@@ -0,0 +1,119 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>TestStatistics</code> class collects the measurements
+ * of one individual test, identified by its name, within a 
+ * load test of a suite.
+ * <p>
+ * The latency of each run of the test, from the start to the end 
+ * of the test as signalled to the <code>TestResult</code>, is 
+ * recorded in nanoseconds along with its errors and failures.
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadStatistics
+ */
+
+public class TestStatistics {
+
+	private final String name;
+	private final Histogram latency;
+	private final AtomicLong errors;
+	private final AtomicLong failures;
+
+	/**
+	 * Constructs an empty <code>TestStatistics</code>.
+	 *
+	 * @param name Test name.
+	 */
+	public TestStatistics(String name) {
+		this.name = name;
+		this.latency = new Histogram();
+		this.errors = new AtomicLong();
+		this.failures = new AtomicLong();
+	}
+	
+	/**
+	 * Returns the test name.
+	 *
+	 * @return Name.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the latency of the runs of the test.
+	 *
+	 * @return Latency histogram (ns).
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Returns the number of completed runs of the test.
+	 *
+	 * @return Number of runs.
+	 */
+	public long getCount() {
+		return latency.getCount();
+	}
+	
+	/**
+	 * Returns the number of errors of the test.
+	 *
+	 * @return Number of errors.
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+	
+	/**
+	 * Returns the number of failures of the test.
+	 *
+	 * @return Number of failures.
+	 */
+	public long getFailureCount() {
+		return failures.get();
+	}
+	
+	void recordError() {
+		errors.incrementAndGet();
+	}
+	
+	void recordFailure() {
+		failures.incrementAndGet();
+	}
+	
+	void recordErrors(long errorCount, long failureCount) {
+		errors.addAndGet(errorCount);
+		failures.addAndGet(failureCount);
+	}
+	
+	void add(TestStatistics other) {
+		add(other.latency, other.getErrorCount(), other.getFailureCount());
+	}
+	
+	void add(Histogram otherLatency, long otherErrors, long otherFailures) {
+		latency.add(otherLatency);
+		errors.addAndGet(otherErrors);
+		failures.addAndGet(otherFailures);
+	}
+	
+	/**
+	 * Returns a summary of the statistics.
+	 *
+	 * @return Summary.
+	 */
+	public String toString() {
+		return name + " (count=" + getCount() + 
+			", p99=" + Histogram.toMillis(latency.getValueAtPercentile(99)) + " ms" +
+			", max=" + Histogram.toMillis(latency.getMax()) + " ms" +
+			", errors=" + getErrorCount() + ", failures=" + getFailureCount() + ")";
+	}
+}
@@ -23,6 +23,7 @@ public class ThreadedTestGroup extends ThreadGroup {
 
 	private final Test test;
 	private TestResult testResult;
+	private FailureAggregator failureAggregator;
 	
 	/**
 	 * Constructs a <code>ThreadedTestGroup</code> for the
@@ -44,6 +45,17 @@ public class ThreadedTestGroup extends ThreadGroup {
 		testResult = result;
 	}
 
+	/**
+	 * Sets the aggregator deciding which uncaught exceptions
+	 * are added to the current test's result.
+	 *
+	 * @param aggregator Failure aggregator, or <code>null</code>
+	 *        to add all of them.
+	 */
+	public void setFailureAggregator(FailureAggregator aggregator) {
+		failureAggregator = aggregator;
+	}
+
 	/**
 	 * Called when a thread in this thread group stops because of
 	 * an uncaught exception.
@@ -52,7 +64,8 @@ public class ThreadedTestGroup extends ThreadGroup {
 	 * then it is ignored.  If the uncaught exception is an
 	 * <code>AssertionFailedError</code>, then a failure
 	 * is added to the current test's result.  Otherwise, an
-	 * error is added to the current test's result.
+	 * error is added to the current test's result, unless a 
+	 * failure aggregator is set and does not report it.
 	 *
 	 * @param t Originating thread.
 	 * @param e Uncaught exception.
@@ -63,10 +76,12 @@ public class ThreadedTestGroup extends ThreadGroup {
 			return;
 		}
 		
-		if (e instanceof AssertionFailedError) {
-			testResult.addFailure(test, (AssertionFailedError)e);
-		} else {
-			testResult.addError(test, e);
+		if (failureAggregator == null || failureAggregator.record(test, e)) {
+			if (e instanceof AssertionFailedError) {
+				testResult.addFailure(test, (AssertionFailedError)e);
+			} else {
+				testResult.addError(test, e);
+			}
 		}
 		
 		super.interrupt();
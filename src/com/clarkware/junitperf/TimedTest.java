@@ -1,5 +1,7 @@
 package com.clarkware.junitperf;
 
+import java.util.List;
+
 import junit.framework.AssertionFailedError;
 import junit.framework.Test;
 import junit.framework.TestResult;
@@ -47,6 +49,15 @@ import junit.extensions.TestDecorator;
  * </pre>
  * </blockquote>
  * </p>
+ * <p>
+ * When a <code>TimedTest</code> of several tests exceeds its maximum 
+ * elapsed time, the failure message names the slowest of them.
+ * </p>
+ * <p>
+ * While it runs, a <code>TimedTest</code> is registered as a
+ * <code>TimedTestMonitor</code> MBean, unless it runs within
+ * the users of a <code>LoadTest</code>.
+ * </p>
  * 
  * @author <b>Mike Clark</b>
  * @author Clarkware Consulting, Inc.
@@ -58,6 +69,7 @@ public class TimedTest extends TestDecorator {
 	private final long maxElapsedTime;
 	private final boolean waitForCompletion;
 	private boolean maxElapsedTimeExceeded;
+	private final ThreadLocal runStatistics;
 	private boolean isQuiet;
 
 	/**
@@ -95,6 +107,7 @@ public class TimedTest extends TestDecorator {
 		this.waitForCompletion = waitForCompletion;
 		maxElapsedTimeExceeded = false;
 		isQuiet = false;
+		runStatistics = new ThreadLocal();
 	}
 	
 	/**
@@ -104,6 +117,15 @@ public class TimedTest extends TestDecorator {
 		isQuiet = true;
 	}
 
+	/**
+	 * Returns the maximum elapsed time of the test.
+	 *
+	 * @return Maximum elapsed time (ms).
+	 */
+	public long getMaxElapsedTime() {
+		return maxElapsedTime;
+	}
+	
 	/**
 	 * Returns the number of tests in this timed test.
 	 *
@@ -130,14 +152,50 @@ public class TimedTest extends TestDecorator {
 	 * @param result Test result.
 	 */
 	public void run(TestResult result) {
+		
 		//
-		// TODO: May require a strategy pattern
-		//       if other algorithms emerge.
-		// 
-		if (waitForCompletion) {
-			runUntilTestCompletion(result);
-		} else {
-			runUntilTimeExpires(result);
+		// Only a top-level timed test is registered, to keep the
+		// MBean server out of the iterations of a load test.
+		//
+		boolean isTopLevel = (LoadTest.getCurrent() == null);
+		TimedTestMonitor monitor = null;
+		if (isTopLevel) {
+			monitor = new TimedTestMonitor(this, result);
+			MonitorRegistry.register(monitor, "TimedTest", toString());
+		}
+		
+		//
+		// The individual tests are only timed to name the slowest
+		// of several tests, and neither within the iterations of a
+		// load test nor around one, whose statistics already break
+		// them down.
+		//
+		LoadStatistics statistics = null;
+		if (isTopLevel && countTestCases() > 1 && !(getTest() instanceof LoadTest)) {
+			statistics = new LoadStatistics();
+			result.addListener(statistics);
+		}
+		Object previous = runStatistics.get();
+		runStatistics.set(statistics);
+		
+		try {
+			//
+			// TODO: May require a strategy pattern
+			//       if other algorithms emerge.
+			// 
+			if (waitForCompletion) {
+				runUntilTestCompletion(result);
+			} else {
+				runUntilTimeExpires(result);
+			}
+		} finally {
+			runStatistics.set(previous);
+			if (statistics != null) {
+				result.removeListener(statistics);
+			}
+			if (monitor != null) {
+				MonitorRegistry.unregister(monitor);
+			}
 		}
 	}
 	
@@ -161,7 +219,7 @@ public class TimedTest extends TestDecorator {
 			result.addFailure(getTest(),
 				new AssertionFailedError("Maximum elapsed time exceeded!" +
 					" Expected " + maxElapsedTime + "ms, but was " +
-					elapsedTime + "ms."));
+					elapsedTime + "ms." + describeSlowestTests()));
             result.endTest(getTest());
 		}
 	}
@@ -198,11 +256,38 @@ public class TimedTest extends TestDecorator {
 		if (t.isAlive()) {				
 			maxElapsedTimeExceeded = true;
 			result.addFailure(getTest(),
-				new AssertionFailedError("Maximum elapsed time (" + maxElapsedTime + " ms) exceeded!"));
+				new AssertionFailedError("Maximum elapsed time (" + maxElapsedTime + " ms) exceeded!" +
+					describeSlowestTests()));
 			result.endTest(getTest());
         }	
 	}
 
+	/**
+	 * Describes the slowest of the individual tests run by
+	 * this timed test, if it ran more than one test.
+	 *
+	 * @return Description, or an empty string.
+	 */
+	protected String describeSlowestTests() {
+		
+		LoadStatistics statistics = (getTest() instanceof LoadTest) ? 
+			((LoadTest)getTest()).getStatistics() : 
+			(LoadStatistics)runStatistics.get();
+		if (statistics == null || statistics.getTestStatistics().size() < 2) {
+			return "";
+		}
+		
+		StringBuffer description = new StringBuffer(" Slowest tests: ");
+		List slowest = statistics.getSlowestTests(3);
+		for (int i=0; i < slowest.size(); i++) {
+			if (i > 0) {
+				description.append(", ");
+			}
+			description.append(slowest.get(i));
+		}
+		return description.toString();
+	}
+	
 	protected long getElapsedTime(long beginTime) {
 		long endTime = System.currentTimeMillis();
 		return endTime - beginTime;
@@ -210,8 +295,13 @@ public class TimedTest extends TestDecorator {
 	
 	protected void printElapsedTime(long elapsedTime) {
 		if (!isQuiet) {
-			System.out.println(toString() + ": " + elapsedTime + " ms");
-			System.out.flush();
+			String line = toString() + ": " + elapsedTime + " ms";
+			if (LoadTest.getCurrent() == null) {
+				System.out.println(line);
+				System.out.flush();
+			} else {
+				ConsoleReporter.getDefault().print(line);
+			}
 		}
 	}
 		
@@ -0,0 +1,57 @@
+package com.clarkware.junitperf;
+
+import junit.framework.TestResult;
+
+/**
+ * The <code>TimedTestMonitor</code> exposes the elapsed time
+ * of a running <code>TimedTest</code> and allows it to be stopped.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.MonitorRegistry
+ */
+
+public class TimedTestMonitor implements TimedTestMonitorMBean {
+
+	private final TimedTest test;
+	private final TestResult result;
+	private final long beginTime;
+
+	/**
+	 * Constructs a <code>TimedTestMonitor</code>.
+	 *
+	 * @param test Timed test.
+	 * @param result Test result of the current run.
+	 */
+	public TimedTestMonitor(TimedTest test, TestResult result) {
+		this.test = test;
+		this.result = result;
+		this.beginTime = System.currentTimeMillis();
+	}
+	
+	public String getName() {
+		return test.toString();
+	}
+	
+	public long getMaxElapsedTime() {
+		return test.getMaxElapsedTime();
+	}
+	
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - beginTime;
+	}
+	
+	/**
+	 * Stops the timed test.  A decorated <code>LoadTest</code> 
+	 * is stopped after its current iterations; any other test 
+	 * is stopped by stopping its <code>TestResult</code>.
+	 */
+	public void stop() {
+		if (test.getTest() instanceof LoadTest) {
+			((LoadTest)test.getTest()).stop();
+		} else {
+			result.stop();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.clarkware.junitperf;
+
+/**
+ * The <code>TimedTestMonitorMBean</code> interface defines the
+ * management interface of a running <code>TimedTest</code>.
+ * 
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.TimedTestMonitor
+ */
+
+public interface TimedTestMonitorMBean {
+
+	/**
+	 * Returns the test description.
+	 */
+	public String getName();
+	
+	/**
+	 * Returns the maximum elapsed time (ms).
+	 */
+	public long getMaxElapsedTime();
+	
+	/**
+	 * Returns the elapsed time so far (ms).
+	 */
+	public long getElapsedTime();
+	
+	/**
+	 * Stops the timed test.
+	 */
+	public void stop();
+}
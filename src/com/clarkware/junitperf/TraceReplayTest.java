@@ -0,0 +1,305 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+/**
+ * The <code>TraceReplayTest</code> is a test decorator that starts
+ * iterations of a test at the times recorded in a trace file, such
+ * as an access log, rather than at the delays prescribed by a 
+ * <code>Timer</code>.
+ * <p>
+ * Each non-blank line of the trace file is one iteration.  The
+ * first field of a line, separated by a comma or whitespace, is 
+ * the timestamp of the recorded request in milliseconds, for 
+ * example since the epoch.  Lines starting with <code>#</code>
+ * and lines whose first field is not a number, such as a header, 
+ * are skipped.  The trace is read as it is replayed, so it is 
+ * never held in memory.
+ * </p>
+ * <p>
+ * Iterations are started at their offsets from the first recorded
+ * timestamp, divided by the speedup factor, on a pool of threads.
+ * When all threads are busy, the replay waits for a free thread
+ * rather than queueing the trace.  The lag of each actual start 
+ * behind its scheduled start, including any such wait, is recorded
+ * in the <code>LoadStatistics</code> along with the latency and
+ * the errors and failures of each iteration.  While an iteration runs, its trace
+ * line is available to the test from <code>getCurrentRecord()</code>.
+ * </p>
+ * <p>
+ * For example, to replay a recorded peak hour ten times faster
+ * with at most 200 concurrent iterations, use:
+ * <blockquote>
+ * <pre>
+ * Test test = new ExampleTest("testSomething");
+ * Test replay = new TraceReplayTest(test, new File("peak.log"), 10.0, 200);
+ * </pre>
+ * </blockquote>
+ * </p>
+ *
+ * @author <b>Mike Clark</b>
+ * @author Clarkware Consulting, Inc.
+ *
+ * @see com.clarkware.junitperf.LoadTest
+ */
+
+public class TraceReplayTest implements Test {
+
+	private static final ThreadLocal currentRecord = new ThreadLocal();
+	
+	private final Test test;
+	private final File trace;
+	private final double speedup;
+	private final int maxThreads;
+	private final ThreadedTestGroup group;
+	private volatile LoadStatistics statistics;
+	private int recordCount;
+
+	/**
+	 * Constructs a <code>TraceReplayTest</code> to replay the
+	 * specified trace in real time.
+	 *
+	 * @param test Test to decorate.
+	 * @param trace Trace file.
+	 */
+	public TraceReplayTest(Test test, File trace) {
+		this(test, trace, 1.0, 100);
+	}
+	
+	/**
+	 * Constructs a <code>TraceReplayTest</code> to replay the
+	 * specified trace with the specified speedup.
+	 *
+	 * @param test Test to decorate.
+	 * @param trace Trace file.
+	 * @param speedup Speedup factor, for example 2.0 to replay
+	 *        the trace twice as fast as it was recorded.
+	 * @param maxThreads Maximum number of concurrent iterations.
+	 */
+	public TraceReplayTest(Test test, File trace, double speedup, int maxThreads) {
+		
+		if (test == null) {
+			throw new IllegalArgumentException("Decorated test is null");
+		} else if (trace == null) {
+			throw new IllegalArgumentException("Trace file is null");
+		} else if (speedup <= 0) {
+			throw new IllegalArgumentException("Speedup must be > 0");
+		} else if (maxThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be > 0");
+		}
+		
+		this.test = test;
+		this.trace = trace;
+		this.speedup = speedup;
+		this.maxThreads = maxThreads;
+		this.group = new ThreadedTestGroup(this);
+		this.statistics = new LoadStatistics();
+		this.recordCount = -1;
+	}
+	
+	/**
+	 * Returns the trace line of the iteration running on
+	 * the calling thread.
+	 *
+	 * @return Trace line, or <code>null</code> if the calling
+	 *         thread is not running a replayed iteration.
+	 */
+	public static String getCurrentRecord() {
+		return (String)currentRecord.get();
+	}
+	
+	/**
+	 * Returns the number of tests in this replay, which 
+	 * requires a pass over the trace file the first time.
+	 *
+	 * @return Number of tests.
+	 */
+	public int countTestCases() {
+		
+		if (recordCount < 0) {
+			int count = 0;
+			try {
+				BufferedReader reader = new BufferedReader(new FileReader(trace));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (parseTimestamp(line) >= 0) {
+							count++;
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (IOException e) {
+				return test.countTestCases();
+			}
+			recordCount = count;
+		}
+		
+		return recordCount * test.countTestCases();
+	}
+	
+	/**
+	 * Returns the statistics of the current or most recent run.
+	 *
+	 * @return Statistics.
+	 */
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Runs the test.
+	 *
+	 * @param result Test result.
+	 */
+	public void run(final TestResult result) {
+		
+		final LoadStatistics stats = new LoadStatistics();
+		statistics = stats;
+		result.addListener(stats);
+		group.setTestResult(result);
+		
+		ExecutorService executor = new ThreadPoolExecutor(maxThreads, maxThreads, 
+			60, TimeUnit.SECONDS, new ArrayBlockingQueue(maxThreads), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					return new Thread(group, r);
+				}
+			});
+		
+		try {
+			
+			BufferedReader reader = new BufferedReader(new FileReader(trace));
+			try {
+				dispatch(reader, executor, result, stats);
+			} finally {
+				reader.close();
+			}
+			
+		} catch (IOException e) {
+			result.addError(this, e);
+		} finally {
+			executor.shutdown();
+			awaitTermination(executor);
+			result.removeListener(stats);
+		}
+	}
+	
+	private void dispatch(BufferedReader reader, ExecutorService executor,
+		final TestResult result, final LoadStatistics stats) throws IOException {
+		
+		final Semaphore freeThreads = new Semaphore(maxThreads);
+		double firstTimestamp = -1;
+		long beginTime = 0;
+		
+		String line;
+		while ((line = reader.readLine()) != null) {
+			
+			if (result.shouldStop()) {
+				break;
+			}
+			
+			double timestamp = parseTimestamp(line);
+			if (timestamp < 0) {
+				continue;
+			}
+			
+			if (firstTimestamp < 0) {
+				firstTimestamp = timestamp;
+				beginTime = System.nanoTime();
+			}
+			
+			final long dueTime = beginTime + 
+				(long)((timestamp - firstTimestamp) * 1000000.0 / speedup);
+			sleepUntil(dueTime);
+			
+			try {
+				freeThreads.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			
+			final String record = line;
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						long begin = System.nanoTime();
+						stats.recordScheduleLag(begin - dueTime);
+						currentRecord.set(record);
+						try {
+							test.run(result);
+						} finally {
+							currentRecord.set(null);
+						}
+						stats.recordIteration(System.nanoTime() - begin);
+					} finally {
+						freeThreads.release();
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Returns the timestamp of the specified trace line.
+	 *
+	 * @param line Trace line.
+	 * @return Timestamp (ms), or a negative value if the 
+	 *         line is not a trace record.
+	 */
+	protected double parseTimestamp(String line) {
+		
+		line = line.trim();
+		if (line.length() == 0 || line.startsWith("#")) {
+			return -1;
+		}
+		
+		int end = 0;
+		while (end < line.length() && 
+			",; \t".indexOf(line.charAt(end)) < 0) {
+			end++;
+		}
+		
+		try {
+			return Double.parseDouble(line.substring(0, end));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	protected void sleepUntil(long dueTime) {
+		PreciseSleeper.getDefault().sleepUntil(dueTime);
+	}
+	
+	private void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(50, TimeUnit.MILLISECONDS)) {
+			}
+		} catch (InterruptedException ignored) {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the test description.
+	 *
+	 * @return Description.
+	 */
+	public String toString() {
+		return "TraceReplayTest (" + speedup + "x " + trace.getName() + "): " + 
+			test.toString();
+	}
+}
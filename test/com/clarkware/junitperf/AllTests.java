@@ -18,6 +18,25 @@ public class AllTests {
 		suite.addTest(LoadTestTest.suite());
 		suite.addTest(TimedTestTest.suite());
 		suite.addTest(TestFactoryTest.suite());
+		suite.addTest(DataFeederTest.suite());
+		suite.addTest(MappedFileDataFeederTest.suite());
+		suite.addTest(HistogramTest.suite());
+		suite.addTest(TimerTest.suite());
+		suite.addTest(PacerTest.suite());
+		suite.addTest(PreciseSleeperTest.suite());
+		suite.addTest(TraceReplayTestTest.suite());
+		suite.addTest(DistributedLoadTestTest.suite());
+		suite.addTest(ForkedTestTest.suite());
+		suite.addTest(MetricsServerTest.suite());
+		suite.addTest(LoadReportTest.suite());
+		suite.addTest(BufferedTestResultTest.suite());
+		suite.addTest(FailureAggregatorTest.suite());
+		suite.addTest(CapacitySearchTest.suite());
+		suite.addTest(ScalabilitySweepTest.suite());
+		suite.addTest(AsyncLoadTestTest.suite());
+		suite.addTest(HttpDriverTest.suite());
+		suite.addTest(RendezvousTest.suite());
+		suite.addTest(ScenarioMixTest.suite());
 		return suite;
 	}
 		
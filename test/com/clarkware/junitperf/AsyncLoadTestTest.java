@@ -0,0 +1,153 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>AsyncLoadTestTest</code> is a <code>TestCase</code>
+ * for the <code>AsyncTestCase</code>, <code>AsyncTestSuite</code>,
+ * and <code>AsyncLoadTest</code> classes.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class AsyncLoadTestTest extends TestCase {
+
+	public AsyncLoadTestTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() {
+		MockAsyncTest.reset();
+	}
+	
+	public void testAsyncTestSuite() {
+		assertEquals(6, new AsyncTestSuite(MockAsyncTest.class).countTestCases());
+	}
+	
+	public void testRunSynchronously() {
+		
+		TestResult result = new TestResult();
+		new MockAsyncTest("testCallback").run(result);
+		new MockAsyncTest("testDelayed").run(result);
+		new MockAsyncTest("testSynchronous").run(result);
+		new MockAsyncTest("testFailure").run(result);
+		new MockAsyncTest("testError").run(result);
+		
+		assertEquals(5, result.runCount());
+		assertEquals(1, result.failureCount());
+		assertEquals(1, result.errorCount());
+		assertTrue(result.errors().nextElement().toString().indexOf("async error") >= 0);
+	}
+	
+	public void testTimedAsyncTest() {
+		
+		TestResult result = new TestResult();
+		new TimedTest(new MockAsyncTest("testDelayed"), 50).run(result);
+		
+		assertEquals(1, result.failureCount());
+	}
+	
+	public void testConcurrentOperations() {
+		
+		int threads = Thread.activeCount();
+		
+		AsyncLoadTest test = new AsyncLoadTest(new MockAsyncTest("testDelayed"), 10000, 20000);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertEquals(20000, result.runCount());
+		assertEquals(0, result.failureCount());
+		assertEquals(0, result.errorCount());
+		assertTrue("Elapsed: " + elapsed, elapsed < 3000);
+		assertTrue(MockAsyncTest.maxInFlight.get() <= 10000);
+		assertTrue(MockAsyncTest.maxInFlight.get() > 5000);
+		assertTrue(Thread.activeCount() - threads < 10);
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(20000, statistics.getIterationCount());
+		assertEquals(0, statistics.getActiveUsers());
+		assertTrue(statistics.getLatency().getMin() >= 90 * 1000000L);
+		assertEquals(20000, statistics.getTestStatistics("testDelayed").getCount());
+	}
+	
+	public void testSuiteWithFailures() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockAsyncTest("testFailure"));
+		suite.addTest(new MockAsyncTest("testError"));
+		suite.addTest(new MockAsyncTest("testCallback"));
+		
+		AsyncLoadTest test = new AsyncLoadTest(suite, 10, 60);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(60, result.runCount());
+		assertEquals(20, result.failureCount());
+		assertEquals(20, result.errorCount());
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(20, statistics.getFailureCount());
+		assertEquals(20, statistics.getErrorCount());
+		assertEquals(20, statistics.getTestStatistics("testCallback").getCount());
+		
+		test.setFailureSampleSize(10);
+		result = new TestResult();
+		test.run(result);
+		
+		assertEquals(10, result.failureCount());
+		assertEquals(10, result.errorCount());
+		assertEquals(20, test.getStatistics().getFailureCount());
+	}
+	
+	public void testTimeout() {
+		
+		AsyncLoadTest test = new AsyncLoadTest(new MockAsyncTest("testNeverCompletes"), 5, 10);
+		test.setTimeout(50);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(10, result.failureCount());
+		assertEquals(0, test.getStatistics().getActiveUsers());
+	}
+	
+	public void testDuration() {
+		
+		AsyncLoadTest test = new AsyncLoadTest(new MockAsyncTest("testCallback"), 100, 0);
+		test.setDuration(300);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed >= 300 && elapsed < 1000);
+		assertTrue(test.getStatistics().getIterationCount() > 1000);
+	}
+	
+	public void testNotAsync() {
+		try {
+			new AsyncLoadTest(new MockTest("testSuccess"), 1, 1);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(AsyncLoadTestTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
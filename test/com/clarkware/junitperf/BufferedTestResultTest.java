@@ -0,0 +1,113 @@
+package com.clarkware.junitperf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestListener;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>BufferedTestResultTest</code> is a <code>TestCase</code>
+ * for the <code>BufferedTestResult</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class BufferedTestResultTest extends TestCase {
+
+	private TestResult _target;
+	private List _events;
+	
+	public BufferedTestResultTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() {
+		_target = new TestResult();
+		_events = new ArrayList();
+		_target.addListener(new TestListener() {
+			public void startTest(Test test) {
+				_events.add("start " + test);
+			}
+			public void endTest(Test test) {
+				_events.add("end " + test);
+			}
+			public void addError(Test test, Throwable t) {
+				_events.add("error " + test);
+			}
+			public void addFailure(Test test, AssertionFailedError e) {
+				_events.add("failure " + test);
+			}
+		});
+	}
+	
+	public void testEventsReplayedOnFlush() {
+		
+		BufferedTestResult buffer = new BufferedTestResult(_target, 100, 60000);
+		
+		new MockTest("testSuccess").run(buffer);
+		new MockTest("testFailure").run(buffer);
+		new MockTest("testError").run(buffer);
+		
+		assertEquals(3, buffer.runCount());
+		assertEquals(0, _target.runCount());
+		assertEquals(0, _events.size());
+		
+		buffer.flush();
+		
+		assertEquals(3, _target.runCount());
+		assertEquals(1, _target.failureCount());
+		assertEquals(1, _target.errorCount());
+		assertEquals(0, buffer.failureCount());
+		assertEquals(0, buffer.errorCount());
+		
+		assertEquals(8, _events.size());
+		assertEquals("start testSuccess(com.clarkware.junitperf.MockTest)", _events.get(0));
+		assertEquals("end testSuccess(com.clarkware.junitperf.MockTest)", _events.get(1));
+		assertEquals("start testFailure(com.clarkware.junitperf.MockTest)", _events.get(2));
+		assertEquals("failure testFailure(com.clarkware.junitperf.MockTest)", _events.get(3));
+		assertEquals("end testFailure(com.clarkware.junitperf.MockTest)", _events.get(4));
+		assertEquals("error testError(com.clarkware.junitperf.MockTest)", _events.get(6));
+	}
+	
+	public void testFlushAfterBatchSize() {
+		
+		BufferedTestResult buffer = new BufferedTestResult(_target, 4, 60000);
+		
+		new MockTest("testSuccess").run(buffer);
+		assertEquals(0, _target.runCount());
+		
+		new MockTest("testSuccess").run(buffer);
+		assertEquals(2, _target.runCount());
+	}
+	
+	public void testStop() {
+		
+		BufferedTestResult buffer = new BufferedTestResult(_target, 1, 60000);
+		
+		_target.stop();
+		assertFalse(buffer.shouldStop());
+		
+		new MockTest("testSuccess").run(buffer);
+		assertTrue(buffer.shouldStop());
+		
+		BufferedTestResult other = new BufferedTestResult(new TestResult(), 1, 60000);
+		other.stop();
+		assertTrue(other.shouldStop());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(BufferedTestResultTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
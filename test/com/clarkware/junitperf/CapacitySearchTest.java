@@ -0,0 +1,112 @@
+package com.clarkware.junitperf;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestFailure;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>CapacitySearchTest</code> is a <code>TestCase</code>
+ * for the <code>CapacitySearch</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class CapacitySearchTest extends TestCase {
+
+	public CapacitySearchTest(String name) {
+		super(name);
+	}
+	
+	public void testDuration() {
+		
+		LoadTest test = new LoadTest(new MockTest("testSharedResource"), 2, 1);
+		test.setDuration(300);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed >= 300 && elapsed < 800);
+		assertTrue(test.getStatistics().getIterationCount() > 10);
+		assertEquals(0, result.failureCount());
+	}
+	
+	public void testFindCapacity() {
+		
+		SlaPolicy sla = new SlaPolicy(1000);
+		sla.setMaxLatency(99, 45);
+		
+		LoadTest template = new LoadTest(new MockTest("testSharedResource"), 1);
+		CapacitySearch search = new CapacitySearch(template, 2, 9, 400, sla);
+		search.setWarmUp(100);
+		search.setQuiet();
+		
+		TestResult result = new TestResult();
+		search.run(result);
+		
+		assertEquals(0, result.failureCount());
+		
+		List steps = search.getSteps();
+		assertEquals(1, ((CapacityStep)steps.get(0)).getUsers());
+		assertEquals(3, ((CapacityStep)steps.get(1)).getUsers());
+		assertTrue(((CapacityStep)steps.get(0)).isPassed());
+		assertTrue(((CapacityStep)steps.get(0)).getThroughput() > 50);
+		
+		int capacity = search.getCapacity();
+		assertTrue("Capacity: " + capacity, capacity >= 3 && capacity <= 4);
+	}
+	
+	public void testNoCapacity() {
+		
+		SlaPolicy sla = new SlaPolicy(1000);
+		sla.setMaxLatency(50, 1);
+		
+		LoadTest template = new LoadTest(new MockTest("testSharedResource"), 1);
+		CapacitySearch search = new CapacitySearch(template, 1, 3, 200, sla);
+		search.setQuiet();
+		
+		TestResult result = new TestResult();
+		search.run(result);
+		
+		assertEquals(1, search.getSteps().size());
+		assertEquals(0, search.getCapacity());
+		assertEquals(1, result.failureCount());
+	}
+	
+	public void testStepFailuresReported() {
+		
+		SlaPolicy sla = new SlaPolicy(1000);
+		sla.setMaxLatency(99, 1000);
+		
+		LoadTest template = new LoadTest(new MockTest("testFailure"), 1);
+		CapacitySearch search = new CapacitySearch(template, 1, 2, 200, sla);
+		search.setQuiet();
+		
+		TestResult result = new TestResult();
+		search.run(result);
+		
+		assertEquals(2, search.getSteps().size());
+		assertEquals(2 * CapacityStep.MAX_REPORTED_FAILURES, result.failureCount());
+		assertEquals(0, result.runCount());
+		
+		TestFailure failure = (TestFailure)result.failures().nextElement();
+		assertEquals("testFailure(com.clarkware.junitperf.MockTest)", 
+			failure.failedTest().toString());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(CapacitySearchTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,147 @@
+package com.clarkware.junitperf;
+
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * The <code>DataFeederTest</code> is a <code>TestCase</code>
+ * for the <code>DataFeeder</code> implementations.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class DataFeederTest extends TestCase {
+
+	private List _records;
+	
+	public DataFeederTest(String name) {
+		super(name);
+		
+		_records = new ArrayList();
+		for (int i=0; i < 100; i++) {
+			_records.add(Integer.valueOf(i));
+		}
+	}
+	
+	public void testSharedExhausted() {
+		
+		DataFeeder feeder = new SharedDataFeeder(_records, false);
+		
+		for (int i=0; i < 100; i++) {
+			assertEquals(Integer.valueOf(i), feeder.next());
+		}
+		
+		assertNull(feeder.next());
+		assertNull(feeder.next());
+	}
+	
+	public void testSharedCircular() {
+		
+		DataFeeder feeder = new SharedDataFeeder(_records, true);
+		
+		for (int i=0; i < 250; i++) {
+			assertEquals(Integer.valueOf(i % 100), feeder.next());
+		}
+	}
+	
+	public void testSharedEachRecordOnceUnderLoad() throws Exception {
+		
+		DataFeeder feeder = new SharedDataFeeder(_records, false);
+		
+		Set seen = drain(feeder, 10);
+		
+		assertEquals(100, seen.size());
+	}
+	
+	public void testPartitionedDisjointPerThread() throws Exception {
+		
+		final DataFeeder feeder = new PartitionedDataFeeder(_records, 4, false);
+		final List[] taken = new List[4];
+		
+		Thread[] threads = new Thread[4];
+		for (int i=0; i < threads.length; i++) {
+			final int index = i;
+			taken[i] = new ArrayList();
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					Object record;
+					while ((record = feeder.next()) != null) {
+						taken[index].add(record);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		
+		Set all = new HashSet();
+		for (int i=0; i < threads.length; i++) {
+			threads[i].join();
+			assertEquals(25, taken[i].size());
+			all.addAll(taken[i]);
+		}
+		
+		assertEquals(100, all.size());
+	}
+	
+	public void testPartitionedCircular() {
+		
+		DataFeeder feeder = new PartitionedDataFeeder(_records, 4, true);
+		
+		for (int i=0; i < 60; i++) {
+			assertEquals(Integer.valueOf(i % 25), feeder.next());
+		}
+	}
+	
+	public void testTooManyPartitions() {
+		try {
+			new PartitionedDataFeeder(new Object[] { "A" }, 2, true);
+			fail("Should throw an IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public void testEmptyData() {
+		try {
+			new SharedDataFeeder(new ArrayList(), true);
+			fail("Should throw an IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	protected Set drain(final DataFeeder feeder, int threadCount) 
+		throws InterruptedException {
+		
+		final Set seen = Collections.synchronizedSet(new HashSet());
+		
+		Thread[] threads = new Thread[threadCount];
+		for (int i=0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					Object record;
+					while ((record = feeder.next()) != null) {
+						assertTrue(seen.add(record));
+					}
+				}
+			});
+			threads[i].start();
+		}
+		
+		for (int i=0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		
+		return seen;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(DataFeederTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,102 @@
+package com.clarkware.junitperf;
+
+import junit.framework.*;
+
+/**
+ * The <code>DistributedLoadTestTest</code> is a <code>TestCase</code>
+ * for the <code>DistributedLoadTest</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class DistributedLoadTestTest extends TestCase {
+
+	public DistributedLoadTestTest(String name) {
+		super(name);
+	}
+	
+	public void testTwoWorkers() {
+		
+		DistributedLoadTest test = 
+			new DistributedLoadTest(MockLoadTestSuite.class, 2);
+		
+		assertEquals(18, test.countTestCases());
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(18, result.runCount());
+		assertEquals(6, result.failureCount());
+		assertEquals(6, result.errorCount());
+		
+		assertEquals(6, test.getStatistics().getIterationCount());
+		assertEquals(6, test.getStatistics().getTestStatistics("testError").getCount());
+		assertEquals(6, test.getStatistics().getTestStatistics("testFailure").getFailureCount());
+		
+		TestFailure error = (TestFailure)result.errors().nextElement();
+		assertTrue(error.thrownException() instanceof RemoteTestException);
+		assertEquals(RuntimeException.class.getName(), 
+			((RemoteTestException)error.thrownException()).getRemoteClassName());
+	}
+	
+	public void testMoreWorkersThanUsers() {
+		
+		DistributedLoadTest test = 
+			new DistributedLoadTest(MockLoadTestSuite.class, 5);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(18, result.runCount());
+	}
+	
+	public void testHeartbeatsKeepWorkersAlive() {
+		
+		DistributedLoadTest test = 
+			new DistributedLoadTest(MockSlowLoadTestSuite.class, 2);
+		test.setReadTimeout(1500);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(6, result.runCount());
+		assertEquals(0, result.errorCount());
+		assertEquals(0, result.failureCount());
+	}
+	
+	public void testWorkerExit() {
+		
+		DistributedLoadTest test = 
+			new DistributedLoadTest(MockExitingLoadTestSuite.class, 2);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(2, result.errorCount());
+		TestFailure error = (TestFailure)result.errors().nextElement();
+		assertTrue(error.failedTest().toString().startsWith("[worker "));
+		assertTrue(error.thrownException().getMessage().indexOf("exit code 3") >= 0);
+	}
+	
+	public void testNotALoadTest() {
+		
+		DistributedLoadTest test = 
+			new DistributedLoadTest(AllTests.class, 2);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(1, result.errorCount());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(DistributedLoadTestTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,99 @@
+package com.clarkware.junitperf;
+
+import java.util.List;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>FailureAggregatorTest</code> is a <code>TestCase</code>
+ * for the <code>FailureAggregator</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class FailureAggregatorTest extends TestCase {
+
+	public FailureAggregatorTest(String name) {
+		super(name);
+	}
+	
+	public void testAggregateBySignature() {
+		
+		FailureAggregator aggregator = new FailureAggregator(2, 10);
+		
+		for (int i=0; i < 5; i++) {
+			boolean retained = aggregator.record(this, newFailure("slow"));
+			assertEquals(i < 2, retained);
+		}
+		assertTrue(aggregator.record(this, newError("broken")));
+		
+		assertEquals(6, aggregator.getCount());
+		assertEquals(3, aggregator.getSuppressedCount());
+		
+		List signatures = aggregator.getSignatures();
+		assertEquals(2, signatures.size());
+		
+		FailureSignature top = (FailureSignature)signatures.get(0);
+		assertEquals(AssertionFailedError.class.getName(), top.getType());
+		assertEquals("slow", top.getMessage());
+		assertTrue(top.isFailure());
+		assertEquals(5, top.getCount());
+		assertEquals(2, top.getSamples().size());
+		assertEquals(3, top.getSuppressedCount());
+		assertTrue(top.getLocation().indexOf("newFailure") > 0);
+		
+		FailureSignature other = (FailureSignature)signatures.get(1);
+		assertFalse(other.isFailure());
+		assertEquals(1, other.getCount());
+	}
+	
+	public void testDifferentMessagesAreDifferentSignatures() {
+		
+		FailureAggregator aggregator = new FailureAggregator(1, 10);
+		
+		assertTrue(aggregator.record(this, newFailure("a")));
+		assertTrue(aggregator.record(this, newFailure("b")));
+		
+		assertEquals(2, aggregator.getSignatures().size());
+	}
+	
+	public void testOverflowSignature() {
+		
+		FailureAggregator aggregator = new FailureAggregator(1, 2);
+		
+		for (int i=0; i < 10; i++) {
+			aggregator.record(this, newError("error " + i));
+		}
+		
+		List signatures = aggregator.getSignatures();
+		assertEquals(3, signatures.size());
+		assertEquals(10, aggregator.getCount());
+		
+		FailureSignature overflow = (FailureSignature)signatures.get(0);
+		assertEquals("(other)", overflow.getType());
+		assertEquals(8, overflow.getCount());
+		assertEquals(0, overflow.getSamples().size());
+	}
+	
+	private static Throwable newFailure(String message) {
+		return new AssertionFailedError(message);
+	}
+	
+	private static Throwable newError(String message) {
+		return new RuntimeException(message);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(FailureAggregatorTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,89 @@
+package com.clarkware.junitperf;
+
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * The <code>ForkedTestTest</code> is a <code>TestCase</code>
+ * for the <code>ForkedTest</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class ForkedTestTest extends TestCase {
+
+	public ForkedTestTest(String name) {
+		super(name);
+	}
+	
+	public void testLoadTestInForkedJvm() {
+		
+		ForkedTest test = new ForkedTest(MockLoadTestSuite.class, 
+			new String[] { "-Xmx64m" });
+		
+		assertEquals(1, test.countTestCases());
+		
+		final List started = Collections.synchronizedList(new ArrayList());
+		
+		TestResult result = new TestResult();
+		result.addListener(new TestListener() {
+			public void startTest(Test test) {
+				started.add(test.toString());
+			}
+			public void endTest(Test test) {
+			}
+			public void addError(Test test, Throwable t) {
+			}
+			public void addFailure(Test test, AssertionFailedError t) {
+			}
+		});
+		
+		test.run(result);
+		
+		assertEquals(18, result.runCount());
+		assertEquals(6, result.failureCount());
+		assertEquals(6, result.errorCount());
+		assertEquals(18, started.size());
+		assertEquals(18, test.countTestCases());
+		assertTrue(started.contains("testSuccess(com.clarkware.junitperf.MockTest)"));
+		
+		TestFailure error = (TestFailure)result.errors().nextElement();
+		assertEquals("testError(com.clarkware.junitperf.MockTest)", 
+			error.failedTest().toString());
+	}
+	
+	public void testHeartbeatsKeepForkedJvmAlive() {
+		
+		ForkedTest test = new ForkedTest(MockQuietTestSuite.class);
+		test.setReadTimeout(1500);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(1, result.runCount());
+		assertEquals(0, result.errorCount());
+		assertEquals(0, result.failureCount());
+	}
+	
+	public void testSuiteError() {
+		
+		ForkedTest test = new ForkedTest(String.class);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(1, result.errorCount());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ForkedTestTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
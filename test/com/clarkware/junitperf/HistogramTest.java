@@ -0,0 +1,130 @@
+package com.clarkware.junitperf;
+
+import junit.framework.*;
+
+/**
+ * The <code>HistogramTest</code> is a <code>TestCase</code>
+ * for the <code>Histogram</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class HistogramTest extends TestCase {
+
+	public HistogramTest(String name) {
+		super(name);
+	}
+	
+	public void testEmpty() {
+		
+		Histogram histogram = new Histogram();
+		
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0.0, histogram.getMean(), 0.0);
+	}
+	
+	public void testPercentiles() {
+		
+		Histogram histogram = new Histogram();
+		for (long i=1; i <= 10000; i++) {
+			histogram.record(i * 1000);
+		}
+		
+		assertEquals(10000, histogram.getCount());
+		assertEquals(1000, histogram.getMin());
+		assertEquals(10000000, histogram.getMax());
+		assertEquals(5000500.0, histogram.getMean(), 0.1);
+		
+		assertWithinPrecision(5000000, histogram.getValueAtPercentile(50));
+		assertWithinPrecision(9900000, histogram.getValueAtPercentile(99));
+		assertEquals(10000000, histogram.getValueAtPercentile(100));
+	}
+	
+	public void testSmallValuesAreExact() {
+		
+		Histogram histogram = new Histogram();
+		for (long i=0; i < 64; i++) {
+			histogram.record(i);
+		}
+		
+		assertEquals(31, histogram.getValueAtPercentile(50));
+		assertEquals(32, histogram.getCountAtOrBelow(31));
+	}
+	
+	public void testBucketBoundaries() {
+		
+		for (int i=0; i < Histogram.getBucketCount() - 1; i++) {
+			assertEquals(i, Histogram.bucketIndex(Histogram.lowestValue(i)));
+			assertEquals(i, Histogram.bucketIndex(Histogram.highestValue(i)));
+		}
+		
+		assertEquals(Histogram.getBucketCount() - 1, 
+			Histogram.bucketIndex(Long.MAX_VALUE));
+	}
+	
+	public void testAddAndSince() {
+		
+		Histogram histogram = new Histogram();
+		histogram.record(100);
+		histogram.record(200);
+		
+		Histogram earlier = histogram.copy();
+		
+		histogram.record(5000);
+		histogram.record(7000);
+		
+		Histogram interval = histogram.since(earlier);
+		assertEquals(2, interval.getCount());
+		assertEquals(12000, interval.getTotal());
+		assertWithinPrecision(5000, interval.getMin());
+		assertWithinPrecision(7000, interval.getMax());
+		
+		Histogram merged = new Histogram();
+		merged.add(earlier);
+		merged.add(interval);
+		assertEquals(4, merged.getCount());
+		assertEquals(100, merged.getMin());
+	}
+	
+	public void testConcurrentRecording() throws Exception {
+		
+		final Histogram histogram = new Histogram();
+		
+		Thread[] threads = new Thread[4];
+		for (int i=0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					for (int j=0; j < 10000; j++) {
+						histogram.record(j);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		
+		for (int i=0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		
+		assertEquals(40000, histogram.getCount());
+		assertEquals(9999, histogram.getMax());
+	}
+	
+	protected void assertWithinPrecision(long expected, long actual) {
+		assertEquals(expected, actual, expected / 50.0);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HistogramTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
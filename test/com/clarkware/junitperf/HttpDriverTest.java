@@ -0,0 +1,196 @@
+package com.clarkware.junitperf;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>HttpDriverTest</code> is a <code>TestCase</code>
+ * for the <code>HttpDriver</code> class, which drives a local
+ * <code>MockHttpServer</code>.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class HttpDriverTest extends TestCase {
+
+	private MockHttpServer _server;
+	private InetSocketAddress _address;
+	private HttpDriver _driver;
+	
+	public HttpDriverTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws IOException {
+		_server = new MockHttpServer();
+		_address = _server.getAddress();
+	}
+	
+	protected void tearDown() throws IOException {
+		if (_driver != null) {
+			_driver.close();
+		}
+		_server.stop();
+	}
+	
+	public void testGet() throws Exception {
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		HttpResponse response = await(_driver.get("/hello"));
+		
+		assertEquals(200, response.getStatus());
+		assertEquals("hello", response.getBodyAsString());
+		assertEquals("5", response.getHeader("Content-Length"));
+		assertEquals("HTTP 200 OK (5 bytes)", response.toString());
+		assertTrue(response.getLatency() > 0);
+	}
+	
+	public void testChunked() throws Exception {
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		HttpResponse response = await(_driver.get("/chunked"));
+		
+		assertEquals(200, response.getStatus());
+		assertEquals("chunked hello", response.getBodyAsString());
+	}
+	
+	public void testBodyUntilClose() throws Exception {
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		assertEquals("until close", await(_driver.get("/eof")).getBodyAsString());
+		assertEquals("hello", await(_driver.get("/hello")).getBodyAsString());
+	}
+	
+	public void testPost() throws Exception {
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		byte[] body = new byte[100000];
+		for (int i=0; i < body.length; i++) {
+			body[i] = (byte)i;
+		}
+		
+		HttpResponse response = await(_driver.post("/echo", "application/octet-stream", body));
+		
+		assertEquals(201, response.getStatus());
+		assertEquals(body.length, response.getBody().length);
+		assertEquals(body[body.length - 1], response.getBody()[body.length - 1]);
+	}
+	
+	public void testKeepAliveAndPipelining() throws Exception {
+		
+		_driver = new HttpDriver(_address, 2, 8, 1);
+		_driver.start();
+		
+		CompletableFuture[] futures = new CompletableFuture[1000];
+		for (int i=0; i < futures.length; i++) {
+			futures[i] = _driver.get("/hello");
+		}
+		for (int i=0; i < futures.length; i++) {
+			assertEquals("hello", await(futures[i]).getBodyAsString());
+		}
+		
+		assertEquals(2, _server.getClients().size());
+		
+		LoadStatistics statistics = _driver.getStatistics();
+		assertEquals(1000, statistics.getIterationCount());
+		assertEquals(1000, statistics.getTestStatistics("GET /hello").getCount());
+	}
+	
+	public void testReconnect() throws Exception {
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		for (int i=0; i < 3; i++) {
+			assertEquals("bye", await(_driver.get("/close")).getBodyAsString());
+		}
+		
+		assertEquals(3, _server.getClients().size());
+	}
+	
+	public void testConnectionRefused() throws Exception {
+		
+		_server.stop();
+		
+		_driver = new HttpDriver(_address, 1);
+		_driver.start();
+		
+		try {
+			await(_driver.get("/hello"));
+			fail("Should have thrown ExecutionException");
+		} catch (ExecutionException success) {
+			assertTrue(success.getCause() instanceof IOException);
+		}
+	}
+	
+	public void testAsyncLoadTest() throws Exception {
+		
+		_driver = new HttpDriver(_address, 4, 4, 2);
+		_driver.start();
+		
+		AsyncLoadTest test = new AsyncLoadTest(new HelloTest(_driver), 64, 2000);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(2000, result.runCount());
+		assertEquals(0, result.failureCount());
+		assertEquals(0, result.errorCount());
+		assertEquals(2000, _driver.getStatistics().getIterationCount());
+		assertTrue(_server.getClients().size() <= 4);
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(2000, statistics.getIterationCount());
+		assertEquals(2000, statistics.getTestStatistics("GET /hello").getCount());
+	}
+	
+	public static class HelloTest extends AsyncTestCase {
+		
+		private final HttpDriver driver;
+		
+		public HelloTest(HttpDriver driver) {
+			super("testHello");
+			this.driver = driver;
+		}
+		
+		public CompletableFuture testHello() {
+			return driver.get("/hello").thenAccept(new Consumer() {
+				public void accept(Object response) {
+					assertEquals(200, ((HttpResponse)response).getStatus());
+				}
+			});
+		}
+	}
+	
+	private static HttpResponse await(CompletableFuture future) throws Exception {
+		return (HttpResponse)future.get(10, TimeUnit.SECONDS);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(HttpDriverTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
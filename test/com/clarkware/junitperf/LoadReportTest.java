@@ -0,0 +1,109 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>LoadReportTest</code> is a <code>TestCase</code>
+ * for the <code>LoadReport</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class LoadReportTest extends TestCase {
+
+	private File _dir;
+	
+	public LoadReportTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws Exception {
+		_dir = File.createTempFile("junitperf", "reports");
+		_dir.delete();
+	}
+	
+	protected void tearDown() {
+		File[] files = _dir.listFiles();
+		for (int i=0; files != null && i < files.length; i++) {
+			files[i].delete();
+		}
+		_dir.delete();
+	}
+	
+	public void testReportsWritten() throws Exception {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(new MockTest("testFailure"));
+		
+		LoadTest test = new LoadTest(suite, 2, 3);
+		test.setThinkTimer(new ConstantTimer(10));
+		test.setInterval(20);
+		test.setReportDirectory(_dir);
+		
+		test.run(new TestResult());
+		
+		File[] files = _dir.listFiles();
+		assertEquals(2, files.length);
+		
+		String json = read(findFile(files, ".json"));
+		assertTrue(json.indexOf("\"users\": 2,") >= 0);
+		assertTrue(json.indexOf("\"iterations\": 3,") >= 0);
+		assertTrue(json.indexOf("\"iterations\": 6,") >= 0);
+		assertTrue(json.indexOf("\"failures\": 6,") >= 0);
+		assertTrue(json.indexOf("\"latency\": {\"count\": 6,") >= 0);
+		assertTrue(json.indexOf("\"gc\": {") >= 0);
+		assertTrue(json.indexOf("{\"name\": \"testFailure\", \"count\": 6, \"errors\": 0, \"failures\": 6,") >= 0);
+		assertTrue(json.indexOf("{\"name\": \"testSuccess\", \"count\": 6,") >= 0);
+		assertTrue(json.indexOf("\"intervals\": [") >= 0);
+		assertTrue(json.trim().endsWith("}"));
+		
+		String html = read(findFile(files, ".html"));
+		assertTrue(html.startsWith("<!DOCTYPE html>"));
+		assertTrue(html.indexOf("<polyline") >= 0);
+		assertTrue(html.indexOf("<rect") >= 0);
+	}
+	
+	public void testQuote() {
+		assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", LoadReport.quote("a\"b\\c\nd\u0001"));
+	}
+	
+	private static File findFile(File[] files, String suffix) {
+		for (int i=0; i < files.length; i++) {
+			if (files[i].getName().endsWith(suffix)) {
+				return files[i];
+			}
+		}
+		fail("No " + suffix + " report");
+		return null;
+	}
+	
+	private static String read(File file) throws Exception {
+		StringBuffer text = new StringBuffer();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			text.append(line).append('\n');
+		}
+		reader.close();
+		return text.toString();
+	}
+	
+	public static Test suite() {
+		return new TestSuite(LoadReportTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
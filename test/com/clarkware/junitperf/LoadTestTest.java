@@ -1,5 +1,9 @@
 package com.clarkware.junitperf;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import junit.framework.*;
 import junit.extensions.RepeatedTest;
 
@@ -117,6 +121,348 @@ public class LoadTestTest extends TestCase {
 		assertEquals(0, result.failureCount());
 	}
 	
+	public void testMillisecondDelaysUseSleep() {
+		
+		final List sleeps = Collections.synchronizedList(new ArrayList());
+		
+		LoadTest test = new LoadTest(_successSuite, 3, 2, new ConstantTimer(7)) {
+			protected void sleep(long time) {
+				sleeps.add(Long.valueOf(time));
+			}
+		};
+		test.setThinkTimer(new ConstantTimer(5));
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(12, result.runCount());
+		assertEquals(3, Collections.frequency(sleeps, Long.valueOf(7)));
+		assertEquals(3, Collections.frequency(sleeps, Long.valueOf(5)));
+	}
+	
+	public void testMultiUserWithThinkTime() {
+		
+		LoadTest test = new LoadTest(_successSuite, 2, 3);
+		test.setThinkTimer(new ConstantTimer(100));
+		
+		assertEquals(12, test.countTestCases());
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(12, result.runCount());
+		assertEquals(0, result.errorCount());
+		assertEquals(0, result.failureCount());
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(6, statistics.getIterationCount());
+		assertEquals(4, statistics.getThinkTime().getCount());
+		assertTrue(statistics.getThinkTime().getMin() >= 90 * 1000000L);
+		assertTrue(statistics.getLatency().getMax() < 90 * 1000000L);
+		assertEquals(4, statistics.getDelayError().getCount());
+	}
+	
+	public void testMultiUserWithPacing() {
+		
+		LoadTest test = new LoadTest(_successSuite, 2, 5);
+		test.setPacing(20);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertEquals(20, result.runCount());
+		assertEquals(0, result.failureCount());
+		assertTrue("Elapsed: " + elapsed, elapsed >= 195);
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(10, statistics.getIterationCount());
+		assertEquals(10, statistics.getScheduleLag().getCount());
+		assertEquals(0, statistics.getSkippedIterations());
+		assertEquals(8, statistics.getDelayError().getCount());
+	}
+	
+	public void testSimultaneousStart() {
+		
+		LoadTest test = new LoadTest(_successSuite, 20, 2, new ConstantTimer(100));
+		test.setSimultaneousStart(true);
+		
+		assertEquals(-1, test.getReleaseSpread());
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertEquals(80, result.runCount());
+		assertEquals(0, result.failureCount());
+		assertTrue("Elapsed: " + elapsed, elapsed < 1000);
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(40, statistics.getIterationCount());
+		assertEquals(20, statistics.getReleaseLag().getCount());
+		assertEquals(0, statistics.getScheduleLag().getCount());
+		assertTrue(test.getReleaseSpread() >= 0);
+		assertTrue("Spread: " + test.getReleaseSpread(), 
+			test.getReleaseSpread() < 50 * 1000000L);
+	}
+	
+	public void testSimultaneousStartStopped() {
+		
+		LoadTest test = new LoadTest(_successSuite, 5, 2);
+		test.setSimultaneousStart(true);
+		test.stop();
+		
+		TestResult result = new TestResult();
+		result.stop();
+		test.run(result);
+		
+		assertEquals(0, result.runCount());
+		assertEquals(0, test.getReleaseSpread());
+	}
+	
+	public void testIntervalListener() {
+		
+		LoadTest test = new LoadTest(_successSuite, 2, 3);
+		test.setThinkTimer(new ConstantTimer(50));
+		test.setInterval(40);
+		
+		final java.util.List snapshots = new java.util.Vector();
+		test.addIntervalListener(new IntervalListener() {
+			public void intervalEnded(IntervalSnapshot snapshot) {
+				snapshots.add(snapshot);
+			}
+		});
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertTrue(snapshots.size() > 1);
+		
+		long iterations = 0;
+		for (int i=0; i < snapshots.size(); i++) {
+			IntervalSnapshot snapshot = (IntervalSnapshot)snapshots.get(i);
+			iterations += snapshot.getIntervalIterations();
+			assertEquals(snapshot.getIterations(), iterations);
+			assertEquals(i == snapshots.size() - 1, snapshot.isLast());
+		}
+		
+		IntervalSnapshot last = (IntervalSnapshot)snapshots.get(snapshots.size() - 1);
+		assertEquals(6, last.getIterations());
+		assertEquals(0, last.getErrors());
+		assertEquals(0, last.getActiveUsers());
+	}
+	
+	public void testStatisticsCountErrors() {
+		
+		LoadTest test = new LoadTest(_failureSuite, 2);
+		test.addIntervalListener(new ConsoleReporter(new java.io.PrintStream(
+			new java.io.ByteArrayOutputStream())));
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(2, result.failureCount());
+		assertEquals(2, test.getStatistics().getFailureCount());
+		assertEquals(0, test.getStatistics().getErrorCount());
+		assertEquals(0, result.errorCount());
+	}
+	
+	public void testPerTestStatistics() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(new MockTest("testFailure"));
+		suite.addTest(new MockTest("testError"));
+		
+		LoadTest test = new LoadTest(suite, 2, 3);
+		test.run(new TestResult());
+		
+		LoadStatistics statistics = test.getStatistics();
+		assertEquals(3, statistics.getTestStatistics().size());
+		
+		TestStatistics success = statistics.getTestStatistics("testSuccess");
+		assertEquals(6, success.getCount());
+		assertEquals(0, success.getErrorCount());
+		assertEquals(0, success.getFailureCount());
+		
+		TestStatistics failure = statistics.getTestStatistics("testFailure");
+		assertEquals(6, failure.getCount());
+		assertEquals(6, failure.getFailureCount());
+		
+		TestStatistics error = statistics.getTestStatistics("testError");
+		assertEquals(6, error.getCount());
+		assertEquals(6, error.getErrorCount());
+	}
+	
+	public void testBufferedResult() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(new MockTest("testFailure"));
+		
+		LoadTest test = new LoadTest(suite, 3, 2);
+		test.setResultBatchSize(256);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(12, result.runCount());
+		assertEquals(6, result.failureCount());
+		assertEquals(6, test.getStatistics().getFailureCount());
+		assertEquals(6, test.getStatistics().getTestStatistics("testSuccess").getCount());
+	}
+	
+	public void testStopNoticedImmediatelyByDefault() {
+		
+		LoadTest test = new LoadTest(new MockTest("testSuccess"), 1, 1000);
+		
+		TestResult result = new TestResult();
+		result.addListener(new StoppingListener(result));
+		test.run(result);
+		
+		assertEquals(1, result.runCount());
+	}
+	
+	public void testStopNoticedAtNextBatch() {
+		
+		LoadTest test = new LoadTest(new MockTest("testSuccess"), 1, 1000);
+		test.setResultBatchSize(20);
+		
+		TestResult result = new TestResult();
+		result.addListener(new StoppingListener(result));
+		test.run(result);
+		
+		assertEquals(10, result.runCount());
+	}
+	
+	public void testFailuresReportedByDefault() {
+		
+		LoadTest test = new LoadTest(_failureSuite, 5, 20);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(100, result.runCount());
+		assertEquals(100, result.failureCount());
+		
+		FailureAggregator aggregator = test.getStatistics().getFailureAggregator();
+		assertEquals(100, aggregator.getCount());
+		assertEquals(1, aggregator.getSignatures().size());
+	}
+	
+	public void testFailureSampling() {
+		
+		LoadTest test = new LoadTest(_failureSuite, 5, 20);
+		test.setResultBatchSize(256);
+		test.setFailureSampleSize(3);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(100, result.runCount());
+		assertEquals(3, result.failureCount());
+		assertEquals(100, test.getStatistics().getFailureCount());
+		
+		FailureAggregator aggregator = test.getStatistics().getFailureAggregator();
+		assertEquals(100, aggregator.getCount());
+		assertEquals(97, aggregator.getSuppressedCount());
+		assertEquals(1, aggregator.getSignatures().size());
+	}
+	
+	public void testFailureSamplingWithoutBatching() {
+		
+		LoadTest test = new LoadTest(_failureSuite, 5, 20);
+		test.setFailureSampleSize(3);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(100, result.runCount());
+		assertEquals(3, result.failureCount());
+		assertEquals(100, test.getStatistics().getFailureCount());
+		assertEquals(97, test.getStatistics().getFailureAggregator().getSuppressedCount());
+	}
+	
+	public void testSlaLatencyAbort() {
+		
+		LoadTest test = new LoadTest(new MockTest("testOneSecondExecutionTime"), 2, 10);
+		SlaPolicy sla = new SlaPolicy(200);
+		sla.setMaxLatency(99, 100);
+		test.setSlaPolicy(sla);
+		test.setInterval(50);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertTrue(test.isStopped());
+		assertTrue(test.getAbortReason(), test.getAbortReason().startsWith("p99 latency"));
+		assertTrue("Elapsed: " + elapsed, elapsed < 3000);
+		assertEquals(1, result.failureCount());
+		String message = ((TestFailure)result.failures().nextElement()).exceptionMessage();
+		assertTrue(message, message.startsWith("Load test aborted: p99 latency"));
+	}
+	
+	public void testSlaErrorRateAbort() {
+		
+		LoadTest test = new LoadTest(_failureSuite, 2, 1000);
+		test.setThinkTimer(new ConstantTimer(10));
+		test.setResultBatchSize(256);
+		test.setFailureSampleSize(0);
+		SlaPolicy sla = new SlaPolicy(100);
+		sla.setMaxErrorRate(0.5);
+		sla.setMinThroughput(1);
+		test.setSlaPolicy(sla);
+		test.setInterval(20);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertTrue(test.getAbortReason(), test.getAbortReason().startsWith("error rate 1.0 > 0.5"));
+		assertTrue(test.getStatistics().getIterationCount() < 2000);
+		assertEquals(1, result.failureCount());
+	}
+	
+	public void testStopThroughMBean() throws Exception {
+		
+		final LoadTest test = new LoadTest(_successSuite, 2, 1000);
+		test.setThinkTimer(new ConstantTimer(10));
+		
+		final javax.management.MBeanServer server = 
+			java.lang.management.ManagementFactory.getPlatformMBeanServer();
+		final javax.management.ObjectName pattern = 
+			new javax.management.ObjectName("com.clarkware.junitperf:type=LoadTest,*");
+		
+		Thread operator = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+					java.util.Iterator names = server.queryNames(pattern, null).iterator();
+					while (names.hasNext()) {
+						javax.management.ObjectName name = 
+							(javax.management.ObjectName)names.next();
+						if (((Integer)server.getAttribute(name, "ActiveUsers")).intValue() > 0) {
+							server.invoke(name, "stop", null, null);
+						}
+					}
+				} catch (Exception ignored) { }
+			}
+		};
+		operator.start();
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		operator.join();
+		
+		assertTrue(test.isStopped());
+		assertTrue(test.getStatistics().getIterationCount() < 2000);
+		assertEquals(0, result.errorCount());
+		assertEquals(0, server.queryNames(pattern, null).size());
+	}
+	
 	public void testMultiUserWithDelay() {
 		
 		Test test = new LoadTest(_successSuite, 3, new ConstantTimer(0));
@@ -308,4 +654,26 @@ public class LoadTestTest extends TestCase {
 	public static void main(String args[]) {
 		junit.textui.TestRunner.run(suite());
 	}
+	
+	private static final class StoppingListener implements TestListener {
+		
+		private final TestResult result;
+		
+		StoppingListener(TestResult result) {
+			this.result = result;
+		}
+		
+		public void startTest(Test test) {
+		}
+		
+		public void endTest(Test test) {
+			result.stop();
+		}
+		
+		public void addError(Test test, Throwable t) {
+		}
+		
+		public void addFailure(Test test, AssertionFailedError e) {
+		}
+	}
 }
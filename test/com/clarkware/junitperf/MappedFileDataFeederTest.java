@@ -0,0 +1,125 @@
+package com.clarkware.junitperf;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * The <code>MappedFileDataFeederTest</code> is a <code>TestCase</code>
+ * for the <code>MappedFileDataFeeder</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class MappedFileDataFeederTest extends TestCase {
+
+	private File _file;
+	
+	public MappedFileDataFeederTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws IOException {
+		_file = File.createTempFile("junitperf", ".csv");
+		Writer writer = new FileWriter(_file);
+		writer.write("id,name\r\n");
+		for (int i=0; i < 100; i++) {
+			writer.write(i + ",user" + i + "\n");
+			if (i == 50) {
+				writer.write("\n");
+			}
+		}
+		writer.write("100,last");
+		writer.close();
+	}
+	
+	protected void tearDown() {
+		_file.delete();
+	}
+	
+	public void testSharedWithHeader() throws IOException {
+		
+		DataFeeder feeder = new MappedFileDataFeeder(_file, true, false);
+		
+		for (int i=0; i <= 100; i++) {
+			ByteBuffer record = (ByteBuffer)feeder.next();
+			ByteBuffer[] fields = MappedFileDataFeeder.split(record, ',');
+			assertEquals(2, fields.length);
+			assertEquals(String.valueOf(i), MappedFileDataFeeder.toString(fields[0]));
+		}
+		
+		assertNull(feeder.next());
+	}
+	
+	public void testSharedWithoutHeader() throws IOException {
+		
+		DataFeeder feeder = new MappedFileDataFeeder(_file, false, false);
+		
+		assertEquals("id,name", MappedFileDataFeeder.toString((ByteBuffer)feeder.next()));
+		assertEquals("0,user0", MappedFileDataFeeder.toString((ByteBuffer)feeder.next()));
+	}
+	
+	public void testCircular() throws IOException {
+		
+		DataFeeder feeder = new MappedFileDataFeeder(_file, true, true);
+		
+		for (int i=0; i < 250; i++) {
+			ByteBuffer record = (ByteBuffer)feeder.next();
+			String id = MappedFileDataFeeder.toString(
+				MappedFileDataFeeder.split(record, ',')[0]);
+			assertEquals(String.valueOf(i % 101), id);
+		}
+	}
+	
+	public void testPartitionedAcrossRegions() throws Exception {
+		
+		final DataFeeder feeder = 
+			new MappedFileDataFeeder(_file, 4, true, false, 64);
+		
+		final List[] taken = new List[4];
+		Thread[] threads = new Thread[4];
+		for (int i=0; i < threads.length; i++) {
+			final int index = i;
+			taken[i] = new ArrayList();
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					ByteBuffer record;
+					while ((record = (ByteBuffer)feeder.next()) != null) {
+						taken[index].add(MappedFileDataFeeder.toString(record));
+					}
+				}
+			});
+			threads[i].start();
+		}
+		
+		Set all = new HashSet();
+		for (int i=0; i < threads.length; i++) {
+			threads[i].join();
+			assertTrue(taken[i].size() > 0);
+			all.addAll(taken[i]);
+		}
+		
+		assertEquals(101, all.size());
+		assertTrue(all.contains("100,last"));
+	}
+	
+	public void testRecordsAreReadOnly() throws IOException {
+		
+		DataFeeder feeder = new MappedFileDataFeeder(_file, true, false);
+		
+		assertTrue(((ByteBuffer)feeder.next()).isReadOnly());
+	}
+	
+	public static Test suite() {
+		return new TestSuite(MappedFileDataFeederTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
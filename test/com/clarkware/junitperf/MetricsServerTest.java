@@ -0,0 +1,148 @@
+package com.clarkware.junitperf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Collections;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>MetricsServerTest</code> is a <code>TestCase</code>
+ * for the <code>MetricsServer</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class MetricsServerTest extends TestCase {
+
+	public MetricsServerTest(String name) {
+		super(name);
+	}
+	
+	public void testRender() {
+		
+		LoadTest test = new LoadTest(new MockTest("testSuccess"), 1);
+		LoadStatistics statistics = new LoadStatistics();
+		statistics.recordIteration(2 * 1000000L);
+		statistics.recordIteration(20 * 1000000L);
+		statistics.addError(test, new RuntimeException());
+		LoadTestMonitor monitor = new LoadTestMonitor(test, statistics);
+		
+		String text = MetricsServer.render(Collections.singletonList(monitor));
+		String labels = "{test=\"" + test.toString().replace("\"", "\\\"") +
+			"\",run=\"" + monitor.getId() + "\"";
+		
+		assertTrue(text.indexOf("# TYPE junitperf_iterations_total counter\n") >= 0);
+		assertTrue(text.indexOf("junitperf_iterations_total" + labels + "} 2\n") >= 0);
+		assertTrue(text.indexOf("junitperf_errors_total" + labels + "} 1\n") >= 0);
+		assertTrue(text.indexOf("junitperf_users" + labels + "} 1\n") >= 0);
+		assertTrue(text.indexOf("# TYPE junitperf_latency_seconds histogram\n") >= 0);
+		assertTrue(text.indexOf("junitperf_latency_seconds_bucket" + labels + ",le=\"0.001\"} 0\n") >= 0);
+		assertTrue(text.indexOf("junitperf_latency_seconds_bucket" + labels + ",le=\"0.005\"} 1\n") >= 0);
+		assertTrue(text.indexOf("junitperf_latency_seconds_bucket" + labels + ",le=\"0.025\"} 2\n") >= 0);
+		assertTrue(text.indexOf("junitperf_latency_seconds_bucket" + labels + ",le=\"+Inf\"} 2\n") >= 0);
+		assertTrue(text.indexOf("junitperf_latency_seconds_count" + labels + "} 2\n") >= 0);
+	}
+	
+	public void testLoopbackByDefault() throws Exception {
+		
+		MetricsServer server = new MetricsServer(0);
+		server.start();
+		
+		try {
+			assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+			assertTrue(server.getPort() > 0);
+		} finally {
+			server.stop();
+		}
+	}
+	
+	public void testMalformedPortReportedOnce() {
+		
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream previous = System.err;
+		System.setProperty("junitperf.metrics.port", "none");
+		System.setErr(new PrintStream(err, true));
+		
+		try {
+			MetricsServer.startConfigured();
+			MetricsServer.startConfigured();
+		} finally {
+			System.setErr(previous);
+			System.clearProperty("junitperf.metrics.port");
+		}
+		
+		String output = err.toString();
+		int first = output.indexOf("Metrics server not started");
+		assertTrue(output, first >= 0);
+		assertEquals(output, -1, output.indexOf("Metrics server not started", first + 1));
+	}
+	
+	public void testScrapeRunningLoadTest() throws Exception {
+		
+		MetricsServer server = new MetricsServer(
+			new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+		server.start();
+		
+		try {
+			
+			final LoadTest test = new LoadTest(new MockTest("testSuccess"), 2, 20);
+			test.setThinkTimer(new ConstantTimer(20));
+			
+			Thread runner = new Thread() {
+				public void run() {
+					test.run(new TestResult());
+				}
+			};
+			runner.start();
+			while (MonitorRegistry.getLoadTestMonitors().isEmpty() && runner.isAlive()) {
+				Thread.sleep(10);
+			}
+			
+			URL url = new URL("http://127.0.0.1:" + server.getPort() + "/metrics");
+			HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+			
+			assertEquals(200, connection.getResponseCode());
+			assertEquals(MetricsServer.CONTENT_TYPE, connection.getContentType());
+			String text = read(connection.getInputStream());
+			
+			runner.join();
+			
+			assertTrue(text.indexOf("junitperf_iterations_total{test=\"LoadTest") >= 0);
+			assertTrue(text.indexOf("junitperf_active_users{") >= 0);
+			
+		} finally {
+			server.stop();
+		}
+	}
+	
+	private static String read(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+	
+	public static Test suite() {
+		return new TestSuite(MetricsServerTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
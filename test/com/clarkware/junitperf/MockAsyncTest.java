@@ -0,0 +1,81 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import junit.framework.AssertionFailedError;
+
+public class MockAsyncTest extends AsyncTestCase {
+
+	private static final ScheduledExecutorService scheduler = 
+		Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MockAsyncTest scheduler");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	
+	static final AtomicInteger inFlight = new AtomicInteger();
+	static final AtomicInteger maxInFlight = new AtomicInteger();
+	
+	public MockAsyncTest(String name) {
+		super(name);
+	}
+	
+	public CompletableFuture testDelayed() {
+		
+		int current = inFlight.incrementAndGet();
+		int max;
+		while (current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current)) {
+		}
+		
+		final CompletableFuture future = new CompletableFuture();
+		scheduler.schedule(new Runnable() {
+			public void run() {
+				inFlight.decrementAndGet();
+				future.complete(null);
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		return future;
+	}
+	
+	public void testCallback(final CompletableFuture done) {
+		scheduler.schedule(new Runnable() {
+			public void run() {
+				done.complete(null);
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+	}
+	
+	public CompletableFuture testFailure() {
+		CompletableFuture future = new CompletableFuture();
+		future.completeExceptionally(new AssertionFailedError("async failure"));
+		return future;
+	}
+	
+	public CompletableFuture testError() {
+		return CompletableFuture.supplyAsync(new Supplier() {
+			public Object get() {
+				throw new IllegalStateException("async error");
+			}
+		});
+	}
+	
+	public CompletableFuture testNeverCompletes() {
+		return new CompletableFuture();
+	}
+	
+	public void testSynchronous() {
+	}
+	
+	static void reset() {
+		inFlight.set(0);
+		maxInFlight.set(0);
+	}
+}
@@ -0,0 +1,21 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+
+public class MockExitingLoadTestSuite {
+	
+	public static Test suite() {
+		
+		Test exit = new Test() {
+			public int countTestCases() {
+				return 1;
+			}
+			public void run(TestResult result) {
+				System.exit(3);
+			}
+		};
+		
+		return new LoadTest(exit, 2, 1);
+	}
+}
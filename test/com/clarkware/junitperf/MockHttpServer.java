@@ -0,0 +1,147 @@
+package com.clarkware.junitperf;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+public class MockHttpServer implements Runnable {
+
+	private final ServerSocket serverSocket;
+	private final Set clients;
+	private final Set sockets;
+	
+	public MockHttpServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		clients = Collections.synchronizedSet(new HashSet());
+		sockets = Collections.synchronizedSet(new HashSet());
+		Thread thread = new Thread(this, "MockHttpServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public InetSocketAddress getAddress() {
+		return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+	}
+	
+	public Set getClients() {
+		return clients;
+	}
+	
+	public void stop() throws IOException {
+		serverSocket.close();
+		synchronized (sockets) {
+			for (Iterator i = sockets.iterator(); i.hasNext(); ) {
+				((Socket)i.next()).close();
+			}
+		}
+	}
+	
+	public void run() {
+		try {
+			while (true) {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				sockets.add(socket);
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						serve(socket);
+					}
+				}, "MockHttpServer connection");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch (IOException closed) {
+		}
+	}
+	
+	private void serve(Socket socket) {
+		try {
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+			SocketAddress client = socket.getRemoteSocketAddress();
+			
+			String requestLine;
+			while ((requestLine = readLine(in)) != null) {
+				
+				int length = 0;
+				String header;
+				while ((header = readLine(in)) != null && header.length() > 0) {
+					if (header.toLowerCase().startsWith("content-length:")) {
+						length = Integer.parseInt(header.substring(15).trim());
+					}
+				}
+				
+				byte[] body = new byte[length];
+				for (int read = 0; read < length; ) {
+					int count = in.read(body, read, length - read);
+					if (count < 0) {
+						return;
+					}
+					read += count;
+				}
+				
+				String path = requestLine.split(" ")[1];
+				if (path.equals("/hello")) {
+					clients.add(client);
+					respond(out, "200 OK", "Content-Length: 5\r\n", "hello");
+				} else if (path.equals("/chunked")) {
+					respond(out, "200 OK", "Transfer-Encoding: chunked\r\n",
+						"7;ext=1\r\nchunked\r\n6\r\n hello\r\n0\r\nX-Trailer: 1\r\n\r\n");
+				} else if (path.equals("/echo")) {
+					ByteArrayOutputStream response = new ByteArrayOutputStream();
+					response.write(("HTTP/1.1 201 Created\r\nContent-Length: " + 
+						length + "\r\n\r\n").getBytes("ISO-8859-1"));
+					response.write(body);
+					out.write(response.toByteArray());
+				} else if (path.equals("/close")) {
+					clients.add(client);
+					respond(out, "200 OK", "Connection: close\r\nContent-Length: 3\r\n", "bye");
+					break;
+				} else if (path.equals("/eof")) {
+					respond(out, "200 OK", "", "until close");
+					break;
+				} else {
+					respond(out, "404 Not Found", "Content-Length: 0\r\n", "");
+				}
+			}
+		} catch (IOException ignored) {
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+	
+	private static void respond(OutputStream out, String status, String headers, 
+		String body) throws IOException {
+		out.write(("HTTP/1.1 " + status + "\r\n" + headers + "\r\n" + body).getBytes("ISO-8859-1"));
+	}
+	
+	private static String readLine(InputStream in) throws IOException {
+		StringBuffer line = new StringBuffer();
+		int c;
+		while ((c = in.read()) >= 0) {
+			if (c == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			line.append((char)c);
+		}
+		return (line.length() > 0) ? line.toString() : null;
+	}
+}
@@ -0,0 +1,28 @@
+package com.clarkware.junitperf;
+
+import junit.framework.TestCase;
+
+public class MockInstanceCountingTest extends TestCase {
+	
+	public static int instances = 0;
+		
+	public MockInstanceCountingTest(String name) {
+		super(name);
+		instances++;
+	}
+
+	public void testOne() {
+	}
+
+	public void testTwo() {
+	}
+
+	public void testThree() {
+	}
+	
+	protected void testNotPublic() {
+	}
+	
+	public void notATest() {
+	}
+}
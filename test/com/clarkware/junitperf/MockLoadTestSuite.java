@@ -0,0 +1,17 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class MockLoadTestSuite {
+	
+	public static Test suite() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(new MockTest("testFailure"));
+		suite.addTest(new MockTest("testError"));
+		
+		return new LoadTest(suite, 3, 2);
+	}
+}
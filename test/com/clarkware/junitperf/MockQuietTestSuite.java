@@ -0,0 +1,15 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+
+public class MockQuietTestSuite {
+	
+	public static Test suite() {
+		return new TestCase("testThreeSecondExecutionTime") {
+			protected void runTest() throws Exception {
+				Thread.sleep(3000);
+			}
+		};
+	}
+}
@@ -0,0 +1,27 @@
+package com.clarkware.junitperf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class MockRendezvousTest extends TestCase {
+
+	static final AtomicInteger released = new AtomicInteger();
+	static final AtomicInteger notReleased = new AtomicInteger();
+	
+	public MockRendezvousTest(String name) {
+		super(name);
+	}
+	
+	public void testCheckout() {
+		if (Rendezvous.await("checkout")) {
+			released.incrementAndGet();
+		} else {
+			notReleased.incrementAndGet();
+		}
+	}
+	
+	public void testUnknownRendezvous() {
+		Rendezvous.await("unknown");
+	}
+}
@@ -0,0 +1,10 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+
+public class MockSlowLoadTestSuite {
+	
+	public static Test suite() {
+		return new LoadTest(new MockTest("testOneSecondExecutionTime"), 2, 3);
+	}
+}
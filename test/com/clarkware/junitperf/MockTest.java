@@ -1,8 +1,12 @@
 package com.clarkware.junitperf;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import junit.framework.TestCase;
 
 public class MockTest extends TestCase {
+	
+	private static final ReentrantLock sharedResource = new ReentrantLock(true);
 		
 	public MockTest(String name) {
 		super(name);
@@ -94,4 +98,17 @@ public class MockTest extends TestCase {
 
 		assertTrue(true);
 	}
+
+	public void testSharedResource() throws Exception {
+		sharedResource.lock();
+		try {
+			Thread.sleep(10);
+		} finally {
+			sharedResource.unlock();
+		}
+	}
+
+	public void testPrivateResource() throws Exception {
+		Thread.sleep(10);
+	}
 }
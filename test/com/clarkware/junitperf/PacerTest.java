@@ -0,0 +1,145 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>PacerTest</code> is a <code>TestCase</code>
+ * for the <code>Pacer</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class PacerTest extends TestCase {
+
+	public PacerTest(String name) {
+		super(name);
+	}
+	
+	public void testRate() {
+		
+		Pacer pacer = new Pacer(100, Pacer.CATCH_UP);
+		assertEquals(10000000L, pacer.getPeriod());
+		
+		long begin = System.nanoTime();
+		for (int i=0; i < 11; i++) {
+			pacer.await();
+		}
+		long elapsed = System.nanoTime() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed >= 99000000L);
+		assertTrue("Elapsed: " + elapsed, elapsed < 200000000L);
+	}
+	
+	public void testCatchUp() throws Exception {
+		
+		Pacer pacer = new Pacer(100, Pacer.CATCH_UP);
+		
+		assertEquals(0, pacer.await());
+		Thread.sleep(55);
+		
+		long lag = pacer.await();
+		assertTrue("Lag: " + lag, lag >= 45000000L);
+		
+		long begin = System.nanoTime();
+		for (int i=0; i < 4; i++) {
+			pacer.await();
+		}
+		long elapsed = System.nanoTime() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed < 5000000L);
+		assertEquals(0, pacer.getSkipped());
+	}
+	
+	public void testCatchUpBurst() throws Exception {
+		
+		Pacer pacer = new Pacer(100, Pacer.CATCH_UP, 2);
+		
+		pacer.await();
+		Thread.sleep(55);
+		
+		long lag = pacer.await();
+		assertEquals(20000000L, lag);
+	}
+	
+	public void testSkip() throws Exception {
+		
+		RecordingSleeper sleeper = new RecordingSleeper();
+		Pacer pacer = new Pacer(100, Pacer.SKIP, Integer.MAX_VALUE, sleeper);
+		
+		long before = System.nanoTime();
+		pacer.await();
+		long after = System.nanoTime();
+		Thread.sleep(55);
+		
+		long lag = pacer.await();
+		long skipped = pacer.getSkipped();
+		
+		//
+		// The next await sleeps until the following slot, unless
+		// it arrives too late again and skips further slots.
+		//
+		int calls = 2;
+		while (sleeper.wakeUpTime == 0 && calls < 100) {
+			pacer.await();
+			calls++;
+		}
+		
+		assertTrue("Lag: " + lag, lag < 10000000L);
+		assertTrue("Skipped: " + skipped, skipped >= 4);
+		
+		long slots = (calls - 1) + pacer.getSkipped();
+		assertTrue(sleeper.wakeUpTime >= before + slots * 10000000L);
+		assertTrue(sleeper.wakeUpTime <= after + slots * 10000000L);
+	}
+	
+	public void testSleepError() {
+		
+		PreciseSleeper sleeper = new PreciseSleeper(0) {
+			public long sleepUntil(long time) {
+				return 3000000L;
+			}
+		};
+		Pacer pacer = new Pacer(100, Pacer.CATCH_UP, Integer.MAX_VALUE, sleeper);
+		
+		pacer.await();
+		assertTrue(pacer.getSleepError() < 0);
+		
+		assertEquals(3000000L, pacer.await());
+		assertEquals(3000000L, pacer.getSleepError());
+	}
+	
+	public void testInvalidRate() {
+		try {
+			new Pacer(0, Pacer.SKIP);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(PacerTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+	
+	private static final class RecordingSleeper extends PreciseSleeper {
+		
+		long wakeUpTime;
+		
+		RecordingSleeper() {
+			super(0);
+		}
+		
+		public long sleepUntil(long time) {
+			wakeUpTime = time;
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>PreciseSleeperTest</code> is a <code>TestCase</code>
+ * for the <code>PreciseSleeper</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class PreciseSleeperTest extends TestCase {
+
+	public PreciseSleeperTest(String name) {
+		super(name);
+	}
+	
+	public void testSubMillisecondSleep() {
+		
+		PreciseSleeper sleeper = new PreciseSleeper(PreciseSleeper.DEFAULT_SPIN);
+		
+		long begin = System.nanoTime();
+		long error = sleeper.sleep(250000);
+		long elapsed = System.nanoTime() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed >= 250000);
+		assertTrue("Error: " + error, error >= 0 && error <= elapsed - 250000);
+	}
+	
+	public void testSleepUntil() {
+		
+		PreciseSleeper sleeper = new PreciseSleeper(0);
+		
+		long time = System.nanoTime() + 5000000;
+		long error = sleeper.sleepUntil(time);
+		
+		assertTrue(System.nanoTime() - time >= 0);
+		assertTrue("Error: " + error, error >= 0);
+	}
+	
+	public void testSleepInPast() {
+		
+		PreciseSleeper sleeper = PreciseSleeper.getDefault();
+		
+		assertEquals(0, sleeper.sleep(0));
+		assertTrue(sleeper.sleepUntil(System.nanoTime() - 1000000) >= 1000000);
+	}
+	
+	public void testInterrupted() {
+		
+		PreciseSleeper sleeper = PreciseSleeper.getDefault();
+		
+		Thread.currentThread().interrupt();
+		try {
+			long begin = System.nanoTime();
+			long error = sleeper.sleep(1000000000L);
+			
+			assertTrue(error < 0);
+			assertTrue(System.nanoTime() - begin < 500000000L);
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+	
+	public void testInvalidSpin() {
+		try {
+			new PreciseSleeper(-1);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(PreciseSleeperTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,175 @@
+package com.clarkware.junitperf;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>RendezvousTest</code> is a <code>TestCase</code>
+ * for the <code>Rendezvous</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class RendezvousTest extends TestCase {
+
+	public RendezvousTest(String name) {
+		super(name);
+	}
+	
+	public void setUp() {
+		MockRendezvousTest.released.set(0);
+		MockRendezvousTest.notReleased.set(0);
+	}
+	
+	public void testOutsideLoadTest() {
+		assertTrue(Rendezvous.await("checkout"));
+		assertTrue(new Rendezvous("checkout", 1000).await());
+	}
+	
+	public void testAllUsers() {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 5000);
+		LoadTest test = new LoadTest(new MockRendezvousTest("testCheckout"), 4, 3);
+		test.addRendezvous(checkout);
+		assertSame(checkout, test.getRendezvous("checkout"));
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertTrue(result.wasSuccessful());
+		assertEquals(12, MockRendezvousTest.released.get());
+		assertEquals(3, checkout.getReleaseCount());
+		assertEquals(0, checkout.getTimeoutCount());
+		assertTrue("Lag: " + checkout.getMaxLag(), checkout.getMaxLag() < 50000000L);
+	}
+	
+	public void testQuorumPercent() {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 5000);
+		checkout.setQuorumPercent(50);
+		LoadTest test = new LoadTest(new MockRendezvousTest("testCheckout"), 4, 2);
+		test.addRendezvous(checkout);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertTrue(result.wasSuccessful());
+		assertEquals(8, MockRendezvousTest.released.get());
+		assertTrue("Releases: " + checkout.getReleaseCount(), 
+			checkout.getReleaseCount() >= 4);
+		assertEquals(0, checkout.getTimeoutCount());
+	}
+	
+	public void testQuorumReducedAsUsersFinish() {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 5000);
+		checkout.setQuorum(10);
+		LoadTest test = new LoadTest(new MockRendezvousTest("testCheckout"), 3, 2);
+		test.addRendezvous(checkout);
+		
+		long begin = System.nanoTime();
+		test.run(new TestResult());
+		long elapsed = System.nanoTime() - begin;
+		
+		assertEquals(6, MockRendezvousTest.released.get());
+		assertEquals(0, checkout.getTimeoutCount());
+		assertTrue("Elapsed: " + elapsed, elapsed < 2000000000L);
+	}
+	
+	public void testTimeout() {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 100);
+		checkout.start(2, PreciseSleeper.getDefault());
+		
+		long begin = System.nanoTime();
+		assertFalse(checkout.await());
+		long elapsed = System.nanoTime() - begin;
+		
+		assertTrue("Elapsed: " + elapsed, elapsed >= 99000000L);
+		assertEquals(0, checkout.getReleaseCount());
+		assertEquals(1, checkout.getTimeoutCount());
+	}
+	
+	public void testStopReleasesWaitingUsers() throws Exception {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 10000);
+		final LoadTest test = new LoadTest(new MockRendezvousTest("testCheckout"), 
+			3, 1, new ConstantTimer(1000));
+		test.addRendezvous(checkout);
+		
+		Thread stopper = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ignored) { }
+				test.stop();
+			}
+		};
+		stopper.start();
+		
+		long begin = System.nanoTime();
+		test.run(new TestResult());
+		long elapsed = System.nanoTime() - begin;
+		stopper.join();
+		
+		assertEquals(0, MockRendezvousTest.released.get());
+		assertEquals(1, MockRendezvousTest.notReleased.get());
+		assertEquals(0, checkout.getReleaseCount());
+		assertTrue("Elapsed: " + elapsed, elapsed < 5000000000L);
+	}
+	
+	public void testInterrupted() {
+		
+		Rendezvous checkout = new Rendezvous("checkout", 10000);
+		checkout.start(2, PreciseSleeper.getDefault());
+		
+		Thread.currentThread().interrupt();
+		assertFalse(checkout.await());
+		assertTrue(Thread.interrupted());
+		assertEquals(0, checkout.getTimeoutCount());
+	}
+	
+	public void testUnknownRendezvous() {
+		
+		LoadTest test = new LoadTest(new MockRendezvousTest("testUnknownRendezvous"), 2);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(2, result.errorCount());
+	}
+	
+	public void testInvalidArguments() {
+		
+		try {
+			new Rendezvous("checkout", 0);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+		
+		Rendezvous checkout = new Rendezvous("checkout", 1000);
+		try {
+			checkout.setQuorum(0);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+		try {
+			checkout.setQuorumPercent(101);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(RendezvousTest.class);
+	}
+	
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
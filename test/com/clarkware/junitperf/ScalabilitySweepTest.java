@@ -0,0 +1,121 @@
+package com.clarkware.junitperf;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>ScalabilitySweepTest</code> is a <code>TestCase</code>
+ * for the <code>ScalabilitySweep</code> and 
+ * <code>ScalabilityModel</code> classes.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class ScalabilitySweepTest extends TestCase {
+
+	public ScalabilitySweepTest(String name) {
+		super(name);
+	}
+	
+	public void testFitModel() {
+		
+		ScalabilityModel expected = new ScalabilityModel(100, 0.05, 0.002);
+		
+		int[] users = { 1, 2, 4, 8, 16, 32 };
+		double[] throughput = new double[users.length];
+		for (int i=0; i < users.length; i++) {
+			throughput[i] = expected.getThroughput(users[i]);
+		}
+		
+		ScalabilityModel model = ScalabilityModel.fit(users, throughput);
+		
+		assertEquals(100, model.getLambda(), 1e-9);
+		assertEquals(0.05, model.getContention(), 1e-6);
+		assertEquals(0.002, model.getCoherency(), 1e-6);
+		assertEquals(Math.sqrt(0.95 / 0.002), model.getPeakUsers(), 1e-3);
+	}
+	
+	public void testFitAmdahl() {
+		
+		int[] users = { 1, 2, 4 };
+		double[] throughput = { 100, 200, 400 };
+		
+		ScalabilityModel model = ScalabilityModel.fit(users, throughput);
+		
+		assertEquals(0, model.getContention(), 1e-9);
+		assertEquals(0, model.getCoherency(), 1e-9);
+		assertTrue(Double.isInfinite(model.getPeakUsers()));
+	}
+	
+	public void testFitWithoutSingleUser() {
+		try {
+			ScalabilityModel.fit(new int[] { 2, 4 }, new double[] { 10, 20 });
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public void testUserLevels() {
+		
+		LoadTest template = new LoadTest(new MockTest("testSuccess"), 1);
+		
+		int[] levels = new ScalabilitySweep(template, 6, 100).getUserLevels();
+		
+		assertEquals(4, levels.length);
+		assertEquals(1, levels[0]);
+		assertEquals(2, levels[1]);
+		assertEquals(4, levels[2]);
+		assertEquals(6, levels[3]);
+	}
+	
+	public void testScalableSweep() {
+		
+		LoadTest template = new LoadTest(new MockTest("testPrivateResource"), 1);
+		ScalabilitySweep sweep = new ScalabilitySweep(template, 4, 300);
+		sweep.setWarmUp(50);
+		sweep.setMinEfficiency(0.5);
+		sweep.setQuiet();
+		
+		TestResult result = new TestResult();
+		sweep.run(result);
+		
+		assertEquals(0, result.failureCount());
+		
+		List levels = sweep.getLevels();
+		assertEquals(3, levels.size());
+		assertEquals(4, ((CapacityStep)levels.get(2)).getUsers());
+		assertTrue("Efficiency: " + sweep.getEfficiency(), sweep.getEfficiency() > 0.5);
+		assertNotNull(sweep.getModel());
+	}
+	
+	public void testContendedSweep() {
+		
+		LoadTest template = new LoadTest(new MockTest("testSharedResource"), 1);
+		ScalabilitySweep sweep = new ScalabilitySweep(template, 4, 300);
+		sweep.setWarmUp(50);
+		sweep.setMinEfficiency(0.5);
+		sweep.setQuiet();
+		
+		TestResult result = new TestResult();
+		sweep.run(result);
+		
+		assertEquals(1, result.failureCount());
+		assertTrue("Efficiency: " + sweep.getEfficiency(), sweep.getEfficiency() < 0.5);
+		assertTrue(sweep.getModel().getContention() > 0.5);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ScalabilitySweepTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,145 @@
+package com.clarkware.junitperf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+
+/**
+ * The <code>ScenarioMixTest</code> is a <code>TestCase</code>
+ * for the <code>ScenarioMix</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class ScenarioMixTest extends TestCase {
+
+	private ScenarioMix _mix;
+	
+	public ScenarioMixTest(String name) {
+		super(name);
+	}
+	
+	public void setUp() {
+		_mix = new ScenarioMix(new RandomSource(42));
+		_mix.addScenario("read", new MockTest("testSuccess"), 70);
+		_mix.addScenario("search", new MockTest("testSuccess"), 25);
+		_mix.addScenario("write", new MockTest("testFailure"), 5);
+	}
+	
+	public void testProbability() {
+		assertEquals(0.70, _mix.getProbability("read"), 1e-9);
+		assertEquals(0.25, _mix.getProbability("search"), 1e-9);
+		assertEquals(0.05, _mix.getProbability("write"), 1e-9);
+		assertEquals(0.0, _mix.getProbability("delete"), 0.0);
+		assertEquals(1, _mix.countTestCases());
+	}
+	
+	public void testChooseByWeight() {
+		
+		TestResult result = new TestResult();
+		for (int i=0; i < 20000; i++) {
+			_mix.run(result);
+		}
+		
+		LoadStatistics stats = _mix.getStatistics();
+		assertEquals(20000, result.runCount());
+		assertEquals(14000, stats.getScenarioStatistics("read").getCount(), 400);
+		assertEquals(5000, stats.getScenarioStatistics("search").getCount(), 400);
+		assertEquals(1000, stats.getScenarioStatistics("write").getCount(), 200);
+		
+		TestStatistics write = stats.getScenarioStatistics("write");
+		assertEquals(write.getCount(), write.getFailureCount());
+		assertEquals(write.getCount(), result.failureCount());
+		assertEquals(0, stats.getScenarioStatistics("read").getFailureCount());
+	}
+	
+	public void testLoadTestStatistics() {
+		
+		LoadTest test = new LoadTest(_mix, 4, 50);
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		LoadStatistics stats = test.getStatistics();
+		assertEquals(200, stats.getIterationCount());
+		assertEquals(3, stats.getScenarioStatistics().size());
+		
+		long runs = 0;
+		long failures = 0;
+		for (int i=0; i < 3; i++) {
+			TestStatistics scenario = (TestStatistics)stats.getScenarioStatistics().get(i);
+			runs += scenario.getCount();
+			failures += scenario.getFailureCount();
+		}
+		assertEquals(200, runs);
+		assertEquals(stats.getFailureCount(), failures);
+		assertEquals(0, _mix.getStatistics().getScenarioStatistics().size());
+	}
+	
+	public void testStatisticsRoundTrip() throws Exception {
+		
+		for (int i=0; i < 100; i++) {
+			_mix.run(new TestResult());
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		_mix.getStatistics().writeTo(new DataOutputStream(bytes));
+		
+		LoadStatistics copy = new LoadStatistics();
+		copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		
+		TestStatistics write = _mix.getStatistics().getScenarioStatistics("write");
+		assertEquals(write.getCount(), copy.getScenarioStatistics("write").getCount());
+		assertEquals(write.getFailureCount(), copy.getScenarioStatistics("write").getFailureCount());
+		assertEquals(100, copy.getScenarioStatistics("read").getCount() + 
+			copy.getScenarioStatistics("search").getCount() + write.getCount());
+	}
+	
+	public void testSingleScenario() {
+		
+		ScenarioMix mix = new ScenarioMix();
+		mix.addScenario("only", new MockTest("testSuccess"), 1);
+		
+		for (int i=0; i < 10; i++) {
+			mix.run(new TestResult());
+		}
+		
+		assertEquals(10, mix.getStatistics().getScenarioStatistics("only").getCount());
+	}
+	
+	public void testEmpty() {
+		
+		ScenarioMix mix = new ScenarioMix();
+		
+		TestResult result = new TestResult();
+		mix.run(result);
+		
+		assertEquals(0, mix.countTestCases());
+		assertEquals(0, result.runCount());
+	}
+	
+	public void testInvalidWeight() {
+		try {
+			_mix.addScenario("none", new MockTest("testSuccess"), 0);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public static Test suite() {
+		return new TestSuite(ScenarioMixTest.class);
+	}
+	
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
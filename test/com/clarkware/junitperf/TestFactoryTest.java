@@ -171,6 +171,40 @@ public class TestFactoryTest extends TestCase {
 	}
 	
 	
+	public void testCountTestCasesMatchesTestSuite() {
+		
+		Class[] classes = { 
+			MockTestFactoryTest.class, 
+			MockTest.class, 
+			MockTestWithState.class,
+			MockInstanceCountingTest.class,
+			TestFactoryTest.class
+		};
+		
+		for (int i=0; i < classes.length; i++) {
+			TestFactory testFactory = new TestFactory(classes[i]);
+			assertEquals(classes[i].getName(),
+				new TestSuite(classes[i]).countTestCases(), 
+				testFactory.countTestCases());
+		}
+	}
+	
+	public void testCountTestCasesDoesNotInstantiateTests() {
+		
+		MockInstanceCountingTest.instances = 0;
+		
+		TestFactory testFactory = new TestFactory(MockInstanceCountingTest.class);
+		
+		assertEquals(4, testFactory.countTestCases());
+		assertEquals("TestFactory: " + MockInstanceCountingTest.class.getName(),
+			testFactory.toString());
+		assertEquals(0, MockInstanceCountingTest.instances);
+		
+		testFactory.getTest();
+		
+		assertEquals(3, MockInstanceCountingTest.instances);
+	}
+	
 	public void testClassNotATestCase() {
 		
 		try {
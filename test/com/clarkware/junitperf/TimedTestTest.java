@@ -367,6 +367,67 @@ public class TimedTestTest extends TestCase {
 		}
 	}
 	
+	public void testFailureNamesSlowestTest() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(_oneSecondTest);
+		
+		TimedTest test = new TimedTest(suite, 500);
+		test.setQuiet();
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(1, result.failureCount());
+		String message = ((TestFailure)result.failures().nextElement()).exceptionMessage();
+		assertTrue(message, message.indexOf("Slowest tests: testOneSecondExecutionTime (") > 0);
+	}
+	
+	public void testFailureNamesSlowestTestOfLoadTest() {
+		
+		TestSuite suite = new TestSuite();
+		suite.addTest(new MockTest("testSuccess"));
+		suite.addTest(_oneSecondTest);
+		
+		LoadTest loadTest = new LoadTest(suite, 2);
+		TimedTest test = new TimedTest(loadTest, 500);
+		test.setQuiet();
+		
+		TestResult result = new TestResult();
+		test.run(result);
+		
+		assertEquals(1, result.failureCount());
+		String message = ((TestFailure)result.failures().nextElement()).exceptionMessage();
+		assertTrue(message, message.indexOf("Slowest tests: testOneSecondExecutionTime (") > 0);
+		assertEquals(2, loadTest.getStatistics().getTestStatistics(
+			"testOneSecondExecutionTime").getCount());
+	}
+	
+	public void testRegisteredOnlyAtTopLevel() {
+		
+		final java.util.List registered = new java.util.Vector();
+		TestCase probe = new TestCase("probe") {
+			protected void runTest() throws Exception {
+				registered.add(Integer.valueOf(
+					java.lang.management.ManagementFactory.getPlatformMBeanServer().queryNames(
+						new javax.management.ObjectName(MonitorRegistry.DOMAIN + ":type=TimedTest,*"), 
+						null).size()));
+			}
+		};
+		
+		TimedTest timedTest = new TimedTest(probe, 1000);
+		timedTest.setQuiet();
+		timedTest.run(new TestResult());
+		
+		new LoadTest(timedTest, 2).run(new TestResult());
+		
+		assertEquals(3, registered.size());
+		assertEquals(Integer.valueOf(1), registered.get(0));
+		assertEquals(Integer.valueOf(0), registered.get(1));
+		assertEquals(Integer.valueOf(0), registered.get(2));
+	}
+	
 	public static Test suite() {
 		return new TestSuite(TimedTestTest.class);
 	}
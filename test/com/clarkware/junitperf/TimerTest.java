@@ -0,0 +1,166 @@
+package com.clarkware.junitperf;
+
+import junit.framework.*;
+
+/**
+ * The <code>TimerTest</code> is a <code>TestCase</code>
+ * for the <code>Timer</code> implementations.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class TimerTest extends TestCase {
+
+	public static final int samples = 20000;
+	
+	public TimerTest(String name) {
+		super(name);
+	}
+	
+	public void testConstant() {
+		assertEquals(100, new ConstantTimer(100).getDelay());
+	}
+	
+	public void testRandom() {
+		
+		Timer timer = new RandomTimer(100, 50, 42);
+		
+		for (int i=0; i < samples; i++) {
+			long delay = timer.getDelay();
+			assertTrue(delay >= 100 && delay <= 150);
+		}
+	}
+	
+	public void testExponentialMean() {
+		assertEquals(100.0, mean(new ExponentialTimer(100, 42)), 5.0);
+	}
+	
+	public void testGaussianMean() {
+		assertEquals(200.0, mean(new GaussianTimer(200, 20, 42)), 2.0);
+	}
+	
+	public void testGaussianTruncatedAtZero() {
+		
+		Timer timer = new GaussianTimer(0, 100, 42);
+		
+		for (int i=0; i < samples; i++) {
+			assertTrue(timer.getDelay() >= 0);
+		}
+	}
+	
+	public void testLogNormalMedian() {
+		
+		Timer timer = new LogNormalTimer(100, 0.5, 42);
+		
+		int below = 0;
+		for (int i=0; i < samples; i++) {
+			if (timer.getDelay() < 100) {
+				below++;
+			}
+		}
+		
+		assertEquals(0.5, (double)below / samples, 0.03);
+	}
+	
+	public void testLogNormalMaximum() {
+		
+		LogNormalTimer timer = new LogNormalTimer(100, 50, 42);
+		
+		for (int i=0; i < samples; i++) {
+			assertTrue(timer.getDelay() <= 10000);
+			assertTrue(timer.getDelayNanos() <= 10000 * 1000000L);
+		}
+		
+		timer = new LogNormalTimer(100, 50, 500, 42);
+		for (int i=0; i < samples; i++) {
+			assertTrue(timer.getDelay() <= 500);
+		}
+		
+		try {
+			new LogNormalTimer(100, 1, 1e300, 42);
+			fail("Should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public void testEmpirical() {
+		
+		Timer timer = new EmpiricalTimer(new long[] { 0, 10, 1000 },
+			new long[] { 75, 25 }, 42);
+		
+		int low = 0;
+		for (int i=0; i < samples; i++) {
+			long delay = timer.getDelay();
+			assertTrue(delay >= 0 && delay < 1000);
+			if (delay < 10) {
+				low++;
+			}
+		}
+		
+		assertEquals(0.75, (double)low / samples, 0.02);
+	}
+	
+	public void testEmpiricalInvalidHistogram() {
+		try {
+			new EmpiricalTimer(new long[] { 0, 10 }, new long[] { 1, 2 });
+			fail("Should throw an IllegalArgumentException");
+		} catch (IllegalArgumentException success) {
+		}
+	}
+	
+	public void testSeededTimersAreReproducible() {
+		
+		Timer timer1 = new ExponentialTimer(100, 7);
+		Timer timer2 = new ExponentialTimer(100, 7);
+		
+		for (int i=0; i < 100; i++) {
+			assertEquals(timer1.getDelay(), timer2.getDelay());
+		}
+	}
+	
+	public void testSubMillisecondDelays() {
+		
+		PreciseTimer timer = new ExponentialTimer(0.2, 42);
+		
+		double total = 0;
+		for (int i=0; i < samples; i++) {
+			total += timer.getDelayNanos();
+		}
+		assertEquals(200000.0, total / samples, 10000.0);
+		
+		PreciseTimer random = new RandomTimer(0, 0.5, 42);
+		for (int i=0; i < 100; i++) {
+			long delay = random.getDelayNanos();
+			assertTrue(delay >= 0 && delay <= 500000);
+		}
+		
+		long[] bounds = { 0, 1 };
+		long[] counts = { 1 };
+		PreciseTimer empirical = new EmpiricalTimer(bounds, counts, 42);
+		for (int i=0; i < 100; i++) {
+			long delay = empirical.getDelayNanos();
+			assertTrue(delay >= 0 && delay <= 1000000);
+		}
+	}
+	
+	protected double mean(Timer timer) {
+		
+		double total = 0;
+		for (int i=0; i < samples; i++) {
+			total += timer.getDelay();
+		}
+		
+		return total / samples;
+	}
+	
+	public static Test suite() {
+		return new TestSuite(TimerTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}
@@ -0,0 +1,109 @@
+package com.clarkware.junitperf;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * The <code>TraceReplayTestTest</code> is a <code>TestCase</code>
+ * for the <code>TraceReplayTest</code> class.
+ *
+ * @author <a href="mailto:mike@clarkware.com">Mike Clark</a>
+ * @author <a href="http://www.clarkware.com">Clarkware Consulting, Inc.</a>
+ *
+ * @see junit.framework.TestCase
+ */
+
+public class TraceReplayTestTest extends TestCase {
+
+	private File _trace;
+	
+	private List _records;
+	
+	public TraceReplayTestTest(String name) {
+		super(name);
+	}
+	
+	protected void setUp() throws IOException {
+		_records = Collections.synchronizedList(new ArrayList());
+		_trace = File.createTempFile("junitperf", ".log");
+		Writer writer = new FileWriter(_trace);
+		writer.write("timestamp,path\n");
+		writer.write("1000000,/a\n");
+		writer.write("# comment\n");
+		writer.write("1000100,/b\n");
+		writer.write("1000200,/c\n");
+		writer.write("1000300.5 /d\n");
+		writer.write("1000400\t/e\n");
+		writer.close();
+	}
+	
+	protected void tearDown() {
+		_trace.delete();
+	}
+	
+	public void testReplay() {
+		
+		TraceReplayTest test = new TraceReplayTest(new MockTest("testSuccess"), _trace);
+		
+		assertEquals(5, test.countTestCases());
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertEquals(5, result.runCount());
+		assertEquals(0, result.errorCount());
+		assertEquals(0, result.failureCount());
+		assertTrue(elapsed >= 390);
+		
+		assertEquals(5, test.getStatistics().getIterationCount());
+		assertEquals(5, test.getStatistics().getScheduleLag().getCount());
+		assertEquals(0, test.getStatistics().getFailureCount());
+	}
+	
+	public void testReplayWithSpeedup() {
+		
+		TraceReplayTest test = 
+			new TraceReplayTest(new MockTest("testFailure"), _trace, 4.0, 2);
+		
+		long begin = System.currentTimeMillis();
+		TestResult result = new TestResult();
+		test.run(result);
+		long elapsed = System.currentTimeMillis() - begin;
+		
+		assertEquals(5, result.runCount());
+		assertEquals(5, result.failureCount());
+		assertTrue(elapsed >= 90 && elapsed < 390);
+		
+		assertEquals(5, test.getStatistics().getFailureCount());
+		assertEquals(0, test.getStatistics().getErrorCount());
+	}
+	
+	public void testCurrentRecord() {
+		
+		Test recordPath = new TestCase("recordPath") {
+			protected void runTest() {
+				String record = TraceReplayTest.getCurrentRecord();
+				_records.add(record.substring(record.indexOf('/')));
+			}
+		};
+		
+		TraceReplayTest test = new TraceReplayTest(recordPath, _trace, 10.0, 1);
+		
+		test.run(new TestResult());
+		
+		assertEquals(Arrays.asList(new String[] { "/a", "/b", "/c", "/d", "/e" }), 
+			_records);
+	}
+	
+	public static Test suite() {
+		return new TestSuite(TraceReplayTestTest.class);
+	}
+
+	public static void main(String args[]) {
+		junit.textui.TestRunner.run(suite());
+	}
+}